@@ -0,0 +1,94 @@
+package de.jrk.neuralnetwork;
+
+/**
+ * Führt den Feedforward Algorithmus eines {@link NeuralNetwork}s für mehrere
+ * Inputs gleichzeitig aus, ohne dabei Objekte zu erzeugen. Das
+ * {@link NeuralNetwork} wird nur gelesen und kann daher von mehreren
+ * {@link BatchInference}s gleichzeitig genutzt werden, eine
+ * {@link BatchInference} selbst aber nur von einem Thread.
+ */
+public class BatchInference {
+	private final NeuralNetwork nn;
+	private final double[][][] layerOutputs;
+	private final double[][] singleInput = new double[1][];
+
+	/**
+	 * Erzeugt eine neue {@link BatchInference} für das {@link NeuralNetwork}
+	 * {@code nn}.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @param maxBatchSize
+	 *            Die größte Anzahl an Inputs, die gleichzeitig berechnet werden.
+	 */
+	public BatchInference(NeuralNetwork nn, int maxBatchSize) {
+		this.nn = nn;
+		Matrix[] weights = nn.getWeights();
+		layerOutputs = new double[weights.length][maxBatchSize][];
+		for (int l = 0; l < weights.length; l++) {
+			for (int b = 0; b < maxBatchSize; b++) {
+				layerOutputs[l][b] = new double[weights[l].getRows()];
+			}
+		}
+	}
+
+	/**
+	 * Führt den Feedforward Algorithmus für die ersten {@code batchSize} Inputs
+	 * aus. Jedes Gewicht wird dabei nur einmal für alle Inputs geladen.
+	 * 
+	 * @param inputs
+	 *            Die Inputs. Jedes Array muss genau so groß wie die erste Schicht
+	 *            sein.
+	 * @param batchSize
+	 *            Die Anzahl der Inputs, die berechnet werden sollen.
+	 * @return Die Outputs. Das Array wird beim nächsten Aufruf überschrieben.
+	 */
+	public double[][] feedforward(double[][] inputs, int batchSize) {
+		if (batchSize > layerOutputs[0].length) {
+			throw new IllegalArgumentException("The batch size must not be greater than the maximum batch size!");
+		}
+		Matrix[] weights = nn.getWeights();
+		Matrix[] biases = nn.getBiases();
+		String activationFunction = nn.getActivationFunction();
+		double[][] layerInputs = inputs;
+		for (int l = 0; l < weights.length; l++) {
+			double[][] w = weights[l].getData();
+			double[][] bias = biases[l].getData();
+			double[][] outputs = layerOutputs[l];
+			for (int r = 0; r < w.length; r++) {
+				double[] row = w[r];
+				for (int b = 0; b < batchSize; b++) {
+					double[] x = layerInputs[b];
+					double sum = 0;
+					for (int c = 0; c < row.length; c++) {
+						sum += row[c] * x[c];
+					}
+					outputs[b][r] = ActivationFunction.function(activationFunction, sum + bias[r][0]);
+				}
+			}
+			layerInputs = outputs;
+		}
+		return layerInputs;
+	}
+
+	/**
+	 * Führt den Feedforward Algorithmus für einen einzelnen Input aus.
+	 * 
+	 * @param inputs
+	 *            Der Input.
+	 * @return Der Output. Das Array wird beim nächsten Aufruf überschrieben.
+	 */
+	public double[] feedforward(double[] inputs) {
+		singleInput[0] = inputs;
+		return feedforward(singleInput, 1)[0];
+	}
+
+	/**
+	 * Gibt das {@link NeuralNetwork} zurück.
+	 * 
+	 * @return Das {@link NeuralNetwork}.
+	 */
+	public NeuralNetwork getNeuralNetwork() {
+		return nn;
+	}
+}
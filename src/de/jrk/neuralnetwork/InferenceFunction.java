@@ -0,0 +1,21 @@
+package de.jrk.neuralnetwork;
+
+/**
+ * Eine Funktion, die für einen Input den Output eines neuronalen Netzwerkes
+ * berechnet, ohne dabei {@link Matrix}-Objekte zu erzeugen.
+ */
+public interface InferenceFunction {
+	/**
+	 * Berechnet den Output für den Input {@code inputs} und schreibt ihn in
+	 * {@code outputs}.
+	 * 
+	 * @param inputs
+	 *            Der Input. Die Größe muss genau der Anzahl der Neuronen in der
+	 *            ersten Schicht entsprechen.
+	 * @param outputs
+	 *            Das Array für den Output. Die Größe muss genau der Anzahl der
+	 *            Neuronen in der letzten Schicht entsprechen.
+	 * @return Das Array {@code outputs}.
+	 */
+	public double[] feedforward(double[] inputs, double[] outputs);
+}
@@ -0,0 +1,154 @@
+package de.jrk.neuralnetwork;
+
+/**
+ * Führt den Feedforward Algorithmus von mehreren {@link NeuralNetwork}s mit
+ * gleicher Struktur in einem Durchlauf aus. Jedes {@link NeuralNetwork} bekommt
+ * eine Spur (Lane) und seinen eigenen Input. Die Gewichte sind so verschränkt
+ * gespeichert, dass das Gewicht {@code (r, c)} aller {@link NeuralNetwork}s
+ * direkt hintereinander liegt:<br>
+ * <br>
+ * <code>weights[l][(r * columns + c) * lanes + k]</code><br>
+ * <br>
+ * Die innerste Schleife läuft dadurch über die Spuren mit Schrittweite 1 und
+ * kann vom JIT-Compiler auf Vektoreinheiten abgebildet werden, was bei den
+ * kurzen Zeilen eines einzelnen {@link NeuralNetwork}s nicht lohnt. Inputs und
+ * Outputs sind genauso verschränkt: Wert {@code i} der Spur {@code k} liegt bei
+ * {@code i * lanes + k}.<br>
+ * <br>
+ * Die Ergebnisse sind bitgenau die gleichen wie bei
+ * {@link NeuralNetwork#feedforward(Matrix) feedforward}, da jede Summe in der
+ * gleichen Reihenfolge gebildet wird. Die Gewichte werden beim Erzeugen kopiert,
+ * spätere Änderungen an den {@link NeuralNetwork}s werden nicht übernommen. Eine
+ * {@link InterleavedInference} kann von mehreren Threads gleichzeitig genutzt
+ * werden.
+ */
+public class InterleavedInference {
+	private final int lanes;
+	private final int[] neurons;
+	private final String activationFunction;
+	private final double[][] weights;
+	private final double[][] biases;
+	private final ThreadLocal<double[][]> layerOutputs;
+
+	/**
+	 * Erzeugt eine neue {@link InterleavedInference} für die
+	 * {@link NeuralNetwork}s {@code networks}.
+	 * 
+	 * @param networks
+	 *            Die {@link NeuralNetwork}s. Sie müssen die gleiche Anzahl an
+	 *            Neuronen in jeder Schicht und die gleiche Aktivierungsfunktion
+	 *            haben.
+	 */
+	public InterleavedInference(NeuralNetwork... networks) {
+		if (networks.length == 0) {
+			throw new IllegalArgumentException("At least one neural network is needed!");
+		}
+		lanes = networks.length;
+		Matrix[] first = networks[0].getWeights();
+		activationFunction = networks[0].getActivationFunction();
+		neurons = new int[first.length + 1];
+		neurons[0] = first[0].getCols();
+		for (int l = 0; l < first.length; l++) {
+			neurons[l + 1] = first[l].getRows();
+		}
+		weights = new double[first.length][];
+		biases = new double[first.length][];
+		for (int l = 0; l < first.length; l++) {
+			int rows = neurons[l + 1];
+			int columns = neurons[l];
+			weights[l] = new double[rows * columns * lanes];
+			biases[l] = new double[rows * lanes];
+			for (int k = 0; k < lanes; k++) {
+				Matrix[] w = networks[k].getWeights();
+				if (!networks[k].getActivationFunction().equals(activationFunction) || w.length != first.length
+						|| w[l].getRows() != rows || w[l].getCols() != columns) {
+					throw new IllegalArgumentException("All neural networks must have the same structure!");
+				}
+				double[][] data = w[l].getData();
+				double[][] bias = networks[k].getBiases()[l].getData();
+				for (int r = 0; r < rows; r++) {
+					for (int c = 0; c < columns; c++) {
+						weights[l][(r * columns + c) * lanes + k] = data[r][c];
+					}
+					biases[l][r * lanes + k] = bias[r][0];
+				}
+			}
+		}
+		layerOutputs = ThreadLocal.withInitial(() -> {
+			double[][] outputs = new double[weights.length][];
+			for (int l = 0; l < weights.length; l++) {
+				outputs[l] = new double[neurons[l + 1] * lanes];
+			}
+			return outputs;
+		});
+	}
+
+	/**
+	 * Führt den Feedforward Algorithmus für alle Spuren aus.
+	 * 
+	 * @param inputs
+	 *            Die verschränkten Inputs, {@code getInputCount() * getLanes()}
+	 *            Werte.
+	 * @param outputs
+	 *            Das Array für die verschränkten Outputs,
+	 *            {@code getOutputCount() * getLanes()} Werte.
+	 * @return {@code outputs}.
+	 */
+	public double[] feedforward(double[] inputs, double[] outputs) {
+		double[][] buffers = layerOutputs.get();
+		double[] x = inputs;
+		for (int l = 0; l < weights.length; l++) {
+			int rows = neurons[l + 1];
+			int columns = neurons[l];
+			double[] w = weights[l];
+			double[] b = biases[l];
+			double[] y = l == weights.length - 1 ? outputs : buffers[l];
+			for (int r = 0; r < rows; r++) {
+				int out = r * lanes;
+				for (int k = 0; k < lanes; k++) {
+					y[out + k] = 0;
+				}
+				int row = r * columns * lanes;
+				for (int c = 0; c < columns; c++) {
+					int weight = row + c * lanes;
+					int in = c * lanes;
+					for (int k = 0; k < lanes; k++) {
+						y[out + k] += w[weight + k] * x[in + k];
+					}
+				}
+				for (int k = 0; k < lanes; k++) {
+					y[out + k] = ActivationFunction.function(activationFunction, y[out + k] + b[out + k]);
+				}
+			}
+			x = y;
+		}
+		return outputs;
+	}
+
+	/**
+	 * Gibt die Anzahl der Spuren, also der {@link NeuralNetwork}s, zurück.
+	 * 
+	 * @return Die Anzahl der Spuren.
+	 */
+	public int getLanes() {
+		return lanes;
+	}
+
+	/**
+	 * Gibt die Anzahl der Inputs pro Spur zurück.
+	 * 
+	 * @return Die Anzahl der Inputs.
+	 */
+	public int getInputCount() {
+		return neurons[0];
+	}
+
+	/**
+	 * Gibt die Anzahl der Outputs pro Spur zurück.
+	 * 
+	 * @return Die Anzahl der Outputs.
+	 */
+	public int getOutputCount() {
+		return neurons[neurons.length - 1];
+	}
+}
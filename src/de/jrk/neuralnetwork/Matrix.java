@@ -33,6 +33,30 @@ public class Matrix {
 		return data[i][j];
 	}
 
+	/**
+	 * Setzt den Wert an der Position {@code i,j}.
+	 * 
+	 * @param i
+	 *            Der Zeilenindex.
+	 * @param j
+	 *            Der Spaltenindex.
+	 * @param value
+	 *            Der neue Wert.
+	 */
+	public void set(int i, int j, double value) {
+		data[i][j] = value;
+	}
+
+	/**
+	 * Gibt das Array zurück, in dem die Werte dieser Matrix gespeichert sind.
+	 * Änderungen am Array ändern die Matrix.
+	 * 
+	 * @return Das Array mit den Werten.
+	 */
+	double[][] getData() {
+		return data;
+	}
+
 	/**
 	 * Gibt die Anzahl der Zeilen zurück.
 	 * 
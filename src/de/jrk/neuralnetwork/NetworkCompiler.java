@@ -0,0 +1,440 @@
+package de.jrk.neuralnetwork;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Übersetzt {@link NeuralNetwork}s zur Laufzeit in eigene Klassen, deren
+ * {@link InferenceFunction} den Feedforward Algorithmus ohne Schleifen,
+ * {@link Matrix}-Objekte und Lambdas berechnet. Die Gewichte werden als
+ * Konstanten in den Bytecode geschrieben, Gewichte mit dem Wert 0 werden
+ * ausgelassen. Das Ergebnis ist bitgenau das gleiche wie bei
+ * {@link NeuralNetwork#feedforward(Matrix) feedforward}.<br>
+ * <br>
+ * Ein übersetztes Netzwerk ändert sich nicht mehr, wenn das
+ * {@link NeuralNetwork} danach verändert wird, und kann von beliebig vielen
+ * Threads gleichzeitig genutzt werden. Die Übersetzung kann mit der
+ * System-Property {@code de.jrk.neuralnetwork.compile=false} oder
+ * {@link #setEnabled(boolean) setEnabled} ausgeschaltet werden.
+ */
+public class NetworkCompiler {
+	/**
+	 * Die größte Länge einer Methode in Bytes, die von der HotSpot JVM noch
+	 * optimiert wird.
+	 */
+	private static final int MAX_CODE_LENGTH = 8000;
+	private static final String PACKAGE = "de/jrk/neuralnetwork/compiled/";
+	private static final AtomicInteger classCounter = new AtomicInteger();
+	private static volatile boolean enabled = Boolean
+			.parseBoolean(System.getProperty("de.jrk.neuralnetwork.compile", "true"));
+
+	private NetworkCompiler() {
+	}
+
+	/**
+	 * Gibt zurück, ob {@link NeuralNetwork}s übersetzt werden.
+	 * 
+	 * @return Ob {@link NeuralNetwork}s übersetzt werden.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Setzt, ob {@link NeuralNetwork}s übersetzt werden.
+	 * 
+	 * @param enabled
+	 *            Ob {@link NeuralNetwork}s übersetzt werden.
+	 */
+	public static void setEnabled(boolean enabled) {
+		NetworkCompiler.enabled = enabled;
+	}
+
+	/**
+	 * Übersetzt das {@link NeuralNetwork} {@code nn}. Ist die Übersetzung
+	 * ausgeschaltet oder das Netzwerk zu groß, wird es als
+	 * {@link SparseNeuralNetwork} zurückgegeben, das wie die Übersetzung Gewichte
+	 * mit dem Wert 0 überspringt und keine {@link Matrix}-Objekte erzeugt. In
+	 * beiden Fällen ändert sich das Ergebnis nicht mehr, wenn {@code nn} danach
+	 * verändert wird.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @return Die {@link InferenceFunction}.
+	 */
+	public static InferenceFunction compileOrInterpret(NeuralNetwork nn) {
+		InferenceFunction result = compile(nn);
+		return result != null ? result : new SparseNeuralNetwork(nn);
+	}
+
+	/**
+	 * Gibt eine {@link InferenceFunction} zurück, die
+	 * {@link NeuralNetwork#feedforward(Matrix) feedforward} aufruft.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @return Die {@link InferenceFunction}.
+	 */
+	public static InferenceFunction interpret(NeuralNetwork nn) {
+		return (inputs, outputs) -> {
+			Matrix result = nn.feedforward(Matrix.from2DArray(inputs));
+			for (int i = 0; i < outputs.length; i++) {
+				outputs[i] = result.get(i, 0);
+			}
+			return outputs;
+		};
+	}
+
+	/**
+	 * Übersetzt das {@link NeuralNetwork} {@code nn}.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @return Die übersetzte {@link InferenceFunction} oder {@code null}, wenn die
+	 *         Übersetzung ausgeschaltet oder das Netzwerk zu groß ist.
+	 */
+	public static InferenceFunction compile(NeuralNetwork nn) {
+		if (!enabled) {
+			return null;
+		}
+		String className = PACKAGE + "Network" + classCounter.incrementAndGet();
+		byte[] classFile;
+		try {
+			classFile = new ClassWriter(className, nn).write();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		if (classFile == null) {
+			return null;
+		}
+		try {
+			Class<?> c = new CompiledNetworkClassLoader(NetworkCompiler.class.getClassLoader())
+					.define(className.replace('/', '.'), classFile);
+			return (InferenceFunction) c.getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Ein {@link ClassLoader} für genau eine übersetzte Klasse, damit sie zusammen
+	 * mit ihrer {@link InferenceFunction} wieder entladen werden kann.
+	 */
+	private static class CompiledNetworkClassLoader extends ClassLoader {
+		private CompiledNetworkClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		private Class<?> define(String name, byte[] classFile) {
+			return defineClass(name, classFile, 0, classFile.length);
+		}
+	}
+
+	/**
+	 * Erzeugt die Class-Datei einer übersetzten {@link InferenceFunction}.
+	 */
+	private static class ClassWriter {
+		private static final int DCONST_0 = 0x0e, DCONST_1 = 0x0f, BIPUSH = 0x10, SIPUSH = 0x11, LDC2_W = 0x14,
+				DLOAD = 0x18, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, DALOAD = 0x31, DSTORE = 0x39,
+				DASTORE = 0x52, DADD = 0x63, DMUL = 0x6b, DDIV = 0x6f, DNEG = 0x77, ARETURN = 0xb0, RETURN = 0xb1,
+				INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, WIDE = 0xc4;
+
+		private final String className;
+		private final NeuralNetwork nn;
+		private final ByteArrayOutputStream constantPoolBytes = new ByteArrayOutputStream();
+		private final DataOutputStream constantPool = new DataOutputStream(constantPoolBytes);
+		private final HashMap<String, Integer> constants = new HashMap<String, Integer>();
+		private int constantCount = 1;
+		private boolean tooLarge;
+		private final ByteArrayOutputStream codeBytes = new ByteArrayOutputStream();
+		private final DataOutputStream code = new DataOutputStream(codeBytes);
+
+		private ClassWriter(String className, NeuralNetwork nn) {
+			this.className = className;
+			this.nn = nn;
+		}
+
+		/**
+		 * Schreibt die Class-Datei.
+		 * 
+		 * @return Die Class-Datei oder {@code null}, wenn die Methode oder der
+		 *         Konstantenpool zu groß wird.
+		 * @throws IOException
+		 *             Sollte nicht auftreten.
+		 */
+		private byte[] write() throws IOException {
+			int thisClass = classConstant(className);
+			int superClass = classConstant("java/lang/Object");
+			int interfaceClass = classConstant("de/jrk/neuralnetwork/InferenceFunction");
+			int objectInit = methodConstant("java/lang/Object", "<init>", "()V");
+			int initName = utf8Constant("<init>");
+			int initDescriptor = utf8Constant("()V");
+			int feedforwardName = utf8Constant("feedforward");
+			int feedforwardDescriptor = utf8Constant("([D[D)[D");
+			int codeName = utf8Constant("Code");
+
+			code.writeByte(ALOAD_0);
+			code.writeByte(INVOKESPECIAL);
+			code.writeShort(objectInit);
+			code.writeByte(RETURN);
+			byte[] initCode = codeBytes.toByteArray();
+			codeBytes.reset();
+
+			int maxLocals = writeFeedforward();
+			byte[] feedforwardCode = codeBytes.toByteArray();
+			if (tooLarge || feedforwardCode.length > MAX_CODE_LENGTH) {
+				return null;
+			}
+
+			ByteArrayOutputStream classBytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(classBytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(52);
+			out.writeShort(constantCount);
+			constantPool.flush();
+			constantPoolBytes.writeTo(out);
+			out.writeShort(0x0001 | 0x0010 | 0x0020);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(1);
+			out.writeShort(interfaceClass);
+			out.writeShort(0);
+			out.writeShort(2);
+			writeMethod(out, initName, initDescriptor, codeName, 1, 1, initCode);
+			writeMethod(out, feedforwardName, feedforwardDescriptor, codeName, 16, maxLocals, feedforwardCode);
+			out.writeShort(0);
+			out.flush();
+			return classBytes.toByteArray();
+		}
+
+		private void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, int maxStack,
+				int maxLocals, byte[] methodCode) throws IOException {
+			out.writeShort(0x0001);
+			out.writeShort(name);
+			out.writeShort(descriptor);
+			out.writeShort(1);
+			out.writeShort(codeName);
+			out.writeInt(12 + methodCode.length);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(methodCode.length);
+			out.write(methodCode);
+			out.writeShort(0);
+			out.writeShort(0);
+		}
+
+		/**
+		 * Schreibt den Code der Methode {@code feedforward}. Die Werte einer
+		 * Schicht liegen abwechselnd in zwei Bereichen lokaler Variablen.
+		 * 
+		 * @return Die Anzahl der lokalen Variablen.
+		 * @throws IOException
+		 *             Sollte nicht auftreten.
+		 */
+		private int writeFeedforward() throws IOException {
+			Matrix[] weights = nn.getWeights();
+			Matrix[] biases = nn.getBiases();
+			int maxNeurons = weights[0].getCols();
+			for (Matrix w : weights) {
+				maxNeurons = Math.max(maxNeurons, w.getRows());
+			}
+			int[] banks = { 3, 3 + 2 * maxNeurons };
+			int tmp = 3 + 4 * maxNeurons;
+			for (int c = 0; c < weights[0].getCols(); c++) {
+				code.writeByte(ALOAD_1);
+				pushInt(c);
+				code.writeByte(DALOAD);
+				localInstruction(DSTORE, banks[0] + 2 * c);
+			}
+			for (int l = 0; l < weights.length; l++) {
+				int inputBank = banks[l % 2];
+				int outputBank = banks[(l + 1) % 2];
+				boolean last = l == weights.length - 1;
+				for (int r = 0; r < weights[l].getRows(); r++) {
+					if (last) {
+						code.writeByte(ALOAD_2);
+						pushInt(r);
+					}
+					code.writeByte(DCONST_0);
+					for (int c = 0; c < weights[l].getCols(); c++) {
+						double w = weights[l].get(r, c);
+						if (w == 0) {
+							continue;
+						}
+						localInstruction(DLOAD, inputBank + 2 * c);
+						pushDouble(w);
+						code.writeByte(DMUL);
+						code.writeByte(DADD);
+					}
+					pushDouble(biases[l].get(r, 0));
+					code.writeByte(DADD);
+					writeActivationFunction(tmp);
+					if (last) {
+						code.writeByte(DASTORE);
+					} else {
+						localInstruction(DSTORE, outputBank + 2 * r);
+					}
+				}
+			}
+			code.writeByte(ALOAD_2);
+			code.writeByte(ARETURN);
+			code.flush();
+			return tmp + 2;
+		}
+
+		/**
+		 * Schreibt den Code der Aktivierungsfunktion für den Wert oben auf dem
+		 * Stack in der gleichen Rechenreihenfolge wie
+		 * {@link ActivationFunction#function(String, double)}.
+		 * 
+		 * @param tmp
+		 *            Eine freie lokale Variable.
+		 * @throws IOException
+		 *             Sollte nicht auftreten.
+		 */
+		private void writeActivationFunction(int tmp) throws IOException {
+			String activationFunction = nn.getActivationFunction();
+			switch (activationFunction) {
+			case ActivationFunction.IDENTITY:
+				break;
+			case ActivationFunction.SIGMOID:
+				localInstruction(DSTORE, tmp);
+				code.writeByte(DCONST_1);
+				code.writeByte(DCONST_1);
+				localInstruction(DLOAD, tmp);
+				code.writeByte(DNEG);
+				invokeMath("exp");
+				code.writeByte(DADD);
+				code.writeByte(DDIV);
+				break;
+			case ActivationFunction.TANH:
+				invokeMath("tanh");
+				break;
+			case ActivationFunction.SOFTSIGN:
+				localInstruction(DSTORE, tmp);
+				localInstruction(DLOAD, tmp);
+				code.writeByte(DCONST_1);
+				localInstruction(DLOAD, tmp);
+				invokeMath("abs");
+				code.writeByte(DADD);
+				code.writeByte(DDIV);
+				break;
+			case ActivationFunction.SOFTSIGN_NORM:
+				localInstruction(DSTORE, tmp);
+				pushDouble(0.5);
+				localInstruction(DLOAD, tmp);
+				code.writeByte(DMUL);
+				code.writeByte(DCONST_1);
+				localInstruction(DLOAD, tmp);
+				invokeMath("abs");
+				code.writeByte(DADD);
+				code.writeByte(DDIV);
+				pushDouble(0.5);
+				code.writeByte(DADD);
+				break;
+			default:
+				throw new IllegalArgumentException("Activation function \"" + activationFunction + "\" does not exist!");
+			}
+		}
+
+		private void invokeMath(String method) throws IOException {
+			code.writeByte(INVOKESTATIC);
+			code.writeShort(methodConstant("java/lang/Math", method, "(D)D"));
+		}
+
+		private void localInstruction(int opcode, int index) throws IOException {
+			if (index > 255) {
+				code.writeByte(WIDE);
+				code.writeByte(opcode);
+				code.writeShort(index);
+			} else {
+				code.writeByte(opcode);
+				code.writeByte(index);
+			}
+		}
+
+		private void pushInt(int value) throws IOException {
+			if (value < 128) {
+				code.writeByte(BIPUSH);
+				code.writeByte(value);
+			} else {
+				code.writeByte(SIPUSH);
+				code.writeShort(value);
+			}
+		}
+
+		private void pushDouble(double value) throws IOException {
+			code.writeByte(LDC2_W);
+			code.writeShort(doubleConstant(value));
+		}
+
+		private int utf8Constant(String value) throws IOException {
+			Integer index = constants.get("U" + value);
+			if (index == null) {
+				constantPool.writeByte(1);
+				constantPool.writeUTF(value);
+				index = constantCount++;
+				constants.put("U" + value, index);
+			}
+			return index;
+		}
+
+		private int classConstant(String name) throws IOException {
+			int nameIndex = utf8Constant(name);
+			Integer index = constants.get("C" + name);
+			if (index == null) {
+				constantPool.writeByte(7);
+				constantPool.writeShort(nameIndex);
+				index = constantCount++;
+				constants.put("C" + name, index);
+			}
+			return index;
+		}
+
+		private int methodConstant(String owner, String name, String descriptor) throws IOException {
+			int classIndex = classConstant(owner);
+			int nameIndex = utf8Constant(name);
+			int descriptorIndex = utf8Constant(descriptor);
+			String key = "N" + name + descriptor;
+			Integer nameAndType = constants.get(key);
+			if (nameAndType == null) {
+				constantPool.writeByte(12);
+				constantPool.writeShort(nameIndex);
+				constantPool.writeShort(descriptorIndex);
+				nameAndType = constantCount++;
+				constants.put(key, nameAndType);
+			}
+			key = "M" + owner + "." + name + descriptor;
+			Integer index = constants.get(key);
+			if (index == null) {
+				constantPool.writeByte(10);
+				constantPool.writeShort(classIndex);
+				constantPool.writeShort(nameAndType);
+				index = constantCount++;
+				constants.put(key, index);
+			}
+			return index;
+		}
+
+		private int doubleConstant(double value) throws IOException {
+			String key = "D" + Double.doubleToRawLongBits(value);
+			Integer index = constants.get(key);
+			if (index == null) {
+				if (constantCount > 0xFFFD) {
+					tooLarge = true;
+					return 1;
+				}
+				constantPool.writeByte(6);
+				constantPool.writeDouble(value);
+				index = constantCount;
+				constantCount += 2;
+				constants.put(key, index);
+			}
+			return index;
+		}
+	}
+}
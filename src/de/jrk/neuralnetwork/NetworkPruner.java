@@ -0,0 +1,144 @@
+package de.jrk.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * Dünnt {@link NeuralNetwork}s aus, indem Gewichte mit kleinem Betrag auf 0
+ * gesetzt werden (Magnitude Pruning). Der Schwellenwert wird so groß gewählt,
+ * dass das Netzwerk für alle übergebenen Testfälle noch dieselben Züge
+ * auswählt. Das Ergebnis kann als {@link SparseNeuralNetwork} oder mit dem
+ * {@link NetworkCompiler} ausgeführt werden, die beide Gewichte mit dem Wert 0
+ * überspringen.
+ */
+public class NetworkPruner {
+	private static final int BATCH_SIZE = 256;
+
+	private NetworkPruner() {
+	}
+
+	/**
+	 * Gibt eine Kopie des {@link NeuralNetwork}s {@code nn} zurück, in der so
+	 * viele Gewichte wie möglich auf 0 gesetzt sind, ohne dass sich für einen der
+	 * Inputs {@code inputs} der gewählte Zug ändert. Der gewählte Zug ist der
+	 * Output mit dem größten Wert unter den erlaubten Zügen. Die Schwellenwerte
+	 * (Biases) werden nicht verändert.<br>
+	 * <br>
+	 * Die Anzahl der entfernten Gewichte wird per binärer Suche bestimmt, das
+	 * Ergebnis wird dabei für jeden Schritt vollständig geprüft.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @param inputs
+	 *            Die Inputs, für die sich der Zug nicht ändern darf.
+	 * @param legalMoves
+	 *            Für jeden Input die Outputs, die als Zug erlaubt sind.
+	 * @return Das ausgedünnte {@link NeuralNetwork}.
+	 */
+	public static NeuralNetwork prune(NeuralNetwork nn, double[][] inputs, boolean[][] legalMoves) {
+		if (inputs.length != legalMoves.length) {
+			throw new IllegalArgumentException("The amount of inputs and legal moves must be equal!");
+		}
+		int[] moves = getMoves(nn, inputs, legalMoves);
+		double[] magnitudes = getWeightMagnitudes(nn);
+		Arrays.sort(magnitudes);
+		int good = 0;
+		int bad = magnitudes.length + 1;
+		NeuralNetwork best = nn.getCopy();
+		while (bad - good > 1) {
+			int count = (good + bad) >>> 1;
+			NeuralNetwork pruned = prune(nn, count == magnitudes.length ? Double.POSITIVE_INFINITY : magnitudes[count]);
+			if (Arrays.equals(moves, getMoves(pruned, inputs, legalMoves))) {
+				good = count;
+				best = pruned;
+			} else {
+				bad = count;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Gibt eine Kopie des {@link NeuralNetwork}s {@code nn} zurück, in der alle
+	 * Gewichte mit einem Betrag kleiner als {@code threshold} auf 0 gesetzt sind.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @param threshold
+	 *            Der Schwellenwert.
+	 * @return Das ausgedünnte {@link NeuralNetwork}.
+	 */
+	public static NeuralNetwork prune(NeuralNetwork nn, double threshold) {
+		NeuralNetwork result = nn.getCopy();
+		for (Matrix weights : result.getWeights()) {
+			double[][] data = weights.getData();
+			for (double[] row : data) {
+				for (int c = 0; c < row.length; c++) {
+					if (Math.abs(row[c]) < threshold) {
+						row[c] = 0;
+					}
+				}
+			}
+		}
+		result.markChanged();
+		return result;
+	}
+
+	/**
+	 * Gibt für jeden Input {@code inputs} den Index des größten erlaubten Outputs
+	 * zurück, wie ihn der {@link de.jrk.tictactoe.players.NeuralNetworkPlayer
+	 * NeuralNetworkPlayer} wählt, oder {@code -1}, wenn kein erlaubter Output
+	 * größer als {@code -1} ist.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @param inputs
+	 *            Die Inputs.
+	 * @param legalMoves
+	 *            Für jeden Input die Outputs, die als Zug erlaubt sind.
+	 * @return Die gewählten Züge.
+	 */
+	public static int[] getMoves(NeuralNetwork nn, double[][] inputs, boolean[][] legalMoves) {
+		BatchInference inference = new BatchInference(nn, BATCH_SIZE);
+		double[][] batch = new double[BATCH_SIZE][];
+		int[] moves = new int[inputs.length];
+		for (int start = 0; start < inputs.length; start += BATCH_SIZE) {
+			int batchSize = Math.min(BATCH_SIZE, inputs.length - start);
+			System.arraycopy(inputs, start, batch, 0, batchSize);
+			double[][] outputs = inference.feedforward(batch, batchSize);
+			for (int b = 0; b < batchSize; b++) {
+				boolean[] legal = legalMoves[start + b];
+				int move = -1;
+				double moveValue = -1;
+				for (int o = 0; o < legal.length; o++) {
+					if (outputs[b][o] > moveValue && legal[o]) {
+						move = o;
+						moveValue = outputs[b][o];
+					}
+				}
+				moves[start + b] = move;
+			}
+		}
+		return moves;
+	}
+
+	/**
+	 * Gibt die Beträge aller Gewichte des {@link NeuralNetwork}s {@code nn}
+	 * zurück.
+	 */
+	private static double[] getWeightMagnitudes(NeuralNetwork nn) {
+		int count = 0;
+		for (Matrix weights : nn.getWeights()) {
+			count += weights.getRows() * weights.getCols();
+		}
+		double[] magnitudes = new double[count];
+		int m = 0;
+		for (Matrix weights : nn.getWeights()) {
+			for (double[] row : weights.getData()) {
+				for (double weight : row) {
+					magnitudes[m++] = Math.abs(weight);
+				}
+			}
+		}
+		return magnitudes;
+	}
+}
@@ -0,0 +1,217 @@
+package de.jrk.neuralnetwork;
+
+/**
+ * Ein unveränderlicher Schnappschuss der Gewichte und Schwellenwerte eines
+ * {@link NeuralNetwork}s. Anders als ein {@link NeuralNetwork} hat ein
+ * {@link NetworkSnapshot} keinen Zustand, der beim Rechnen verändert wird, und
+ * gibt keine veränderbaren Arrays heraus. Er kann deshalb ohne Kopie und ohne
+ * Sperren an beliebig viele Threads weitergegeben werden.<br>
+ * <br>
+ * Wird mit {@link #of(NeuralNetwork, NetworkSnapshot) of} ein neuer
+ * Schnappschuss eines veränderten {@link NeuralNetwork}s erzeugt, werden alle
+ * Schichten, die sich nicht verändert haben, mit dem vorherigen Schnappschuss
+ * geteilt. Ob sich eine Schicht verändert hat, wird an ihrer
+ * {@link NeuralNetwork#getVersion(int) Version} erkannt, ohne die Gewichte zu
+ * vergleichen. Die Ergebnisse von {@link #feedforward(double[], double[])
+ * feedforward} sind bitgenau die gleichen wie bei
+ * {@link NeuralNetwork#feedforward(Matrix) feedforward}.
+ */
+public class NetworkSnapshot implements InferenceFunction {
+	private final String activationFunction;
+	private final Layer[] layers;
+	private final ThreadLocal<double[][]> layerOutputs;
+	private volatile TernaryKernel kernel;
+
+	private NetworkSnapshot(String activationFunction, Layer[] layers) {
+		this.activationFunction = activationFunction;
+		this.layers = layers;
+		layerOutputs = ThreadLocal.withInitial(() -> {
+			double[][] result = new double[layers.length][];
+			for (int l = 0; l < result.length - 1; l++) {
+				result[l] = new double[layers[l].rows];
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Erzeugt einen {@link NetworkSnapshot} des {@link NeuralNetwork}s
+	 * {@code nn}.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @return Der {@link NetworkSnapshot}.
+	 */
+	public static NetworkSnapshot of(NeuralNetwork nn) {
+		return of(nn, null);
+	}
+
+	/**
+	 * Erzeugt einen {@link NetworkSnapshot} des {@link NeuralNetwork}s
+	 * {@code nn}, der alle Schichten mit derselben
+	 * {@link NeuralNetwork#getVersion(int) Version} mit dem
+	 * {@link NetworkSnapshot} {@code previous} teilt. Hat sich gar nichts
+	 * verändert, wird {@code previous} selbst zurückgegeben. Das
+	 * {@link NeuralNetwork} darf dabei nicht gleichzeitig verändert werden.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @param previous
+	 *            Der vorherige {@link NetworkSnapshot} oder {@code null}.
+	 * @return Der {@link NetworkSnapshot}.
+	 */
+	public static NetworkSnapshot of(NeuralNetwork nn, NetworkSnapshot previous) {
+		Matrix[] weights = nn.getWeights();
+		Matrix[] biases = nn.getBiases();
+		if (previous != null && (previous.layers.length != weights.length
+				|| !previous.activationFunction.equals(nn.getActivationFunction()))) {
+			previous = null;
+		}
+		Layer[] layers = new Layer[weights.length];
+		boolean shared = previous != null;
+		for (int l = 0; l < layers.length; l++) {
+			if (previous != null && previous.layers[l].version == nn.getVersion(l)) {
+				layers[l] = previous.layers[l];
+			} else {
+				layers[l] = new Layer(weights[l], biases[l], nn.getVersion(l));
+				shared = false;
+			}
+		}
+		return shared ? previous : new NetworkSnapshot(nn.getActivationFunction(), layers);
+	}
+
+	@Override
+	public double[] feedforward(double[] inputs, double[] outputs) {
+		double[][] buffers = layerOutputs.get();
+		double[] layerInputs = inputs;
+		for (int l = 0; l < layers.length; l++) {
+			Layer layer = layers[l];
+			double[] layerOutput = l == layers.length - 1 ? outputs : buffers[l];
+			for (int r = 0; r < layer.rows; r++) {
+				double sum = 0;
+				int w = r * layer.cols;
+				for (int c = 0; c < layer.cols; c++) {
+					sum += layer.weights[w + c] * layerInputs[c];
+				}
+				layerOutput[r] = ActivationFunction.function(activationFunction, sum + layer.biases[r]);
+			}
+			layerInputs = layerOutput;
+		}
+		return outputs;
+	}
+
+	/**
+	 * Gibt einen {@link TernaryKernel} mit den Gewichten dieses
+	 * {@link NetworkSnapshot}s zurück. Er wird beim ersten Aufruf erzeugt, teilt
+	 * die Arrays der Schichten und wird danach wiederverwendet.
+	 * 
+	 * @return Der {@link TernaryKernel}.
+	 */
+	public TernaryKernel getKernel() {
+		TernaryKernel result = kernel;
+		if (result == null) {
+			double[][] weights = new double[layers.length][];
+			double[][] biases = new double[layers.length][];
+			for (int l = 0; l < layers.length; l++) {
+				weights[l] = layers[l].weights;
+				biases[l] = layers[l].biases;
+			}
+			result = new TernaryKernel(activationFunction, getNeurons(), weights, biases);
+			kernel = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Erzeugt ein neues, veränderbares {@link NeuralNetwork} mit den Gewichten
+	 * und Schwellenwerten dieses {@link NetworkSnapshot}s.
+	 * 
+	 * @return Das {@link NeuralNetwork}.
+	 */
+	public NeuralNetwork toNeuralNetwork() {
+		NeuralNetwork nn = new NeuralNetwork(activationFunction, getNeurons());
+		for (int l = 0; l < layers.length; l++) {
+			Layer layer = layers[l];
+			for (int r = 0; r < layer.rows; r++) {
+				for (int c = 0; c < layer.cols; c++) {
+					nn.getWeights()[l].set(r, c, layer.weights[r * layer.cols + c]);
+				}
+				nn.getBiases()[l].set(r, 0, layer.biases[r]);
+			}
+		}
+		nn.markChanged();
+		return nn;
+	}
+
+	/**
+	 * Gibt die Anzahl der Neuronen in jeder Schicht zurück.
+	 * 
+	 * @return Ein neues Array mit der Anzahl der Neuronen.
+	 */
+	public int[] getNeurons() {
+		int[] neurons = new int[layers.length + 1];
+		neurons[0] = layers[0].cols;
+		for (int l = 0; l < layers.length; l++) {
+			neurons[l + 1] = layers[l].rows;
+		}
+		return neurons;
+	}
+
+	/**
+	 * Gibt die Aktivierungsfunktion zurück.
+	 * 
+	 * @return Die Aktivierungsfunktion.
+	 */
+	public String getActivationFunction() {
+		return activationFunction;
+	}
+
+	/**
+	 * Gibt die Anzahl der Schichten zurück, die dieser {@link NetworkSnapshot}
+	 * mit dem {@link NetworkSnapshot} {@code other} teilt.
+	 * 
+	 * @param other
+	 *            Der andere {@link NetworkSnapshot}.
+	 * @return Die Anzahl der geteilten Schichten.
+	 */
+	public int getSharedLayerCount(NetworkSnapshot other) {
+		int count = 0;
+		for (int l = 0; l < Math.min(layers.length, other.layers.length); l++) {
+			if (layers[l] == other.layers[l]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public String toString() {
+		return toNeuralNetwork().toString();
+	}
+
+	/**
+	 * Die Gewichte (zeilenweise), Schwellenwerte und Version einer Schicht. Eine
+	 * {@link Layer} wird nach dem Erzeugen nie verändert.
+	 */
+	private static final class Layer {
+		private final int rows;
+		private final int cols;
+		private final double[] weights;
+		private final double[] biases;
+		private final long version;
+
+		private Layer(Matrix weights, Matrix biases, long version) {
+			this.version = version;
+			rows = weights.getRows();
+			cols = weights.getCols();
+			this.weights = new double[rows * cols];
+			this.biases = new double[rows];
+			double[][] w = weights.getData();
+			double[][] b = biases.getData();
+			for (int r = 0; r < rows; r++) {
+				System.arraycopy(w[r], 0, this.weights, r * cols, cols);
+				this.biases[r] = b[r][0];
+			}
+		}
+	}
+}
@@ -1,14 +1,18 @@
 package de.jrk.neuralnetwork;
 
 import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class NeuralNetwork {
+	private static final AtomicLong VERSIONS = new AtomicLong();
 	private final Matrix[] weights;
 	private final Matrix[] biases;
 	private final Matrix[] activations;
 	private final String activationFunction;
+	private final long[] versions;
 
 	/**
 	 * Erzeugt ein neues neuronales Netzwerk mit der angegebenen Anzahl von
@@ -34,11 +38,13 @@ public class NeuralNetwork {
 		weights = new Matrix[neurons.length - 1];
 		biases = new Matrix[neurons.length - 1];
 		activations = new Matrix[neurons.length - 1];
+		versions = new long[neurons.length - 1];
 		this.activationFunction = activationFunction;
 		for (int i = 1; i < neurons.length; i++) {
 			weights[i - 1] = new Matrix(neurons[i], neurons[i - 1]);
 			biases[i - 1] = new Matrix(neurons[i], 1);
 		}
+		markChanged();
 	}
 
 	/**
@@ -49,27 +55,44 @@ public class NeuralNetwork {
 	 *            Die Größe des Intervals in dem die zufälligen Werte liegen sollen.
 	 */
 	public void randomize(double range) {
+		randomize(range, new Random());
+	}
+
+	/**
+	 * Randomisiert die Gewichte und Schwellenwerte dieses Netzwerkes in dem
+	 * Interval [-range, range] mit dem Zufallsgenerator {@code random}.
+	 * 
+	 * @param range
+	 *            Die Größe des Intervals in dem die zufälligen Werte liegen sollen.
+	 * @param random
+	 *            Der Zufallsgenerator.
+	 */
+	public void randomize(double range, Random random) {
 		for (int l = 0; l < weights.length; l++) {
-			weights[l] = weights[l].map((x, i, j) -> Math.random() * 2 * range - range);
-			biases[l] = biases[l].map((x, i, j) -> Math.random() * 2 * range - range);
+			weights[l] = weights[l].map((x, i, j) -> random.nextDouble() * 2 * range - range);
+			biases[l] = biases[l].map((x, i, j) -> random.nextDouble() * 2 * range - range);
 		}
+		markChanged();
 	}
 
 	/**
 	 * Führt den Feedforward Algorithmus mit der gegebenen Input-Matrix aus und gibt
 	 * die Output-Matrix zurück. Die Größe der Input-Matrix muss genau der Anzahl
-	 * der Neuronen in der ersten Schicht entsprechen.
+	 * der Neuronen in der ersten Schicht entsprechen. Das Ergebnis hängt nur von
+	 * den Inputs ab, auch wenn mehrere Threads das Netzwerk gleichzeitig nutzen.
 	 * 
 	 * @param inputs
 	 *            Die Input-Matrix.
 	 * @return Die Output-Matrix.
 	 */
 	public Matrix feedforward(Matrix inputs) {
+		Matrix current = inputs;
 		for (int a = 0; a < activations.length; a++) {
-			activations[a] = weights[a].multiply(a == 0 ? inputs : activations[a - 1]).add(biases[a])
+			current = weights[a].multiply(current).add(biases[a])
 					.map((x, i, j) -> ActivationFunction.function(activationFunction, x));
+			activations[a] = current;
 		}
-		return activations[activations.length - 1].getCopy();
+		return current.getCopy();
 	}
 
 	/**
@@ -99,6 +122,124 @@ public class NeuralNetwork {
 		return activations;
 	}
 
+	/**
+	 * Gibt die Anzahl aller Gewichte und Schwellenwerte dieses Netzwerkes zurück.
+	 * 
+	 * @return Die Anzahl der Parameter.
+	 */
+	public int getParameterCount() {
+		int count = 0;
+		for (int l = 0; l < weights.length; l++) {
+			count += weights[l].getRows() * weights[l].getCols() + biases[l].getRows();
+		}
+		return count;
+	}
+
+	/**
+	 * Gibt alle Gewichte und Schwellenwerte dieses Netzwerkes in einem Array
+	 * zurück. Für jede Schicht stehen zuerst die Gewichte zeilenweise und danach
+	 * die Schwellenwerte.
+	 * 
+	 * @return Ein Array mit allen Parametern.
+	 */
+	public double[] getParameters() {
+		double[] parameters = new double[getParameterCount()];
+		int p = 0;
+		for (int l = 0; l < weights.length; l++) {
+			for (int i = 0; i < weights[l].getRows(); i++) {
+				for (int j = 0; j < weights[l].getCols(); j++) {
+					parameters[p++] = weights[l].get(i, j);
+				}
+			}
+			for (int i = 0; i < biases[l].getRows(); i++) {
+				parameters[p++] = biases[l].get(i, 0);
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * Setzt alle Gewichte und Schwellenwerte dieses Netzwerkes in der Reihenfolge
+	 * von {@link #getParameters() getParameters}.
+	 * 
+	 * @param parameters
+	 *            Ein Array mit allen Parametern.
+	 */
+	public void setParameters(double[] parameters) {
+		if (parameters.length != getParameterCount()) {
+			throw new IllegalArgumentException("The amount of parameters does not match this NeuralNetwork!");
+		}
+		int p = 0;
+		for (int l = 0; l < weights.length; l++) {
+			for (int i = 0; i < weights[l].getRows(); i++) {
+				for (int j = 0; j < weights[l].getCols(); j++) {
+					weights[l].set(i, j, parameters[p++]);
+				}
+			}
+			for (int i = 0; i < biases[l].getRows(); i++) {
+				biases[l].set(i, 0, parameters[p++]);
+			}
+		}
+		markChanged();
+	}
+
+	/**
+	 * Gibt die Version der Schicht {@code layer} zurück. Jede Änderung über
+	 * {@link #markChanged(int) markChanged} vergibt eine neue, über alle Netzwerke
+	 * eindeutige Version. Zwei Schichten mit derselben Version haben deshalb
+	 * dieselben Gewichte und Schwellenwerte, z.B. bei einer Kopie mit
+	 * {@link #getCopy() getCopy}.
+	 * 
+	 * @param layer
+	 *            Der Index der Schicht.
+	 * @return Die Version der Schicht.
+	 */
+	public long getVersion(int layer) {
+		return versions[layer];
+	}
+
+	/**
+	 * Gibt die Version dieses Netzwerkes zurück. Sie ändert sich, sobald sich
+	 * irgendeine Schicht ändert.
+	 * 
+	 * @return Die größte Version aller Schichten.
+	 */
+	public long getVersion() {
+		long version = 0;
+		for (long v : versions) {
+			version = Math.max(version, v);
+		}
+		return version;
+	}
+
+	/**
+	 * Vergibt der Schicht {@code layer} eine neue Version. Muss aufgerufen werden,
+	 * nachdem die Matrizen aus {@link #getWeights() getWeights} oder
+	 * {@link #getBiases() getBiases} direkt verändert wurden, damit z.B.
+	 * {@link NetworkSnapshot}s und
+	 * {@link de.jrk.tictactoe.players.NeuralNetworkPlayer NeuralNetworkPlayer} die
+	 * Änderung bemerken. {@link #randomize(double, Random) randomize},
+	 * {@link #setParameters(double[]) setParameters} und der
+	 * {@link de.jrk.neuralnetwork.training.Mutator Mutator} rufen diese Methode
+	 * selbst auf.
+	 * 
+	 * @param layer
+	 *            Der Index der veränderten Schicht.
+	 */
+	public void markChanged(int layer) {
+		versions[layer] = VERSIONS.incrementAndGet();
+	}
+
+	/**
+	 * Vergibt allen Schichten eine neue Version, siehe
+	 * {@link #markChanged(int) markChanged}.
+	 */
+	public void markChanged() {
+		for (int l = 0; l < versions.length; l++) {
+			markChanged(l);
+		}
+	}
+
 	/**
 	 * Gibt die Aktivierungsfunktion zurück, die dieses Netzwerk nutzt.
 	 * 
@@ -120,7 +261,7 @@ public class NeuralNetwork {
 	@Override
 	protected Object clone() {
 		int[] neurons = new int[getWeights().length + 1];
-		NeuralNetwork nn = new NeuralNetwork(neurons);
+		NeuralNetwork nn = new NeuralNetwork(activationFunction, neurons);
 		for (int i = 0; i < getWeights().length; i++) {
 			nn.getWeights()[i] = getWeights()[i].getCopy();
 		}
@@ -130,6 +271,7 @@ public class NeuralNetwork {
 		for (int i = 0; i < getActivations().length; i++) {
 			nn.getActivations()[i] = getActivations()[i] == null ? null : getActivations()[i].getCopy();
 		}
+		System.arraycopy(versions, 0, nn.versions, 0, versions.length);
 		return nn;
 	}
 
@@ -172,6 +314,7 @@ public class NeuralNetwork {
 			result.getWeights()[i] = weights.get(i);
 			result.getBiases()[i] = biases.get(i);
 		}
+		result.markChanged();
 		return result;
 	}
 }
@@ -0,0 +1,126 @@
+package de.jrk.neuralnetwork;
+
+/**
+ * Ein unveränderliches {@link NeuralNetwork}, dessen Gewichte im CSR-Format
+ * (Compressed Sparse Row) gespeichert sind. Gewichte mit dem Wert 0 werden
+ * weder gespeichert noch berechnet, sodass ein mit dem {@link NetworkPruner}
+ * ausgedünntes Netzwerk nur einen Bruchteil der Rechenarbeit braucht. Die
+ * übrigen Gewichte werden in derselben Reihenfolge wie bei
+ * {@link NeuralNetwork#feedforward(Matrix) feedforward} aufaddiert.<br>
+ * <br>
+ * Ein {@link SparseNeuralNetwork} kann von beliebig vielen Threads gleichzeitig
+ * genutzt werden.
+ */
+public class SparseNeuralNetwork implements InferenceFunction {
+	private final String activationFunction;
+	private final int[] neurons;
+	private final int[][] rowStarts;
+	private final int[][] columns;
+	private final double[][] values;
+	private final double[][] biases;
+	private final ThreadLocal<double[][]> layerOutputs;
+
+	/**
+	 * Erzeugt ein {@link SparseNeuralNetwork} mit den Gewichten des
+	 * {@link NeuralNetwork}s {@code nn}. Spätere Änderungen an {@code nn} werden
+	 * nicht übernommen.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 */
+	public SparseNeuralNetwork(NeuralNetwork nn) {
+		Matrix[] weights = nn.getWeights();
+		activationFunction = nn.getActivationFunction();
+		neurons = new int[weights.length + 1];
+		neurons[0] = weights[0].getCols();
+		rowStarts = new int[weights.length][];
+		columns = new int[weights.length][];
+		values = new double[weights.length][];
+		biases = new double[weights.length][];
+		for (int l = 0; l < weights.length; l++) {
+			double[][] w = weights[l].getData();
+			double[][] bias = nn.getBiases()[l].getData();
+			neurons[l + 1] = w.length;
+			int count = 0;
+			for (double[] row : w) {
+				for (double weight : row) {
+					if (weight != 0) {
+						count++;
+					}
+				}
+			}
+			rowStarts[l] = new int[w.length + 1];
+			columns[l] = new int[count];
+			values[l] = new double[count];
+			biases[l] = new double[w.length];
+			int v = 0;
+			for (int r = 0; r < w.length; r++) {
+				rowStarts[l][r] = v;
+				for (int c = 0; c < w[r].length; c++) {
+					if (w[r][c] != 0) {
+						columns[l][v] = c;
+						values[l][v] = w[r][c];
+						v++;
+					}
+				}
+				biases[l][r] = bias[r][0];
+			}
+			rowStarts[l][w.length] = v;
+		}
+		layerOutputs = ThreadLocal.withInitial(() -> {
+			double[][] result = new double[neurons.length - 1][];
+			for (int l = 0; l < result.length - 1; l++) {
+				result[l] = new double[neurons[l + 1]];
+			}
+			return result;
+		});
+	}
+
+	@Override
+	public double[] feedforward(double[] inputs, double[] outputs) {
+		double[][] buffers = layerOutputs.get();
+		double[] layerInputs = inputs;
+		for (int l = 0; l < values.length; l++) {
+			double[] layerOutput = l == values.length - 1 ? outputs : buffers[l];
+			int[] rowStart = rowStarts[l];
+			int[] column = columns[l];
+			double[] value = values[l];
+			double[] bias = biases[l];
+			for (int r = 0; r < bias.length; r++) {
+				double sum = 0;
+				for (int v = rowStart[r]; v < rowStart[r + 1]; v++) {
+					sum += value[v] * layerInputs[column[v]];
+				}
+				layerOutput[r] = ActivationFunction.function(activationFunction, sum + bias[r]);
+			}
+			layerInputs = layerOutput;
+		}
+		return outputs;
+	}
+
+	/**
+	 * Gibt die Anzahl der gespeicherten Gewichte zurück, die nicht 0 sind.
+	 * 
+	 * @return Die Anzahl der Gewichte.
+	 */
+	public int getNonZeroCount() {
+		int count = 0;
+		for (double[] layer : values) {
+			count += layer.length;
+		}
+		return count;
+	}
+
+	/**
+	 * Gibt den Anteil der Gewichte zurück, die nicht 0 sind.
+	 * 
+	 * @return Der Anteil zwischen {@code 0} und {@code 1}.
+	 */
+	public double getDensity() {
+		int total = 0;
+		for (int l = 0; l < neurons.length - 1; l++) {
+			total += neurons[l] * neurons[l + 1];
+		}
+		return (double) getNonZeroCount() / total;
+	}
+}
@@ -0,0 +1,294 @@
+package de.jrk.neuralnetwork;
+
+import java.util.Arrays;
+
+/**
+ * Wählt für ein Spielfeld direkt den besten Zug eines {@link NeuralNetwork}s
+ * aus, ohne dabei Objekte zu erzeugen. Das Spielfeld wird als zwei Bitmasken
+ * übergeben (eigene und gegnerische Felder, Bit {@code i} für Input
+ * {@code i}), da die Inputs nur -1, 0 oder 1 sein können. Die erste Schicht
+ * wird deshalb ohne Multiplikationen berechnet: Für jedes besetzte Feld wird
+ * die passende Spalte der Gewichte addiert oder subtrahiert, leere Felder
+ * werden übersprungen. Die Spalten werden in aufsteigender Reihenfolge
+ * addiert, sodass die Ergebnisse bitgenau die gleichen wie bei
+ * {@link NeuralNetwork#feedforward(Matrix) feedforward} sind.<br>
+ * <br>
+ * Mit einem {@link Accumulator} kann die erste Schicht über die Züge eines
+ * Spiels hinweg inkrementell berechnet werden.<br>
+ * <br>
+ * Es werden höchstens 64 Felder unterstützt. Die Gewichte eines
+ * {@link NeuralNetwork}s werden beim Erzeugen kopiert. Ein
+ * {@link TernaryKernel} kann von beliebig vielen Threads gleichzeitig genutzt
+ * werden.
+ */
+public class TernaryKernel {
+	private final String activationFunction;
+	private final int[] neurons;
+	private final double[] firstColumns;
+	private final double[][] weights;
+	private final double[][] biases;
+	private final ThreadLocal<double[][]> layerOutputs;
+
+	/**
+	 * Erzeugt einen {@link TernaryKernel} mit den Gewichten des
+	 * {@link NeuralNetwork}s {@code nn}. Spätere Änderungen an {@code nn} werden
+	 * nicht übernommen.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 */
+	public TernaryKernel(NeuralNetwork nn) {
+		this(nn.getActivationFunction(), getNeurons(nn), getWeights(nn), getBiases(nn));
+	}
+
+	/**
+	 * Erzeugt einen {@link TernaryKernel} aus zeilenweise gespeicherten Gewichten.
+	 * Die Arrays werden nicht verändert und können geteilt werden.
+	 */
+	TernaryKernel(String activationFunction, int[] neurons, double[][] weights, double[][] biases) {
+		if (neurons[0] > 64 || neurons[neurons.length - 1] != neurons[0]) {
+			throw new IllegalArgumentException("The neural network must have at most 64 inputs and as many outputs!");
+		}
+		this.activationFunction = activationFunction;
+		this.neurons = neurons;
+		this.weights = weights;
+		this.biases = biases;
+		int rows = neurons[1];
+		int cols = neurons[0];
+		firstColumns = new double[rows * cols];
+		for (int r = 0; r < rows; r++) {
+			for (int c = 0; c < cols; c++) {
+				firstColumns[c * rows + r] = weights[0][r * cols + c];
+			}
+		}
+		layerOutputs = ThreadLocal.withInitial(() -> {
+			double[][] result = new double[neurons.length - 1][];
+			for (int l = 0; l < result.length; l++) {
+				result[l] = new double[neurons[l + 1]];
+			}
+			return result;
+		});
+	}
+
+	/**
+	 * Berechnet die Outputs für das Spielfeld aus {@code own} und
+	 * {@code opponent} und gibt den Index des freien Feldes mit dem größten
+	 * Output zurück, wobei nur Outputs über -1 zählen. Hat kein freies Feld einen
+	 * solchen Output, wird wie bei {@link #selectMove(double[], long) selectMove}
+	 * ein besetztes Feld zurückgegeben.
+	 * 
+	 * @param own
+	 *            Die Bitmaske der eigenen Felder (Input 1).
+	 * @param opponent
+	 *            Die Bitmaske der gegnerischen Felder (Input -1).
+	 * @return Der Index des Feldes.
+	 */
+	public int selectMove(long own, long opponent) {
+		double[][] buffers = layerOutputs.get();
+		double[] layerOutput = buffers[0];
+		int rows = neurons[1];
+		for (int r = 0; r < rows; r++) {
+			layerOutput[r] = 0;
+		}
+		for (long bits = own | opponent; bits != 0; bits &= bits - 1) {
+			int c = Long.numberOfTrailingZeros(bits);
+			int column = c * rows;
+			if ((own >>> c & 1) != 0) {
+				for (int r = 0; r < rows; r++) {
+					layerOutput[r] += firstColumns[column + r];
+				}
+			} else {
+				for (int r = 0; r < rows; r++) {
+					layerOutput[r] -= firstColumns[column + r];
+				}
+			}
+		}
+		return selectMove(layerOutput, buffers, own | opponent);
+	}
+
+	/**
+	 * Berechnet aus den Summen {@code sums} der ersten Schicht (ohne
+	 * Schwellenwerte) die Outputs und wählt den Zug. {@code sums} darf
+	 * {@code buffers[0]} sein.
+	 */
+	private int selectMove(double[] sums, double[][] buffers, long occupied) {
+		double[] layerOutput = buffers[0];
+		double[] bias = biases[0];
+		for (int r = 0; r < layerOutput.length; r++) {
+			layerOutput[r] = ActivationFunction.function(activationFunction, sums[r] + bias[r]);
+		}
+		for (int l = 1; l < weights.length; l++) {
+			double[] layerInputs = layerOutput;
+			layerOutput = buffers[l];
+			double[] w = weights[l];
+			bias = biases[l];
+			int cols = neurons[l];
+			for (int r = 0; r < layerOutput.length; r++) {
+				double sum = 0;
+				int row = r * cols;
+				for (int c = 0; c < cols; c++) {
+					sum += w[row + c] * layerInputs[c];
+				}
+				layerOutput[r] = ActivationFunction.function(activationFunction, sum + bias[r]);
+			}
+		}
+		return selectMove(layerOutput, occupied);
+	}
+
+	/**
+	 * Gibt den Index des freien Feldes mit dem größten Output zurück, wobei nur
+	 * Outputs über -1 zählen. Bei gleichen Outputs gewinnt das erste Feld. Hat
+	 * kein freies Feld einen solchen Output, wird auf die gleiche Weise unter
+	 * allen Feldern gesucht und notfalls {@code 0} zurückgegeben. Der Aufrufer
+	 * erkennt einen illegalen Zug daran, dass das Feld in {@code occupied}
+	 * gesetzt ist.
+	 * 
+	 * @param outputs
+	 *            Die Outputs, einer pro Feld.
+	 * @param occupied
+	 *            Die Bitmaske der besetzten Felder.
+	 * @return Der Index des Feldes.
+	 */
+	public static int selectMove(double[] outputs, long occupied) {
+		int pos = -1;
+		double posProp = -1;
+		for (int c = 0; c < outputs.length; c++) {
+			if (outputs[c] > posProp && (occupied >>> c & 1) == 0) {
+				pos = c;
+				posProp = outputs[c];
+			}
+		}
+		if (pos >= 0) {
+			return pos;
+		}
+		pos = 0;
+		for (int c = 0; c < outputs.length; c++) {
+			if (outputs[c] > posProp) {
+				pos = c;
+				posProp = outputs[c];
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Erzeugt einen neuen, leeren {@link Accumulator} für diesen
+	 * {@link TernaryKernel}.
+	 * 
+	 * @return Der {@link Accumulator}.
+	 */
+	public Accumulator newAccumulator() {
+		return new Accumulator();
+	}
+
+	/**
+	 * Gibt die Anzahl der Felder zurück.
+	 * 
+	 * @return Die Anzahl der Inputs und Outputs.
+	 */
+	public int getCellCount() {
+		return neurons[0];
+	}
+
+	/**
+	 * Hält die Summen der ersten Schicht für das Spielfeld eines Spiels. Zwischen
+	 * zwei Zügen eines Spielers kommen nur ein oder zwei Steine hinzu, deshalb
+	 * werden bei {@link #selectMove(long, long) selectMove} nur die Spalten der
+	 * neuen Steine addiert bzw. subtrahiert statt die ganze erste Schicht neu zu
+	 * berechnen. Ist das neue Spielfeld keine Erweiterung des alten, z.B. in einem
+	 * neuen Spiel, werden die Summen neu berechnet.<br>
+	 * <br>
+	 * Da die Spalten in der Reihenfolge der Züge statt in aufsteigender
+	 * Reihenfolge addiert werden, können sich die Outputs in den letzten Bits von
+	 * {@link TernaryKernel#selectMove(long, long) TernaryKernel.selectMove}
+	 * unterscheiden. Ein {@link Accumulator} darf nur von einem Thread genutzt
+	 * werden.
+	 */
+	public final class Accumulator {
+		private final double[] sums = new double[neurons[1]];
+		private long own;
+		private long opponent;
+
+		private Accumulator() {
+		}
+
+		/**
+		 * Setzt den {@link Accumulator} auf das leere Spielfeld zurück.
+		 */
+		public void reset() {
+			Arrays.fill(sums, 0);
+			own = 0;
+			opponent = 0;
+		}
+
+		/**
+		 * Bringt die Summen auf das Spielfeld aus {@code own} und
+		 * {@code opponent} und wählt den Zug wie
+		 * {@link TernaryKernel#selectMove(long, long) TernaryKernel.selectMove}.
+		 * 
+		 * @param own
+		 *            Die Bitmaske der eigenen Felder (Input 1).
+		 * @param opponent
+		 *            Die Bitmaske der gegnerischen Felder (Input -1).
+		 * @return Der Index des Feldes.
+		 */
+		public int selectMove(long own, long opponent) {
+			if ((own & this.own) != this.own || (opponent & this.opponent) != this.opponent) {
+				reset();
+			}
+			int rows = sums.length;
+			for (long bits = (own & ~this.own) | (opponent & ~this.opponent); bits != 0; bits &= bits - 1) {
+				int c = Long.numberOfTrailingZeros(bits);
+				int column = c * rows;
+				if ((own >>> c & 1) != 0) {
+					for (int r = 0; r < rows; r++) {
+						sums[r] += firstColumns[column + r];
+					}
+				} else {
+					for (int r = 0; r < rows; r++) {
+						sums[r] -= firstColumns[column + r];
+					}
+				}
+			}
+			this.own = own;
+			this.opponent = opponent;
+			return TernaryKernel.this.selectMove(sums, layerOutputs.get(), own | opponent);
+		}
+	}
+
+	private static int[] getNeurons(NeuralNetwork nn) {
+		Matrix[] w = nn.getWeights();
+		int[] neurons = new int[w.length + 1];
+		neurons[0] = w[0].getCols();
+		for (int l = 0; l < w.length; l++) {
+			neurons[l + 1] = w[l].getRows();
+		}
+		return neurons;
+	}
+
+	private static double[][] getWeights(NeuralNetwork nn) {
+		Matrix[] w = nn.getWeights();
+		double[][] result = new double[w.length][];
+		for (int l = 0; l < w.length; l++) {
+			double[][] data = w[l].getData();
+			int cols = w[l].getCols();
+			result[l] = new double[data.length * cols];
+			for (int r = 0; r < data.length; r++) {
+				System.arraycopy(data[r], 0, result[l], r * cols, cols);
+			}
+		}
+		return result;
+	}
+
+	private static double[][] getBiases(NeuralNetwork nn) {
+		Matrix[] b = nn.getBiases();
+		double[][] result = new double[b.length][];
+		for (int l = 0; l < b.length; l++) {
+			result[l] = new double[b[l].getRows()];
+			for (int r = 0; r < result[l].length; r++) {
+				result[l][r] = b[l].get(r, 0);
+			}
+		}
+		return result;
+	}
+}
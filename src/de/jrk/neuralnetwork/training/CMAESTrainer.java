@@ -0,0 +1,356 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.training.EvolutionalTrainer.NeuralNetworkTester;
+
+/**
+ * Ein Trainer, der {@link NeuralNetwork}s mit einer Evolutionsstrategie mit
+ * Kovarianzmatrix-Adaption (CMA-ES) trainiert. Da die Netzwerke viele
+ * Parameter haben, wird nur die Diagonale der Kovarianzmatrix adaptiert
+ * (sep-CMA-ES), sodass eine Iteration linearen Aufwand in der Anzahl der
+ * Parameter hat.
+ */
+public class CMAESTrainer {
+	private final NeuralNetwork seedNetwork;
+	private final int n;
+	private final int lambda;
+	private final int mu;
+	private final double[] recombinationWeights;
+	private final double mueff;
+	private final double cs, ds, cc, c1, cmu, chiN;
+	private final double initialSigma;
+	private final Random random = new Random();
+
+	private double[] mean;
+	private double sigma;
+	private double[] diagC;
+	private double[] ps;
+	private double[] pc;
+	private int generation;
+
+	private NeuralNetwork[] networks;
+	private double[][] steps;
+	private double[] scores;
+	private Integer[] order;
+	private ArrayList<NeuralNetwork> lastNetworks = new ArrayList<NeuralNetwork>();
+	private NeuralNetwork bestNetwork;
+	private double bestScore = Double.NEGATIVE_INFINITY;
+	private double lastHighscore;
+	private int stallGenerations = 50;
+	private final ArrayList<Double> highscoreHistory = new ArrayList<Double>();
+
+	/**
+	 * Erzeugt einen neues Objekt zum Trainieren von {@link NeuralNetwork}s mit
+	 * CMA-ES.
+	 * 
+	 * @param seedNetwork
+	 *            Das {@link NeuralNetwork}, das als Vorlage und Startpunkt dient.
+	 * @param networkAmount
+	 *            Anzahl der {@link NeuralNetwork}s pro Iteration.
+	 * @param sigma
+	 *            Die anfängliche Schrittweite.
+	 * @param randomize
+	 *            Ob der Startpunkt randomisiert werden soll.
+	 */
+	public CMAESTrainer(NeuralNetwork seedNetwork, int networkAmount, double sigma, boolean randomize) {
+		this(seedNetwork, networkAmount, sigma, randomize, new Random().nextLong());
+	}
+
+	/**
+	 * Erzeugt einen neues Objekt zum Trainieren von {@link NeuralNetwork}s mit
+	 * CMA-ES, dessen Zufallsentscheidungen durch {@code seed} festgelegt sind.
+	 * 
+	 * @param seedNetwork
+	 *            Das {@link NeuralNetwork}, das als Vorlage und Startpunkt dient.
+	 * @param networkAmount
+	 *            Anzahl der {@link NeuralNetwork}s pro Iteration.
+	 * @param sigma
+	 *            Die anfängliche Schrittweite.
+	 * @param randomize
+	 *            Ob der Startpunkt randomisiert werden soll.
+	 * @param seed
+	 *            Der Startwert des Zufallsgenerators.
+	 */
+	public CMAESTrainer(NeuralNetwork seedNetwork, int networkAmount, double sigma, boolean randomize, long seed) {
+		if (networkAmount < 2) {
+			throw new IllegalArgumentException("The amount of networks must not be less than 2!");
+		}
+		random.setSeed(seed);
+		this.seedNetwork = seedNetwork.getCopy();
+		if (randomize) {
+			this.seedNetwork.randomize(1, random);
+		}
+		n = this.seedNetwork.getParameterCount();
+		lambda = networkAmount;
+		mu = lambda / 2;
+		recombinationWeights = new double[mu];
+		double sum = 0;
+		for (int i = 0; i < mu; i++) {
+			recombinationWeights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+			sum += recombinationWeights[i];
+		}
+		double sumSquares = 0;
+		for (int i = 0; i < mu; i++) {
+			recombinationWeights[i] /= sum;
+			sumSquares += recombinationWeights[i] * recombinationWeights[i];
+		}
+		mueff = 1 / sumSquares;
+		cs = (mueff + 2) / (n + mueff + 5);
+		ds = 1 + 2 * Math.max(0, Math.sqrt((mueff - 1) / (n + 1)) - 1) + cs;
+		cc = (4 + mueff / n) / (n + 4 + 2 * mueff / n);
+		double c1Full = 2 / ((n + 1.3) * (n + 1.3) + mueff);
+		double cmuFull = Math.min(1 - c1Full, 2 * (mueff - 2 + 1 / mueff) / ((n + 2) * (n + 2) + mueff));
+		double sepFactor = (n + 2) / 3.0;
+		c1 = Math.min(1, c1Full * sepFactor);
+		cmu = Math.min(1 - c1, cmuFull * sepFactor);
+		chiN = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21.0 * n * n));
+		initialSigma = sigma;
+		restart(this.seedNetwork.getParameters());
+		sampleNetworks();
+	}
+
+	/**
+	 * Führt eine Iteration aus, in der die {@link NeuralNetwork}s mit dem
+	 * {@link NeuralNetworkTester} {@code nnt} getestet werden und anschließend
+	 * Mittelwert, Schrittweite und Kovarianz angepasst und neue
+	 * {@link NeuralNetwork}s erzeugt werden.
+	 * 
+	 * @param nnt
+	 *            Der {@link NeuralNetworkTester}, mit dem die
+	 *            {@link NeuralNetwork}s getestet werden.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	public void doIteration(NeuralNetworkTester nnt, boolean useMultiThreading) {
+		testNetworks(nnt, useMultiThreading);
+		sortNetworks();
+		lastHighscore = scores[order[0]];
+		lastNetworks = new ArrayList<NeuralNetwork>();
+		for (int i = 0; i < lambda; i++) {
+			lastNetworks.add(networks[order[i]]);
+		}
+		highscoreHistory.add(lastHighscore);
+		if (lastHighscore > bestScore) {
+			bestScore = lastHighscore;
+			bestNetwork = networks[order[0]].getCopy();
+		}
+		update();
+		if (isStalled()) {
+			restart(bestNetwork.getParameters());
+		}
+		sampleNetworks();
+	}
+
+	/**
+	 * Testet alle {@link NeuralNetwork}s der aktuellen Iteration.
+	 * 
+	 * @param nnt
+	 *            Der {@link NeuralNetworkTester}.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	private void testNetworks(NeuralNetworkTester nnt, boolean useMultiThreading) {
+		Thread[] threads = new Thread[lambda];
+		for (int i = 0; i < lambda; i++) {
+			int index = i;
+			threads[i] = new Thread(() -> {
+				scores[index] = nnt.test(networks[index]);
+			});
+			if (useMultiThreading) {
+				threads[i].start();
+			} else {
+				threads[i].run();
+			}
+		}
+		if (useMultiThreading) {
+			for (int i = 0; i < threads.length; i++) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passt Mittelwert, Evolutionspfade, Kovarianz und Schrittweite anhand der
+	 * besten {@link #mu} {@link NeuralNetwork}s an.
+	 */
+	private void update() {
+		generation++;
+		double[] yw = new double[n];
+		for (int i = 0; i < mu; i++) {
+			double[] y = steps[order[i]];
+			for (int j = 0; j < n; j++) {
+				yw[j] += recombinationWeights[i] * y[j];
+			}
+		}
+		double psNorm = 0;
+		double csFactor = Math.sqrt(cs * (2 - cs) * mueff);
+		for (int j = 0; j < n; j++) {
+			mean[j] += sigma * yw[j];
+			ps[j] = (1 - cs) * ps[j] + csFactor * yw[j] / Math.sqrt(diagC[j]);
+			psNorm += ps[j] * ps[j];
+		}
+		psNorm = Math.sqrt(psNorm);
+		boolean hsig = psNorm / Math.sqrt(1 - Math.pow(1 - cs, 2 * generation)) / chiN < 1.4 + 2.0 / (n + 1);
+		double ccFactor = Math.sqrt(cc * (2 - cc) * mueff);
+		for (int j = 0; j < n; j++) {
+			pc[j] = (1 - cc) * pc[j] + (hsig ? ccFactor * yw[j] : 0);
+			double rankMu = 0;
+			for (int i = 0; i < mu; i++) {
+				double y = steps[order[i]][j];
+				rankMu += recombinationWeights[i] * y * y;
+			}
+			double rankOne = pc[j] * pc[j] + (hsig ? 0 : cc * (2 - cc) * diagC[j]);
+			diagC[j] = (1 - c1 - cmu) * diagC[j] + c1 * rankOne + cmu * rankMu;
+		}
+		sigma *= Math.exp((cs / ds) * (psNorm / chiN - 1));
+	}
+
+	/**
+	 * Gibt zurück, ob sich der Highscore in den letzten
+	 * {@link #stallGenerations} Iterationen nicht verbessert hat.
+	 * 
+	 * @return Ob das Training stagniert.
+	 */
+	private boolean isStalled() {
+		int end = highscoreHistory.size();
+		if (end <= stallGenerations) {
+			return false;
+		}
+		double before = highscoreHistory.get(end - stallGenerations - 1);
+		for (int i = end - stallGenerations; i < end; i++) {
+			if (highscoreHistory.get(i) > before) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Startet die Suche mit dem Mittelwert {@code start}, der anfänglichen
+	 * Schrittweite und einer Einheitsmatrix als Kovarianz neu.
+	 * 
+	 * @param start
+	 *            Der neue Mittelwert.
+	 */
+	private void restart(double[] start) {
+		mean = start;
+		sigma = initialSigma;
+		diagC = new double[n];
+		ps = new double[n];
+		pc = new double[n];
+		for (int j = 0; j < n; j++) {
+			diagC[j] = 1;
+		}
+		generation = 0;
+		highscoreHistory.clear();
+	}
+
+	/**
+	 * Erzeugt die {@link NeuralNetwork}s für die nächste Iteration.
+	 */
+	private void sampleNetworks() {
+		networks = new NeuralNetwork[lambda];
+		steps = new double[lambda][n];
+		scores = new double[lambda];
+		order = new Integer[lambda];
+		double[] x = new double[n];
+		for (int i = 0; i < lambda; i++) {
+			for (int j = 0; j < n; j++) {
+				steps[i][j] = Math.sqrt(diagC[j]) * random.nextGaussian();
+				x[j] = mean[j] + sigma * steps[i][j];
+			}
+			networks[i] = seedNetwork.getCopy();
+			networks[i].setParameters(x);
+			order[i] = i;
+		}
+	}
+
+	/**
+	 * Sortiert die Indizes der {@link NeuralNetwork}s absteigend nach Score.
+	 */
+	private void sortNetworks() {
+		Arrays.sort(order, (i1, i2) -> Double.compare(scores[i2], scores[i1]));
+	}
+
+	/**
+	 * Setzt den besten bisher gefundenen Score zurück. Sollte aufgerufen werden,
+	 * wenn der Test-Algorithmus geändert wurde.
+	 */
+	public void resetTested() {
+		bestScore = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Gibt den letzten höchsten Score zurück.
+	 * 
+	 * @return Der letzte höchste Score.
+	 */
+	public double getHighscore() {
+		return lastHighscore;
+	}
+
+	/**
+	 * Gibt die Highscores aller Iterationen seit dem letzten Neustart in einer
+	 * Liste zurück.
+	 * 
+	 * @return Eine Liste mit den Highscores.
+	 */
+	public List<Double> getHighscoreHistory() {
+		return Collections.unmodifiableList(highscoreHistory);
+	}
+
+	/**
+	 * Gibt die aktuelle Schrittweite zurück.
+	 * 
+	 * @return Die Schrittweite.
+	 */
+	public double getSigma() {
+		return sigma;
+	}
+
+	/**
+	 * Setzt die Anzahl der Iterationen ohne Verbesserung des Highscores, nach
+	 * denen die Suche vom besten {@link NeuralNetwork} aus neu gestartet wird.
+	 * 
+	 * @param stallGenerations
+	 *            Die Anzahl der Iterationen.
+	 */
+	public void setStallGenerations(int stallGenerations) {
+		this.stallGenerations = stallGenerations;
+	}
+
+	/**
+	 * Gibt eine Kopie des besten bisher gefundenen {@link NeuralNetwork}s zurück.
+	 * Vor der ersten Iteration ist das der Startpunkt.
+	 * 
+	 * @return Das beste {@link NeuralNetwork}.
+	 */
+	public NeuralNetwork getBestNetwork() {
+		if (bestNetwork == null) {
+			NeuralNetwork result = seedNetwork.getCopy();
+			result.setParameters(mean);
+			return result;
+		}
+		return bestNetwork.getCopy();
+	}
+
+	/**
+	 * Gibt die {@link NeuralNetwork}s der letzten getesteten Iteration absteigend
+	 * nach Score sortiert in einer Liste zurück.
+	 * 
+	 * @return Eine Liste mit den {@link NeuralNetwork}s.
+	 */
+	public ArrayList<NeuralNetwork> getNetworks() {
+		return new ArrayList<NeuralNetwork>(lastNetworks);
+	}
+}
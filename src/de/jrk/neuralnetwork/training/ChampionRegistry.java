@@ -0,0 +1,97 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import de.jrk.neuralnetwork.NetworkSnapshot;
+import de.jrk.neuralnetwork.NeuralNetwork;
+
+/**
+ * Hält für mehrere Trainer (z.B. Gruppen oder Inseln) die aktuell besten
+ * {@link NeuralNetwork}s als {@link NetworkSnapshot}s. Jeder Trainer hat einen
+ * eigenen Platz, dessen Inhalt mit {@link #publish(int, List) publish} durch
+ * einen atomaren Tausch ersetzt wird. Lesen geht von jedem Thread aus ohne
+ * Sperren und ohne Kopien, da die Listen und {@link NetworkSnapshot}s
+ * unveränderlich sind. Ein Leser sieht pro Platz immer entweder die alte oder
+ * die neue Liste, nie eine Mischung.
+ */
+public class ChampionRegistry {
+	private final AtomicReferenceArray<List<NetworkSnapshot>> slots;
+
+	/**
+	 * Erzeugt eine neue {@link ChampionRegistry} mit {@code slotCount} leeren
+	 * Plätzen.
+	 * 
+	 * @param slotCount
+	 *            Die Anzahl der Plätze.
+	 */
+	public ChampionRegistry(int slotCount) {
+		slots = new AtomicReferenceArray<List<NetworkSnapshot>>(slotCount);
+		for (int i = 0; i < slotCount; i++) {
+			slots.set(i, Collections.<NetworkSnapshot>emptyList());
+		}
+	}
+
+	/**
+	 * Veröffentlicht Schnappschüsse der {@link NeuralNetwork}s {@code champions}
+	 * auf dem Platz {@code slot}. Jeder {@link NetworkSnapshot} teilt seine
+	 * unveränderten Schichten mit dem bisherigen {@link NetworkSnapshot} an der
+	 * gleichen Stelle. Die {@link NeuralNetwork}s dürfen dabei nicht verändert
+	 * werden, sollten also vom Thread ihres Trainers veröffentlicht werden.
+	 * 
+	 * @param slot
+	 *            Der Platz.
+	 * @param champions
+	 *            Die besten {@link NeuralNetwork}s des Trainers.
+	 */
+	public void publish(int slot, List<NeuralNetwork> champions) {
+		List<NetworkSnapshot> previous = slots.get(slot);
+		NetworkSnapshot[] snapshots = new NetworkSnapshot[champions.size()];
+		for (int i = 0; i < snapshots.length; i++) {
+			snapshots[i] = NetworkSnapshot.of(champions.get(i), i < previous.size() ? previous.get(i) : null);
+		}
+		slots.set(slot, Collections.unmodifiableList(Arrays.asList(snapshots)));
+	}
+
+	/**
+	 * Gibt die {@link NetworkSnapshot}s auf dem Platz {@code slot} zurück.
+	 * 
+	 * @param slot
+	 *            Der Platz.
+	 * @return Eine unveränderliche Liste der {@link NetworkSnapshot}s.
+	 */
+	public List<NetworkSnapshot> get(int slot) {
+		return slots.get(slot);
+	}
+
+	/**
+	 * Gibt die {@link NetworkSnapshot}s aller Plätze außer {@code excludedSlot}
+	 * in einer neuen Liste zurück, z.B. als Gegner für den Trainer auf dem Platz
+	 * {@code excludedSlot}.
+	 * 
+	 * @param excludedSlot
+	 *            Der ausgelassene Platz oder {@code -1}.
+	 * @return Eine neue Liste der {@link NetworkSnapshot}s.
+	 */
+	public ArrayList<NetworkSnapshot> getChampions(int excludedSlot) {
+		ArrayList<NetworkSnapshot> champions = new ArrayList<NetworkSnapshot>();
+		for (int i = 0; i < slots.length(); i++) {
+			if (i != excludedSlot) {
+				champions.addAll(slots.get(i));
+			}
+		}
+		return champions;
+	}
+
+	/**
+	 * Gibt die Anzahl der Plätze zurück.
+	 * 
+	 * @return Die Anzahl der Plätze.
+	 */
+	public int getSlotCount() {
+		return slots.length();
+	}
+}
@@ -1,13 +1,46 @@
 package de.jrk.neuralnetwork.training;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
 import de.jrk.neuralnetwork.NeuralNetwork;
 
 public class EvolutionalTrainer {
+	/**
+	 * Eine Art, die Mutationsrate anzupassen.<br>
+	 * Folgende Arten sind möglich:<br>
+	 * <br>
+	 * {@link #FIXED}: Die Mutationsrate bleibt unverändert.<br>
+	 * {@link #ONE_FIFTH_RULE}: Die Mutationsrate wird nach der 1/5-Erfolgsregel
+	 * anhand des Anteils der Nachkommen angepasst, die besser als ihr Elternteil
+	 * sind.<br>
+	 * {@link #SELF_ADAPTIVE}: Jedes {@link NeuralNetwork} hat eine eigene
+	 * Mutationsrate, die mit vererbt und selbst mutiert wird.<br>
+	 */
+	public static final String FIXED = "fixed", ONE_FIFTH_RULE = "one_fifth_rule", SELF_ADAPTIVE = "self_adaptive";
+
 	private ArrayList<EvolutionalNeuralNetwork> networks;
 	private int keepAmount;
 	private double mutationRate;
 	private double lastHighscore;
+	private Mutator mutator = new Mutator();
+	private final Random random = new Random();
+	private String mutationRateControl = FIXED;
+	private double minMutationRate = 0.001;
+	private double maxMutationRate = 10;
+	private int adaptationInterval = 10;
+	private int offspringCount;
+	private int offspringSuccesses;
+	private long nextId;
+	private int racingBatchSize = 4;
+	private double racingDeviations = 2;
+	private int minBatchSize = 8;
+	private final ArrayList<Double> highscoreHistory = new ArrayList<Double>();
 
 	/**
 	 * Erzeugt einen neues Objekt zum evolutionärem Lernen von
@@ -26,6 +59,32 @@ public class EvolutionalTrainer {
 	 *            sollen.
 	 */
 	public EvolutionalTrainer(NeuralNetwork seedNetwork, int networkAmount, int keepAmount, boolean randomize) {
+		this(seedNetwork, networkAmount, keepAmount, randomize, new Random().nextLong());
+	}
+
+	/**
+	 * Erzeugt einen neues Objekt zum evolutionärem Lernen von
+	 * {@link NeuralNetwork}s, dessen Zufallsentscheidungen durch {@code seed}
+	 * festgelegt sind. Mit dem gleichen {@code seed} und einem deterministischen
+	 * {@link NeuralNetworkTester} liefern zwei Trainings genau die gleichen
+	 * {@link NeuralNetwork}s, auch mit Multithreading.
+	 * 
+	 * @param seedNetwork
+	 *            Das {@link NeuralNetwork}, das Vorlage dient.
+	 * @param networkAmount
+	 *            Anzahl der {@link NeuralNetwork}s.
+	 * @param keepAmount
+	 *            Anzahl der {@link NeuralNetwork}s, die in
+	 *            {@link #generateNewNetworks() generateNewNetworks} behalten
+	 *            werden.
+	 * @param randomize
+	 *            Ob die {@link NeuralNetwork}s zu Beginn randomisiert werden
+	 *            sollen.
+	 * @param seed
+	 *            Der Startwert für alle Zufallsgeneratoren.
+	 */
+	public EvolutionalTrainer(NeuralNetwork seedNetwork, int networkAmount, int keepAmount, boolean randomize,
+			long seed) {
 		if (networkAmount < 2) {
 			throw new IllegalArgumentException("The amount of networks must not be less than 2!");
 		}
@@ -34,13 +93,15 @@ public class EvolutionalTrainer {
 					"The amount of keep networks has to be less than the amount of networks!");
 		}
 		this.keepAmount = keepAmount;
+		random.setSeed(seed);
+		mutator.setSeed(random.nextLong());
 		networks = new ArrayList<EvolutionalNeuralNetwork>(networkAmount);
 		for (int i = 0; i < networkAmount; i++) {
 			networks.add(new EvolutionalNeuralNetwork(seedNetwork.getCopy()));
 		}
 		if (randomize) {
 			for (EvolutionalNeuralNetwork neuralNetworkWithScore : networks) {
-				neuralNetworkWithScore.getNeuralNetwork().randomize(1);
+				neuralNetworkWithScore.getNeuralNetwork().randomize(1, random);
 			}
 		}
 	}
@@ -58,35 +119,311 @@ public class EvolutionalTrainer {
 	 *            Ob Multithreading genutzt werden soll.
 	 */
 	public void doIteration(NeuralNetworkTester nnt, boolean useMultiThreading) {
-		Thread[] threads = new Thread[networks.size()];
+		GenerationEvent generation = beginGeneration("tester");
+		GenerationPhaseEvent evaluation = beginPhase(GenerationPhaseEvent.EVALUATION, highscoreHistory.size() + 1);
+		Runnable[] tasks = new Runnable[networks.size()];
 		for (int i = 0; i < networks.size(); i++) {
 			if (!networks.get(i).tested) {
-				int index = i;
-				NeuralNetwork nn = networks.get(index).getNeuralNetwork();
-				threads[i] = new Thread(() -> {
-					networks.get(index).setScore(nnt.test(nn));
-				});
-				if (useMultiThreading) {
-					threads[i].start();
-				} else {
-					threads[i].run();
+				EvolutionalNeuralNetwork enn = networks.get(i);
+				tasks[i] = () -> enn.setScore(nnt.test(enn.getNeuralNetwork()));
+			}
+		}
+		runTasks(tasks, useMultiThreading);
+		evaluation.commit();
+		finishIteration(generation);
+	}
+
+	/**
+	 * Führt eine Iteration aus, in der die ungetesteten {@link NeuralNetwork}s in
+	 * mehreren Runden mit dem {@link RacingTester} {@code tester} getestet werden.
+	 * Nach jeder Runde werden aus Mittelwert und Varianz der bisherigen Ergebnisse
+	 * Konfidenzintervalle für die Scores berechnet. Da die Spiele aus einer festen
+	 * Anzahl gezogen werden, schrumpfen die Intervalle bis zum letzten Spiel auf
+	 * null (Endlichkeitskorrektur). {@link NeuralNetwork}s, die mit hoher
+	 * Wahrscheinlichkeit nicht mehr unter die besten {@link #keepAmount} kommen
+	 * können, werden nicht weiter getestet und behalten ihren bisherigen
+	 * durchschnittlichen Score. {@link NeuralNetwork}s, die sicher darunter sind,
+	 * spielen in der nächsten Runde alle restlichen Spiele, damit ihr Score nicht
+	 * von einem glücklichen Anfang verzerrt wird. Anschließend wird wie in
+	 * {@link #doIteration(NeuralNetworkTester, boolean) doIteration} sortiert und
+	 * {@link #generateNewNetworks() generateNewNetworks} aufgerufen.
+	 * 
+	 * @param tester
+	 *            Der {@link RacingTester}, mit dem die {@link NeuralNetwork}s
+	 *            getestet werden.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	public void doIteration(RacingTester tester, boolean useMultiThreading) {
+		GenerationEvent generation = beginGeneration("racing");
+		GenerationPhaseEvent evaluation = beginPhase(GenerationPhaseEvent.EVALUATION, highscoreHistory.size() + 1);
+		int games = tester.getGameCount();
+		double range = tester.getMaxResult() - tester.getMinResult();
+		int size = networks.size();
+		double[][] results = new double[size][games];
+		double[] sums = new double[size];
+		int[] played = new int[size];
+		boolean[] active = new boolean[size];
+		boolean[] secured = new boolean[size];
+		double[] lower = new double[size];
+		double[] upper = new double[size];
+		int activeCount = 0;
+		for (int i = 0; i < size; i++) {
+			active[i] = !networks.get(i).tested;
+			if (active[i]) {
+				activeCount++;
+			} else {
+				lower[i] = upper[i] = networks.get(i).getScore();
+			}
+		}
+		while (activeCount > 0) {
+			Runnable[] tasks = new Runnable[size];
+			for (int i = 0; i < size; i++) {
+				if (active[i]) {
+					int index = i;
+					int from = played[i];
+					int to = secured[i] ? games : Math.min(games, from + racingBatchSize);
+					NeuralNetwork nn = networks.get(i).getNeuralNetwork();
+					tasks[i] = () -> tester.test(nn, from, to, results[index]);
+					played[i] = to;
 				}
 			}
+			runTasks(tasks, useMultiThreading);
+			for (int i = 0; i < size; i++) {
+				if (active[i]) {
+					int n = played[i];
+					sums[i] = 0;
+					for (int g = 0; g < n; g++) {
+						sums[i] += results[i][g];
+					}
+					double mean = sums[i] / n;
+					double squares = range * range / 4;
+					for (int g = 0; g < n; g++) {
+						squares += (results[i][g] - mean) * (results[i][g] - mean);
+					}
+					double correction = n == games ? 0 : (games - n) / (double) (games - 1);
+					double radius = racingDeviations * Math.sqrt(squares / n / n * correction);
+					lower[i] = mean - radius;
+					upper[i] = mean + radius;
+				}
+			}
+			double keepLower = getKthLargest(lower, keepAmount);
+			double dropUpper = getKthLargest(upper, keepAmount + 1);
+			for (int i = 0; i < size; i++) {
+				if (active[i] && (played[i] == games || upper[i] < keepLower)) {
+					active[i] = false;
+					activeCount--;
+					networks.get(i).setScore(sums[i] / played[i]);
+				} else if (active[i] && lower[i] > dropUpper) {
+					secured[i] = true;
+				}
+			}
+		}
+		evaluation.commit();
+		finishIteration(generation);
+	}
+
+	/**
+	 * Führt eine Iteration aus, in der die ungetesteten {@link NeuralNetwork}s
+	 * gemeinsam mit dem {@link BatchTester} {@code tester} getestet werden, z.B.
+	 * mit einer {@link de.jrk.neuralnetwork.InterleavedInference
+	 * InterleavedInference}. Mit Multithreading werden sie auf höchstens so viele
+	 * Gruppen aufgeteilt, wie der {@link ForkJoinPool} Threads hat, die aber
+	 * mindestens {@link #minBatchSize} groß sind. Anschließend wird wie in {@link #doIteration(NeuralNetworkTester, boolean)
+	 * doIteration} sortiert und {@link #generateNewNetworks()
+	 * generateNewNetworks} aufgerufen.
+	 * 
+	 * @param tester
+	 *            Der {@link BatchTester}, mit dem die {@link NeuralNetwork}s
+	 *            getestet werden.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	public void doIteration(BatchTester tester, boolean useMultiThreading) {
+		GenerationEvent generation = beginGeneration("batch");
+		GenerationPhaseEvent evaluation = beginPhase(GenerationPhaseEvent.EVALUATION, highscoreHistory.size() + 1);
+		ArrayList<EvolutionalNeuralNetwork> untested = new ArrayList<EvolutionalNeuralNetwork>();
+		for (EvolutionalNeuralNetwork enn : networks) {
+			if (!enn.tested) {
+				untested.add(enn);
+			}
 		}
+		int groups = 1;
 		if (useMultiThreading) {
-			for (int i = 0; i < threads.length; i++) {
-				try {
-					if (threads[i] != null) {
-						threads[i].join();
-					}
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+			ForkJoinPool pool = ForkJoinTask.getPool();
+			int parallelism = pool != null ? pool.getParallelism() : Runtime.getRuntime().availableProcessors();
+			groups = Math.max(1, Math.min(parallelism, untested.size() / minBatchSize));
+		}
+		Runnable[] tasks = new Runnable[groups];
+		for (int g = 0; g < groups; g++) {
+			List<EvolutionalNeuralNetwork> group = untested.subList(g * untested.size() / groups,
+					(g + 1) * untested.size() / groups);
+			tasks[g] = () -> {
+				NeuralNetwork[] nns = new NeuralNetwork[group.size()];
+				for (int i = 0; i < nns.length; i++) {
+					nns[i] = group.get(i).getNeuralNetwork();
+				}
+				double[] scores = new double[nns.length];
+				tester.test(nns, scores);
+				for (int i = 0; i < nns.length; i++) {
+					group.get(i).setScore(scores[i]);
+				}
+			};
+		}
+		if (!untested.isEmpty()) {
+			runTasks(tasks, useMultiThreading);
+		}
+		evaluation.commit();
+		finishIteration(generation);
+	}
+
+	/**
+	 * Gibt den {@code k}-größten Wert des Arrays {@code values} zurück.
+	 * 
+	 * @param values
+	 *            Die Werte.
+	 * @param k
+	 *            Der Rang, beginnend bei 1.
+	 * @return Der {@code k}-größte Wert.
+	 */
+	private static double getKthLargest(double[] values, int k) {
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length - k];
+	}
+
+	/**
+	 * Führt die übergebenen Aufgaben aus. Mit Multithreading laufen sie als
+	 * {@link ForkJoinTask}s parallel im {@link ForkJoinPool} des aufrufenden
+	 * Threads, außerhalb eines Pools im gemeinsamen {@link ForkJoinPool}. Die
+	 * parallelen Streams in den Aufgaben nutzen damit denselben Pool. Einträge,
+	 * die {@code null} sind, werden übersprungen.
+	 * 
+	 * @param tasks
+	 *            Die Aufgaben.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	private void runTasks(Runnable[] tasks, boolean useMultiThreading) {
+		ArrayList<ForkJoinTask<?>> forkJoinTasks = new ArrayList<ForkJoinTask<?>>();
+		for (Runnable task : tasks) {
+			if (task != null) {
+				if (useMultiThreading) {
+					forkJoinTasks.add(ForkJoinTask.adapt(task));
+				} else {
+					task.run();
 				}
 			}
 		}
+		ForkJoinTask.invokeAll(forkJoinTasks);
+	}
+
+	/**
+	 * Sortiert die getesteten {@link NeuralNetwork}s, merkt sich den Highscore,
+	 * passt gegebenenfalls die Mutationsrate an, ruft
+	 * {@link #generateNewNetworks() generateNewNetworks} auf und zeichnet das
+	 * {@link GenerationEvent} {@code generation} auf.
+	 * 
+	 * @param generation
+	 *            Das {@link GenerationEvent} der Iteration.
+	 */
+	private void finishIteration(GenerationEvent generation) {
+		int iteration = highscoreHistory.size() + 1;
+		GenerationPhaseEvent sort = beginPhase(GenerationPhaseEvent.SORT, iteration);
 		sortNetworks();
+		sort.commit();
 		lastHighscore = networks.get(0).getScore();
+		highscoreHistory.add(lastHighscore);
+		countSuccesses();
+		if (mutationRateControl.equals(ONE_FIFTH_RULE) && highscoreHistory.size() % adaptationInterval == 0) {
+			adaptMutationRate();
+		}
+		GenerationPhaseEvent mutation = beginPhase(GenerationPhaseEvent.MUTATION, iteration);
 		generateNewNetworks();
+		mutation.commit();
+		if (generation.shouldCommit()) {
+			generation.highscore = lastHighscore;
+			generation.mutationRate = mutationRate;
+			generation.commit();
+		}
+	}
+
+	/**
+	 * Beginnt das {@link GenerationEvent} für die nächste Iteration.
+	 * 
+	 * @param mode
+	 *            Die Art, wie die {@link NeuralNetwork}s getestet werden.
+	 * @return Das {@link GenerationEvent}.
+	 */
+	private GenerationEvent beginGeneration(String mode) {
+		GenerationEvent event = new GenerationEvent();
+		if (event.isEnabled()) {
+			event.iteration = highscoreHistory.size() + 1;
+			event.mode = mode;
+			for (EvolutionalNeuralNetwork enn : networks) {
+				if (!enn.tested) {
+					event.testedNetworks++;
+				}
+			}
+			event.begin();
+		}
+		return event;
+	}
+
+	/**
+	 * Beginnt ein {@link GenerationPhaseEvent} für den Abschnitt {@code phase}
+	 * der Iteration {@code iteration}.
+	 * 
+	 * @param phase
+	 *            Der Abschnitt.
+	 * @param iteration
+	 *            Die Nummer der Iteration, beginnend bei 1.
+	 * @return Das {@link GenerationPhaseEvent}.
+	 */
+	private GenerationPhaseEvent beginPhase(String phase, int iteration) {
+		GenerationPhaseEvent event = new GenerationPhaseEvent();
+		if (event.isEnabled()) {
+			event.phase = phase;
+			event.iteration = iteration;
+			event.begin();
+		}
+		return event;
+	}
+
+	/**
+	 * Zählt die Nachkommen, die in dieser Iteration getestet wurden, und wie
+	 * viele davon einen höheren Score als ihr Elternteil haben. Das Elternteil
+	 * wurde in derselben Runde gegen dieselben Gegner getestet.
+	 */
+	private void countSuccesses() {
+		for (EvolutionalNeuralNetwork enn : networks) {
+			if (enn.parent != null) {
+				offspringCount++;
+				if (enn.getScore() > enn.parent.getScore()) {
+					offspringSuccesses++;
+				}
+				enn.parent = null;
+			}
+		}
+	}
+
+	/**
+	 * Passt die Mutationsrate nach der 1/5-Erfolgsregel an: War mehr als ein
+	 * Fünftel der seit der letzten Anpassung getesteten Nachkommen besser als ihr
+	 * Elternteil, wird die Mutationsrate erhöht, bei weniger verringert.
+	 */
+	private void adaptMutationRate() {
+		if (offspringCount > 0) {
+			double successRate = offspringSuccesses / (double) offspringCount;
+			if (successRate > 0.2) {
+				mutationRate /= 0.85;
+			} else if (successRate < 0.2) {
+				mutationRate *= 0.85;
+			}
+			mutationRate = Math.max(minMutationRate, Math.min(maxMutationRate, mutationRate));
+		}
+		offspringCount = 0;
+		offspringSuccesses = 0;
 	}
 
 	/**
@@ -95,10 +432,18 @@ public class EvolutionalTrainer {
 	 * behaltenen {@link NeuralNetwork}s ersetzt.
 	 */
 	private void generateNewNetworks() {
+		double tau = 1 / Math.sqrt(networks.get(0).getNeuralNetwork().getParameterCount());
 		for (int i = keepAmount; i < networks.size(); i++) {
-			int randIndex = (int) (Math.random() * Math.random() * keepAmount);
-			networks.set(i, new EvolutionalNeuralNetwork(networks.get(randIndex).getNeuralNetwork().getCopy()));
-			networks.get(i).mutate(mutationRate);
+			int randIndex = (int) (random.nextDouble() * random.nextDouble() * keepAmount);
+			EvolutionalNeuralNetwork parent = networks.get(randIndex);
+			EvolutionalNeuralNetwork child = new EvolutionalNeuralNetwork(parent.getNeuralNetwork().getCopy());
+			child.parent = parent;
+			if (mutationRateControl.equals(SELF_ADAPTIVE)) {
+				double rate = parent.getMutationRate() * Math.exp(tau * random.nextGaussian());
+				child.mutationRate = Math.max(minMutationRate, Math.min(maxMutationRate, rate));
+			}
+			networks.set(i, child);
+			child.mutate(child.getMutationRate());
 		}
 	}
 
@@ -113,10 +458,15 @@ public class EvolutionalTrainer {
 	}
 
 	/**
-	 * Sortiert die {@link NeuralNetwork}s absteigend nach Score.
+	 * Sortiert die {@link NeuralNetwork}s absteigend nach Score. Bei gleichem
+	 * Score steht das ältere {@link NeuralNetwork} vorne, sodass die Reihenfolge
+	 * nicht davon abhängt, welcher Thread zuerst fertig war.
 	 */
 	private void sortNetworks() {
-		networks.sort((n1, n2) -> (int) Math.signum(n2.getScore() - n1.getScore()));
+		networks.sort((n1, n2) -> {
+			int result = Double.compare(n2.getScore(), n1.getScore());
+			return result != 0 ? result : Long.compare(n1.id, n2.id);
+		});
 	}
 
 	/**
@@ -139,6 +489,125 @@ public class EvolutionalTrainer {
 		this.mutationRate = mutationRate;
 	}
 
+	/**
+	 * Gibt die aktuelle Mutationsrate zurück. Bei {@link #SELF_ADAPTIVE} ist das
+	 * die Mutationsrate des besten {@link NeuralNetwork}s.
+	 * 
+	 * @return Die Mutationsrate.
+	 */
+	public double getMutationRate() {
+		if (mutationRateControl.equals(SELF_ADAPTIVE)) {
+			return networks.get(0).getMutationRate();
+		}
+		return mutationRate;
+	}
+
+	/**
+	 * Setzt die Art, wie die Mutationsrate angepasst wird.<br>
+	 * Folgende Arten sind möglich:<br>
+	 * <br>
+	 * {@link #FIXED}: Die Mutationsrate bleibt unverändert.<br>
+	 * {@link #ONE_FIFTH_RULE}: Die Mutationsrate wird nach der 1/5-Erfolgsregel
+	 * anhand des Anteils der Nachkommen angepasst, die besser als ihr Elternteil
+	 * sind.<br>
+	 * {@link #SELF_ADAPTIVE}: Jedes {@link NeuralNetwork} hat eine eigene
+	 * Mutationsrate, die mit vererbt und selbst mutiert wird.<br>
+	 * 
+	 * @param mutationRateControl
+	 *            Die Art, wie die Mutationsrate angepasst wird.
+	 */
+	public void setMutationRateControl(String mutationRateControl) {
+		if (!mutationRateControl.equals(FIXED) && !mutationRateControl.equals(ONE_FIFTH_RULE)
+				&& !mutationRateControl.equals(SELF_ADAPTIVE)) {
+			throw new IllegalArgumentException(
+					"Mutation rate control \"" + mutationRateControl + "\" does not exist!");
+		}
+		this.mutationRateControl = mutationRateControl;
+	}
+
+	/**
+	 * Setzt die Grenzen, in denen die Mutationsrate angepasst wird.
+	 * 
+	 * @param minMutationRate
+	 *            Die kleinste Mutationsrate.
+	 * @param maxMutationRate
+	 *            Die größte Mutationsrate.
+	 */
+	public void setMutationRateLimits(double minMutationRate, double maxMutationRate) {
+		this.minMutationRate = minMutationRate;
+		this.maxMutationRate = maxMutationRate;
+	}
+
+	/**
+	 * Setzt die Anzahl der Iterationen, nach denen die Mutationsrate bei
+	 * {@link #ONE_FIFTH_RULE} angepasst wird.
+	 * 
+	 * @param adaptationInterval
+	 *            Die Anzahl der Iterationen.
+	 */
+	public void setAdaptationInterval(int adaptationInterval) {
+		this.adaptationInterval = adaptationInterval;
+	}
+
+	/**
+	 * Gibt die Highscores aller bisherigen Iterationen in einer Liste zurück.
+	 * 
+	 * @return Eine Liste mit den Highscores.
+	 */
+	public List<Double> getHighscoreHistory() {
+		return Collections.unmodifiableList(highscoreHistory);
+	}
+
+	/**
+	 * Setzt die Anzahl der Spiele, die in
+	 * {@link #doIteration(RacingTester, boolean) doIteration} pro Runde gespielt
+	 * werden, und die Breite der Konfidenzintervalle in Standardabweichungen.
+	 * 
+	 * @param racingBatchSize
+	 *            Die Anzahl der Spiele pro Runde.
+	 * @param racingDeviations
+	 *            Die halbe Breite der Konfidenzintervalle in
+	 *            Standardabweichungen.
+	 */
+	public void setRacingParameters(int racingBatchSize, double racingDeviations) {
+		this.racingBatchSize = racingBatchSize;
+		this.racingDeviations = racingDeviations;
+	}
+
+	/**
+	 * Setzt, wie viele {@link NeuralNetwork}s ein {@link BatchTester} mit
+	 * Multithreading mindestens gemeinsam testet. Standardwert ist {@code 8}.
+	 * 
+	 * @param minBatchSize
+	 *            Die kleinste Gruppengröße.
+	 */
+	public void setMinBatchSize(int minBatchSize) {
+		this.minBatchSize = Math.max(1, minBatchSize);
+	}
+
+	/**
+	 * Gibt den {@link Mutator} zurück, mit dem die {@link NeuralNetwork}s in
+	 * {@link #generateNewNetworks() generateNewNetworks} mutiert werden.
+	 * 
+	 * @return Der {@link Mutator}.
+	 */
+	public Mutator getMutator() {
+		return mutator;
+	}
+
+	/**
+	 * Setzt den {@link Mutator}, mit dem die {@link NeuralNetwork}s in
+	 * {@link #generateNewNetworks() generateNewNetworks} mutiert werden. Der
+	 * Startwert seines Zufallsgenerators wird vom Trainer festgelegt.
+	 * 
+	 * @param mutator
+	 *            Der {@link Mutator}.
+	 */
+	public void setMutator(Mutator mutator) {
+		mutator.setSeed(random.nextLong());
+		this.mutator = mutator;
+	}
+
 	/**
 	 * Gibt eine Kopie des {@link NeuralNetwork}s mit dem höchsten Score zurück.
 	 * 
@@ -171,6 +640,57 @@ public class EvolutionalTrainer {
 		public double test(NeuralNetwork nn);
 	}
 
+	/**
+	 * Ein Interface, das in
+	 * {@link EvolutionalTrainer#doIteration(RacingTester, boolean) doIteration}
+	 * verwendet wird, um ein {@link NeuralNetwork} schrittweise zu testen. Ein
+	 * Test besteht aus {@link #getGameCount()} Spielen, deren Ergebnisse zwischen
+	 * {@link #getMinResult()} und {@link #getMaxResult()} liegen. Der Score ist
+	 * der Durchschnitt der Ergebnisse.
+	 */
+	public interface RacingTester {
+		public int getGameCount();
+
+		public double getMinResult();
+
+		public double getMaxResult();
+
+		/**
+		 * Spielt die Spiele {@code fromGame} (inklusive) bis {@code toGame}
+		 * (exklusive) und schreibt das Ergebnis jedes Spiels {@code g} nach
+		 * {@code results[g]}.
+		 * 
+		 * @param nn
+		 *            Das {@link NeuralNetwork}, das getestet wird.
+		 * @param fromGame
+		 *            Der Index des ersten Spiels.
+		 * @param toGame
+		 *            Der Index nach dem letzten Spiel.
+		 * @param results
+		 *            Das Array für die Ergebnisse.
+		 */
+		public void test(NeuralNetwork nn, int fromGame, int toGame, double[] results);
+	}
+
+	/**
+	 * Ein Interface, das in
+	 * {@link EvolutionalTrainer#doIteration(BatchTester, boolean) doIteration}
+	 * verwendet wird, um mehrere {@link NeuralNetwork}s mit gleicher Struktur
+	 * gemeinsam zu testen.
+	 */
+	public interface BatchTester {
+		/**
+		 * Testet die {@link NeuralNetwork}s {@code nns} und schreibt den Score von
+		 * {@code nns[i]} nach {@code scores[i]}.
+		 * 
+		 * @param nns
+		 *            Die {@link NeuralNetwork}s, die getestet werden.
+		 * @param scores
+		 *            Das Array für die Scores.
+		 */
+		public void test(NeuralNetwork[] nns, double[] scores);
+	}
+
 	/**
 	 * Klasse, die ein {@link NeuralNetwork} und einen Score hält.
 	 */
@@ -178,6 +698,9 @@ public class EvolutionalTrainer {
 		private final NeuralNetwork neuralNetwork;
 		private double score;
 		private boolean tested = false;
+		private double mutationRate = Double.NaN;
+		private EvolutionalNeuralNetwork parent;
+		private final long id = nextId++;
 
 		public EvolutionalNeuralNetwork(NeuralNetwork neuralNetwork) {
 			this.neuralNetwork = neuralNetwork;
@@ -197,21 +720,25 @@ public class EvolutionalTrainer {
 		}
 
 		/**
-		 * Mutiert das {@link NeuralNetwork}.
+		 * Gibt die eigene Mutationsrate zurück, die bei {@link #SELF_ADAPTIVE}
+		 * genutzt wird. Ohne eigene Mutationsrate wird die Mutationsrate des
+		 * Trainers zurückgegeben.
+		 * 
+		 * @return Die Mutationsrate.
+		 */
+		public double getMutationRate() {
+			return Double.isNaN(mutationRate) ? EvolutionalTrainer.this.mutationRate : mutationRate;
+		}
+
+		/**
+		 * Mutiert das {@link NeuralNetwork} mit dem {@link Mutator} des Trainers.
 		 * 
 		 * @param mutationRate
 		 *            Die Rate, die angibt, wie stark das {@link NeuralNetwork} mutiert
 		 *            werden soll.
 		 */
 		public void mutate(double mutationRate) {
-			for (int w = 0; w < neuralNetwork.getWeights().length; w++) {
-				neuralNetwork.getWeights()[w] = neuralNetwork.getWeights()[w]
-						.map((x, i, j) -> x + ((Math.random() * mutationRate * 2) - mutationRate) * x);
-			}
-			for (int b = 0; b < neuralNetwork.getBiases().length; b++) {
-				neuralNetwork.getBiases()[b] = neuralNetwork.getBiases()[b]
-						.map((x, i, j) -> x + ((Math.random() * mutationRate * 2) - mutationRate) * x);
-			}
+			mutator.mutate(neuralNetwork, mutationRate);
 		}
 	}
 }
@@ -0,0 +1,135 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import de.jrk.neuralnetwork.ActivationFunction;
+import de.jrk.neuralnetwork.InferenceFunction;
+
+/**
+ * Ein {@link Genome} in einer flachen Form, die ohne Objekte für Neuronen und
+ * Verbindungen ausgeführt werden kann. Die Neuronen sind topologisch sortiert
+ * und ihre Werte liegen in einem Array, die eingehenden Verbindungen jedes
+ * Neurons liegen hintereinander als Index des Eingangsneurons und Gewicht.
+ * Neuronen, von denen kein Output abhängt, werden weggelassen.<br>
+ * <br>
+ * Ein {@link ExecutionPlan} ist unveränderlich und kann von beliebig vielen
+ * Threads gleichzeitig genutzt werden.
+ */
+public class ExecutionPlan implements InferenceFunction {
+	private final String activationFunction;
+	private final int inputCount;
+	private final int[] connectionStarts;
+	private final int[] sources;
+	private final double[] weights;
+	private final double[] biases;
+	private final int[] outputSlots;
+	private final ThreadLocal<double[]> values;
+
+	/**
+	 * Erzeugt den {@link ExecutionPlan} für das {@link Genome} {@code genome}.
+	 * 
+	 * @param genome
+	 *            Das {@link Genome}.
+	 */
+	public ExecutionPlan(Genome genome) {
+		activationFunction = genome.getActivationFunction();
+		inputCount = genome.getInputCount();
+		int outputCount = genome.getOutputCount();
+		HashMap<Integer, Double> nodeBiases = genome.getBiases();
+		ArrayList<double[]> connections = genome.getEnabledConnections();
+		HashMap<Integer, ArrayList<double[]>> incoming = new HashMap<Integer, ArrayList<double[]>>();
+		for (Integer node : nodeBiases.keySet()) {
+			incoming.put(node, new ArrayList<double[]>());
+		}
+		for (double[] connection : connections) {
+			incoming.get((int) connection[1]).add(connection);
+		}
+
+		ArrayList<Integer> order = new ArrayList<Integer>();
+		HashMap<Integer, Integer> slots = new HashMap<Integer, Integer>();
+		for (int i = 0; i < inputCount; i++) {
+			slots.put(i, i);
+		}
+		for (int o = inputCount; o < inputCount + outputCount; o++) {
+			visit(o, incoming, slots, order);
+		}
+
+		connectionStarts = new int[order.size() + 1];
+		biases = new double[order.size()];
+		int connectionCount = 0;
+		for (int node : order) {
+			connectionCount += incoming.get(node).size();
+		}
+		sources = new int[connectionCount];
+		weights = new double[connectionCount];
+		int c = 0;
+		for (int n = 0; n < order.size(); n++) {
+			connectionStarts[n] = c;
+			biases[n] = nodeBiases.get(order.get(n));
+			for (double[] connection : incoming.get(order.get(n))) {
+				sources[c] = slots.get((int) connection[0]);
+				weights[c] = connection[2];
+				c++;
+			}
+		}
+		connectionStarts[order.size()] = c;
+		outputSlots = new int[outputCount];
+		for (int o = 0; o < outputCount; o++) {
+			outputSlots[o] = slots.get(inputCount + o);
+		}
+		int slotCount = inputCount + order.size();
+		values = ThreadLocal.withInitial(() -> new double[slotCount]);
+	}
+
+	/**
+	 * Sortiert das Neuron {@code node} nach allen Neuronen ein, von denen es
+	 * abhängt (Tiefensuche). Das {@link Genome} ist azyklisch.
+	 */
+	private void visit(int node, HashMap<Integer, ArrayList<double[]>> incoming, HashMap<Integer, Integer> slots,
+			ArrayList<Integer> order) {
+		if (slots.containsKey(node)) {
+			return;
+		}
+		for (double[] connection : incoming.get(node)) {
+			visit((int) connection[0], incoming, slots, order);
+		}
+		slots.put(node, inputCount + order.size());
+		order.add(node);
+	}
+
+	@Override
+	public double[] feedforward(double[] inputs, double[] outputs) {
+		double[] v = values.get();
+		System.arraycopy(inputs, 0, v, 0, inputCount);
+		for (int n = 0; n < biases.length; n++) {
+			double sum = 0;
+			for (int c = connectionStarts[n]; c < connectionStarts[n + 1]; c++) {
+				sum += weights[c] * v[sources[c]];
+			}
+			v[inputCount + n] = ActivationFunction.function(activationFunction, sum + biases[n]);
+		}
+		for (int o = 0; o < outputSlots.length; o++) {
+			outputs[o] = v[outputSlots[o]];
+		}
+		return outputs;
+	}
+
+	/**
+	 * Gibt die Anzahl der berechneten Neuronen zurück.
+	 * 
+	 * @return Die Anzahl der Neuronen ohne die Inputs.
+	 */
+	public int getNodeCount() {
+		return biases.length;
+	}
+
+	/**
+	 * Gibt die Anzahl der Multiplikationen pro Durchlauf zurück.
+	 * 
+	 * @return Die Anzahl der Verbindungen.
+	 */
+	public int getConnectionCount() {
+		return weights.length;
+	}
+}
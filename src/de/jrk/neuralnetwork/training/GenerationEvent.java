@@ -0,0 +1,35 @@
+package de.jrk.neuralnetwork.training;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ein Java Flight Recorder Event für eine ganze Iteration eines
+ * {@link EvolutionalTrainer}s. Die einzelnen Abschnitte der Iteration werden
+ * als {@link GenerationPhaseEvent}s aufgezeichnet.
+ */
+@Name("de.jrk.Generation")
+@Label("Generation")
+@Category({ "Neural Network", "Training" })
+@Description("One iteration of an evolutional trainer")
+@StackTrace(false)
+class GenerationEvent extends Event {
+	@Label("Iteration")
+	int iteration;
+
+	@Label("Evaluation Mode")
+	String mode;
+
+	@Label("Tested Networks")
+	int testedNetworks;
+
+	@Label("Highscore")
+	double highscore;
+
+	@Label("Mutation Rate")
+	double mutationRate;
+}
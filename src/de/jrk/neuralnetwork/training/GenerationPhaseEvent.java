@@ -0,0 +1,29 @@
+package de.jrk.neuralnetwork.training;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ein Java Flight Recorder Event für einen Abschnitt einer Iteration eines
+ * {@link EvolutionalTrainer}s: das Testen ({@link #EVALUATION}), das Sortieren
+ * ({@link #SORT}) oder das Erzeugen der mutierten {@link de.jrk.neuralnetwork.NeuralNetwork
+ * NeuralNetwork}s ({@link #MUTATION}).
+ */
+@Name("de.jrk.GenerationPhase")
+@Label("Generation Phase")
+@Category({ "Neural Network", "Training" })
+@Description("A phase of an iteration of an evolutional trainer")
+@StackTrace(false)
+class GenerationPhaseEvent extends Event {
+	static final String EVALUATION = "evaluation", SORT = "sort", MUTATION = "mutation";
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Iteration")
+	int iteration;
+}
@@ -0,0 +1,468 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
+import de.jrk.neuralnetwork.ActivationFunction;
+
+/**
+ * Das Erbgut eines neuronalen Netzwerkes mit beliebiger, azyklischer
+ * Topologie, wie es von NEAT (NeuroEvolution of Augmenting Topologies)
+ * verwendet wird. Es besteht aus Neuronen mit Schwellenwerten und gewichteten
+ * Verbindungen mit Innovationsnummern. Die Neuronen {@code 0} bis
+ * {@code inputCount-1} sind die Inputs, danach folgen die Outputs.<br>
+ * <br>
+ * Zum Ausführen wird das {@link Genome} in einen {@link ExecutionPlan}
+ * übersetzt, der bis zur nächsten Änderung zwischengespeichert wird.
+ */
+public class Genome {
+	private static final double WEIGHT_RANGE = 2;
+
+	private final String activationFunction;
+	private final int inputCount;
+	private final int outputCount;
+	private final ArrayList<NodeGene> nodes = new ArrayList<NodeGene>();
+	private final ArrayList<ConnectionGene> connections = new ArrayList<ConnectionGene>();
+	private volatile ExecutionPlan executionPlan;
+
+	/**
+	 * Erzeugt ein {@link Genome} ohne versteckte Neuronen, in dem jeder Input mit
+	 * jedem Output verbunden ist.
+	 * 
+	 * @param activationFunction
+	 *            Die {@link ActivationFunction} aller Neuronen.
+	 * @param inputCount
+	 *            Die Anzahl der Inputs.
+	 * @param outputCount
+	 *            Die Anzahl der Outputs.
+	 * @param innovations
+	 *            Der {@link InnovationTracker} der Population.
+	 * @param random
+	 *            Der Zufallsgenerator für die Gewichte.
+	 */
+	public Genome(String activationFunction, int inputCount, int outputCount, InnovationTracker innovations,
+			Random random) {
+		this(activationFunction, inputCount, outputCount);
+		for (int i = 0; i < inputCount + outputCount; i++) {
+			nodes.add(new NodeGene(i, i < inputCount ? 0 : randomWeight(random)));
+		}
+		for (int o = inputCount; o < inputCount + outputCount; o++) {
+			for (int i = 0; i < inputCount; i++) {
+				connections.add(new ConnectionGene(innovations.getConnectionInnovation(i, o), i, o,
+						randomWeight(random), true));
+			}
+		}
+	}
+
+	private Genome(String activationFunction, int inputCount, int outputCount) {
+		ActivationFunction.function(activationFunction, 0);
+		this.activationFunction = activationFunction;
+		this.inputCount = inputCount;
+		this.outputCount = outputCount;
+	}
+
+	/**
+	 * Gibt den {@link ExecutionPlan} dieses {@link Genome}s zurück. Er wird nur
+	 * beim ersten Aufruf nach einer Änderung erzeugt.
+	 * 
+	 * @return Der {@link ExecutionPlan}.
+	 */
+	public ExecutionPlan getExecutionPlan() {
+		ExecutionPlan plan = executionPlan;
+		if (plan == null) {
+			plan = new ExecutionPlan(this);
+			executionPlan = plan;
+		}
+		return plan;
+	}
+
+	/**
+	 * Verändert die Gewichte und die Struktur dieses {@link Genome}s zufällig.
+	 * 
+	 * @param settings
+	 *            Die Wahrscheinlichkeiten der Mutationen.
+	 * @param innovations
+	 *            Der {@link InnovationTracker} der Population.
+	 * @param random
+	 *            Der Zufallsgenerator.
+	 */
+	void mutate(NEATTrainer settings, InnovationTracker innovations, Random random) {
+		if (random.nextDouble() < settings.getWeightMutationProbability()) {
+			double power = settings.getWeightMutationPower();
+			for (ConnectionGene connection : connections) {
+				connection.weight = mutateWeight(connection.weight, power, random);
+			}
+			for (int n = inputCount; n < nodes.size(); n++) {
+				nodes.get(n).bias = mutateWeight(nodes.get(n).bias, power, random);
+			}
+		}
+		if (random.nextDouble() < settings.getAddConnectionProbability()) {
+			addConnection(innovations, random);
+		}
+		if (random.nextDouble() < settings.getAddNodeProbability()) {
+			addNode(innovations, random);
+		}
+		if (random.nextDouble() < settings.getRemoveConnectionProbability() && !connections.isEmpty()) {
+			connections.remove(random.nextInt(connections.size()));
+		}
+		if (random.nextDouble() < settings.getRemoveNodeProbability()) {
+			removeNode(random);
+		}
+		executionPlan = null;
+	}
+
+	private static double mutateWeight(double weight, double power, Random random) {
+		if (random.nextDouble() < 0.1) {
+			return randomWeight(random);
+		}
+		return weight + random.nextGaussian() * power;
+	}
+
+	private static double randomWeight(Random random) {
+		return (random.nextDouble() * 2 - 1) * WEIGHT_RANGE;
+	}
+
+	/**
+	 * Fügt eine neue Verbindung zwischen zwei noch nicht verbundenen Neuronen
+	 * ein, ohne einen Zyklus zu erzeugen.
+	 */
+	private void addConnection(InnovationTracker innovations, Random random) {
+		for (int attempt = 0; attempt < 20; attempt++) {
+			NodeGene from = nodes.get(random.nextInt(nodes.size()));
+			NodeGene to = nodes.get(random.nextInt(nodes.size()));
+			if (isInput(to.id) || isOutput(from.id) || from.id == to.id || getConnection(from.id, to.id) != null
+					|| isReachable(to.id, from.id)) {
+				continue;
+			}
+			connections.add(new ConnectionGene(innovations.getConnectionInnovation(from.id, to.id), from.id, to.id,
+					randomWeight(random), true));
+			return;
+		}
+	}
+
+	/**
+	 * Teilt eine aktive Verbindung durch ein neues Neuron. Die eingehende
+	 * Verbindung bekommt das Gewicht 1, die ausgehende das alte Gewicht.
+	 */
+	private void addNode(InnovationTracker innovations, Random random) {
+		ArrayList<ConnectionGene> enabled = new ArrayList<ConnectionGene>();
+		for (ConnectionGene connection : connections) {
+			if (connection.enabled) {
+				enabled.add(connection);
+			}
+		}
+		if (enabled.isEmpty()) {
+			return;
+		}
+		ConnectionGene split = enabled.get(random.nextInt(enabled.size()));
+		int node = innovations.getSplitNode(split.innovation, this);
+		split.enabled = false;
+		nodes.add(new NodeGene(node, 0));
+		connections.add(new ConnectionGene(innovations.getConnectionInnovation(split.from, node), split.from, node,
+				1, true));
+		connections.add(new ConnectionGene(innovations.getConnectionInnovation(node, split.to), node, split.to,
+				split.weight, true));
+	}
+
+	/**
+	 * Entfernt ein verstecktes Neuron mit allen seinen Verbindungen.
+	 */
+	private void removeNode(Random random) {
+		int hiddenCount = nodes.size() - inputCount - outputCount;
+		if (hiddenCount == 0) {
+			return;
+		}
+		NodeGene node = nodes.remove(inputCount + outputCount + random.nextInt(hiddenCount));
+		connections.removeIf(connection -> connection.from == node.id || connection.to == node.id);
+	}
+
+	/**
+	 * Gibt zurück, ob das Neuron {@code to} vom Neuron {@code from} aus über
+	 * (auch deaktivierte) Verbindungen erreichbar ist.
+	 */
+	private boolean isReachable(int from, int to) {
+		HashSet<Integer> visited = new HashSet<Integer>();
+		ArrayList<Integer> stack = new ArrayList<Integer>();
+		stack.add(from);
+		while (!stack.isEmpty()) {
+			int node = stack.remove(stack.size() - 1);
+			if (node == to) {
+				return true;
+			}
+			if (visited.add(node)) {
+				for (ConnectionGene connection : connections) {
+					if (connection.from == node) {
+						stack.add(connection.to);
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Kreuzt dieses {@link Genome} mit dem {@link Genome} {@code other}. Dieses
+	 * {@link Genome} muss das bessere sein, seine Struktur wird übernommen. Die
+	 * Gewichte der Verbindungen, die in beiden {@link Genome}s vorkommen, werden
+	 * zufällig von einem der beiden genommen. Ist eine Verbindung in einem der
+	 * beiden deaktiviert, ist sie es mit 75% Wahrscheinlichkeit auch im Kind.
+	 * 
+	 * @param other
+	 *            Das schlechtere {@link Genome}.
+	 * @param random
+	 *            Der Zufallsgenerator.
+	 * @return Das neue {@link Genome}.
+	 */
+	Genome crossover(Genome other, Random random) {
+		HashMap<Integer, ConnectionGene> otherConnections = new HashMap<Integer, ConnectionGene>();
+		for (ConnectionGene connection : other.connections) {
+			otherConnections.put(connection.innovation, connection);
+		}
+		HashMap<Integer, NodeGene> otherNodes = new HashMap<Integer, NodeGene>();
+		for (NodeGene node : other.nodes) {
+			otherNodes.put(node.id, node);
+		}
+		Genome child = new Genome(activationFunction, inputCount, outputCount);
+		for (NodeGene node : nodes) {
+			NodeGene otherNode = otherNodes.get(node.id);
+			child.nodes.add(new NodeGene(node.id,
+					otherNode != null && random.nextBoolean() ? otherNode.bias : node.bias));
+		}
+		for (ConnectionGene connection : connections) {
+			ConnectionGene otherConnection = otherConnections.get(connection.innovation);
+			ConnectionGene gene = otherConnection != null && random.nextBoolean() ? otherConnection : connection;
+			boolean enabled = connection.enabled && (otherConnection == null || otherConnection.enabled)
+					|| random.nextDouble() < 0.25;
+			child.connections.add(new ConnectionGene(connection.innovation, connection.from, connection.to,
+					gene.weight, enabled));
+		}
+		return child;
+	}
+
+	/**
+	 * Berechnet den Abstand zwischen diesem {@link Genome} und dem
+	 * {@link Genome} {@code other} aus der Anzahl der Verbindungen, die nur in
+	 * einem der beiden vorkommen, und dem durchschnittlichen Unterschied der
+	 * Gewichte der gemeinsamen Verbindungen.
+	 * 
+	 * @param other
+	 *            Das andere {@link Genome}.
+	 * @param disjointCoefficient
+	 *            Die Gewichtung der nicht gemeinsamen Verbindungen.
+	 * @param weightCoefficient
+	 *            Die Gewichtung des Unterschieds der Gewichte.
+	 * @return Der Abstand.
+	 */
+	double getDistance(Genome other, double disjointCoefficient, double weightCoefficient) {
+		HashMap<Integer, ConnectionGene> otherConnections = new HashMap<Integer, ConnectionGene>();
+		for (ConnectionGene connection : other.connections) {
+			otherConnections.put(connection.innovation, connection);
+		}
+		int matching = 0;
+		double weightDifference = 0;
+		for (ConnectionGene connection : connections) {
+			ConnectionGene otherConnection = otherConnections.get(connection.innovation);
+			if (otherConnection != null) {
+				matching++;
+				weightDifference += Math.abs(connection.weight - otherConnection.weight);
+			}
+		}
+		int disjoint = connections.size() + other.connections.size() - 2 * matching;
+		int size = Math.max(1, Math.max(connections.size(), other.connections.size()));
+		return disjointCoefficient * disjoint / size + weightCoefficient * (matching == 0 ? 0 : weightDifference / matching);
+	}
+
+	/**
+	 * Erstellt eine Kopie dieses {@link Genome}s.
+	 * 
+	 * @return Eine Kopie dieses {@link Genome}s.
+	 */
+	public Genome getCopy() {
+		Genome copy = new Genome(activationFunction, inputCount, outputCount);
+		for (NodeGene node : nodes) {
+			copy.nodes.add(new NodeGene(node.id, node.bias));
+		}
+		for (ConnectionGene connection : connections) {
+			copy.connections.add(new ConnectionGene(connection.innovation, connection.from, connection.to,
+					connection.weight, connection.enabled));
+		}
+		copy.executionPlan = executionPlan;
+		return copy;
+	}
+
+	private ConnectionGene getConnection(int from, int to) {
+		for (ConnectionGene connection : connections) {
+			if (connection.from == from && connection.to == to) {
+				return connection;
+			}
+		}
+		return null;
+	}
+
+	boolean hasNode(int id) {
+		for (NodeGene node : nodes) {
+			if (node.id == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isInput(int id) {
+		return id < inputCount;
+	}
+
+	private boolean isOutput(int id) {
+		return id >= inputCount && id < inputCount + outputCount;
+	}
+
+	/**
+	 * Gibt die Aktivierungsfunktion zurück, die dieses {@link Genome} nutzt.
+	 * 
+	 * @return Die Aktivierungsfunktion.
+	 */
+	public String getActivationFunction() {
+		return activationFunction;
+	}
+
+	/**
+	 * Gibt die Anzahl der Inputs zurück.
+	 * 
+	 * @return Die Anzahl der Inputs.
+	 */
+	public int getInputCount() {
+		return inputCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der Outputs zurück.
+	 * 
+	 * @return Die Anzahl der Outputs.
+	 */
+	public int getOutputCount() {
+		return outputCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der versteckten Neuronen zurück.
+	 * 
+	 * @return Die Anzahl der versteckten Neuronen.
+	 */
+	public int getHiddenCount() {
+		return nodes.size() - inputCount - outputCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der aktiven Verbindungen zurück.
+	 * 
+	 * @return Die Anzahl der aktiven Verbindungen.
+	 */
+	public int getConnectionCount() {
+		int count = 0;
+		for (ConnectionGene connection : connections) {
+			if (connection.enabled) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gibt die Schwellenwerte aller Neuronen nach ihrer Nummer zurück.
+	 * 
+	 * @return Die Schwellenwerte.
+	 */
+	HashMap<Integer, Double> getBiases() {
+		HashMap<Integer, Double> biases = new HashMap<Integer, Double>();
+		for (NodeGene node : nodes) {
+			biases.put(node.id, node.bias);
+		}
+		return biases;
+	}
+
+	/**
+	 * Gibt die aktiven Verbindungen als Arrays mit Eingangsneuron,
+	 * Ausgangsneuron und Gewicht zurück.
+	 * 
+	 * @return Die aktiven Verbindungen.
+	 */
+	ArrayList<double[]> getEnabledConnections() {
+		ArrayList<double[]> result = new ArrayList<double[]>();
+		for (ConnectionGene connection : connections) {
+			if (connection.enabled) {
+				result.add(new double[] { connection.from, connection.to, connection.weight });
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		result.append(activationFunction).append(':').append(inputCount).append(':').append(outputCount).append(':');
+		for (int n = 0; n < nodes.size(); n++) {
+			result.append(n == 0 ? "" : ";").append(nodes.get(n).id).append(',').append(nodes.get(n).bias);
+		}
+		result.append(':');
+		for (int c = 0; c < connections.size(); c++) {
+			ConnectionGene connection = connections.get(c);
+			result.append(c == 0 ? "" : ";").append(connection.innovation).append(',').append(connection.from)
+					.append(',').append(connection.to).append(',').append(connection.weight).append(',')
+					.append(connection.enabled ? 1 : 0);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Erzeugt ein {@link Genome} aus einem String, der mit
+	 * {@link #toString() toString} erzeugt wurde.
+	 * 
+	 * @param string
+	 *            Der String.
+	 * @return Das {@link Genome}.
+	 */
+	public static Genome fromString(String string) {
+		String[] parts = string.split(":", -1);
+		Genome genome = new Genome(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+		for (String node : parts[3].split(";")) {
+			String[] values = node.split(",");
+			genome.nodes.add(new NodeGene(Integer.parseInt(values[0]), Double.parseDouble(values[1])));
+		}
+		if (!parts[4].isEmpty()) {
+			for (String connection : parts[4].split(";")) {
+				String[] values = connection.split(",");
+				genome.connections.add(new ConnectionGene(Integer.parseInt(values[0]), Integer.parseInt(values[1]),
+						Integer.parseInt(values[2]), Double.parseDouble(values[3]), values[4].equals("1")));
+			}
+		}
+		return genome;
+	}
+
+	private static class NodeGene {
+		private final int id;
+		private double bias;
+
+		private NodeGene(int id, double bias) {
+			this.id = id;
+			this.bias = bias;
+		}
+	}
+
+	private static class ConnectionGene {
+		private final int innovation;
+		private final int from;
+		private final int to;
+		private double weight;
+		private boolean enabled;
+
+		private ConnectionGene(int innovation, int from, int to, double weight, boolean enabled) {
+			this.innovation = innovation;
+			this.from = from;
+			this.to = to;
+			this.weight = weight;
+			this.enabled = enabled;
+		}
+	}
+}
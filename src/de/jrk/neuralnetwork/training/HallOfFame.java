@@ -0,0 +1,250 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.WeakHashMap;
+
+import de.jrk.neuralnetwork.NetworkSnapshot;
+
+/**
+ * Ein Archiv mit begrenzter Größe für frühere beste {@link NetworkSnapshot}s,
+ * z.B. als zusätzliche Gegner. Zwei {@link NetworkSnapshot}s gelten als gleich,
+ * wenn sie in einer festen Menge von Teststellungen dieselben Züge wählen
+ * (Verhaltens-Fingerabdruck). Von gleichen {@link NetworkSnapshot}s wird nur der
+ * mit der besten Bewertung behalten.<br>
+ * <br>
+ * Ist das Archiv voll, wird der Eintrag mit dem kleinsten Wert aus Bewertung
+ * und Eigenständigkeit entfernt. Die Eigenständigkeit ist der Anteil der
+ * Teststellungen, in denen sich ein Eintrag vom ähnlichsten anderen Eintrag
+ * unterscheidet, gewichtet mit {@link #setDiversityWeight(double)
+ * setDiversityWeight}. Alle Methoden sind synchronisiert.
+ */
+public class HallOfFame {
+	private final int capacity;
+	private final double[][] probeInputs;
+	private final boolean[][] legalMoves;
+	private final ArrayList<Entry> entries = new ArrayList<Entry>();
+	private final WeakHashMap<NetworkSnapshot, byte[]> behaviors = new WeakHashMap<NetworkSnapshot, byte[]>();
+	private final double[] outputs;
+	private double diversityWeight = 1;
+
+	/**
+	 * Erzeugt eine neue, leere {@link HallOfFame}.
+	 * 
+	 * @param capacity
+	 *            Die größte Anzahl an Einträgen.
+	 * @param probeInputs
+	 *            Die Inputs der Teststellungen.
+	 * @param legalMoves
+	 *            Für jede Teststellung die Outputs, die als Zug erlaubt sind.
+	 */
+	public HallOfFame(int capacity, double[][] probeInputs, boolean[][] legalMoves) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be at least 1!");
+		}
+		this.capacity = capacity;
+		this.probeInputs = probeInputs;
+		this.legalMoves = legalMoves;
+		outputs = new double[legalMoves[0].length];
+	}
+
+	/**
+	 * Bietet den {@link NetworkSnapshot} {@code snapshot} mit der Bewertung
+	 * {@code rating} für das Archiv an. Hat ein Eintrag das gleiche Verhalten,
+	 * wird er nur ersetzt, wenn {@code rating} besser ist. Ist das Archiv voll,
+	 * wird der schwächste Eintrag entfernt, was auch {@code snapshot} selbst sein
+	 * kann.
+	 * 
+	 * @param snapshot
+	 *            Der {@link NetworkSnapshot}.
+	 * @param rating
+	 *            Die Bewertung, z.B. der Score beim Training.
+	 * @return Ob {@code snapshot} danach im Archiv ist.
+	 */
+	public synchronized boolean offer(NetworkSnapshot snapshot, double rating) {
+		byte[] behavior = getBehavior(snapshot);
+		long fingerprint = hash(behavior);
+		for (Entry entry : entries) {
+			if (entry.fingerprint == fingerprint && Arrays.equals(entry.behavior, behavior)) {
+				if (rating > entry.rating) {
+					entry.snapshot = snapshot;
+					entry.rating = rating;
+				}
+				return entry.snapshot == snapshot;
+			}
+		}
+		Entry candidate = new Entry(snapshot, behavior, fingerprint, rating);
+		entries.add(candidate);
+		if (entries.size() > capacity) {
+			Entry weakest = null;
+			double weakestValue = Double.POSITIVE_INFINITY;
+			for (Entry entry : entries) {
+				double value = entry.rating + diversityWeight * getNovelty(entry);
+				if (value < weakestValue) {
+					weakest = entry;
+					weakestValue = value;
+				}
+			}
+			entries.remove(weakest);
+		}
+		return entries.contains(candidate);
+	}
+
+	/**
+	 * Gibt alle {@link NetworkSnapshot}s im Archiv in einer neuen Liste zurück.
+	 * 
+	 * @return Die {@link NetworkSnapshot}s.
+	 */
+	public synchronized ArrayList<NetworkSnapshot> getMembers() {
+		ArrayList<NetworkSnapshot> members = new ArrayList<NetworkSnapshot>();
+		for (Entry entry : entries) {
+			members.add(entry.snapshot);
+		}
+		return members;
+	}
+
+	/**
+	 * Gibt die {@link NetworkSnapshot}s aus {@code pool} in einer neuen Liste
+	 * zurück, wobei von gleichen {@link NetworkSnapshot}s nur der erste behalten
+	 * wird.
+	 * 
+	 * @param pool
+	 *            Die {@link NetworkSnapshot}s.
+	 * @return Die {@link NetworkSnapshot}s mit unterschiedlichem Verhalten.
+	 */
+	public synchronized ArrayList<NetworkSnapshot> getDistinct(List<NetworkSnapshot> pool) {
+		ArrayList<NetworkSnapshot> distinct = new ArrayList<NetworkSnapshot>();
+		HashMap<Long, ArrayList<byte[]>> seen = new HashMap<Long, ArrayList<byte[]>>();
+		for (NetworkSnapshot snapshot : pool) {
+			byte[] behavior = getBehavior(snapshot);
+			ArrayList<byte[]> sameHash = seen.computeIfAbsent(hash(behavior), k -> new ArrayList<byte[]>());
+			boolean duplicate = false;
+			for (byte[] other : sameHash) {
+				duplicate |= Arrays.equals(other, behavior);
+			}
+			if (!duplicate) {
+				sameHash.add(behavior);
+				distinct.add(snapshot);
+			}
+		}
+		return distinct;
+	}
+
+	/**
+	 * Gibt den Verhaltens-Fingerabdruck des {@link NetworkSnapshot}s
+	 * {@code snapshot} zurück, einen Hash der Züge in allen Teststellungen.
+	 * 
+	 * @param snapshot
+	 *            Der {@link NetworkSnapshot}.
+	 * @return Der Fingerabdruck.
+	 */
+	public synchronized long getFingerprint(NetworkSnapshot snapshot) {
+		return hash(getBehavior(snapshot));
+	}
+
+	/**
+	 * Setzt, wie stark die Eigenständigkeit beim Entfernen gegenüber der
+	 * Bewertung zählt. Standardwert ist {@code 1}.
+	 * 
+	 * @param diversityWeight
+	 *            Das Gewicht der Eigenständigkeit.
+	 */
+	public synchronized void setDiversityWeight(double diversityWeight) {
+		this.diversityWeight = diversityWeight;
+	}
+
+	/**
+	 * Gibt die Anzahl der Einträge zurück.
+	 * 
+	 * @return Die Anzahl der Einträge.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Gibt die größte Anzahl an Einträgen zurück.
+	 * 
+	 * @return Die Kapazität.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gibt die Züge des {@link NetworkSnapshot}s {@code snapshot} in allen
+	 * Teststellungen zurück. Die Züge werden für jeden {@link NetworkSnapshot} nur
+	 * einmal berechnet, solange er noch benutzt wird.
+	 */
+	private byte[] getBehavior(NetworkSnapshot snapshot) {
+		byte[] behavior = behaviors.get(snapshot);
+		if (behavior == null) {
+			behavior = new byte[probeInputs.length];
+			for (int p = 0; p < probeInputs.length; p++) {
+				snapshot.feedforward(probeInputs[p], outputs);
+				boolean[] legal = legalMoves[p];
+				int move = -1;
+				double moveValue = -1;
+				for (int o = 0; o < legal.length; o++) {
+					if (outputs[o] > moveValue && legal[o]) {
+						move = o;
+						moveValue = outputs[o];
+					}
+				}
+				behavior[p] = (byte) move;
+			}
+			behaviors.put(snapshot, behavior);
+		}
+		return behavior;
+	}
+
+	/**
+	 * Berechnet den FNV-1a Hash der Züge {@code behavior}.
+	 */
+	private static long hash(byte[] behavior) {
+		long hash = 0xcbf29ce484222325L;
+		for (byte move : behavior) {
+			hash = (hash ^ (move & 0xFF)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Gibt den Anteil der Teststellungen zurück, in denen sich der Eintrag
+	 * {@code entry} vom ähnlichsten anderen Eintrag unterscheidet.
+	 */
+	private double getNovelty(Entry entry) {
+		int minDistance = probeInputs.length;
+		for (Entry other : entries) {
+			if (other != entry) {
+				int distance = 0;
+				for (int p = 0; p < probeInputs.length && distance < minDistance; p++) {
+					if (entry.behavior[p] != other.behavior[p]) {
+						distance++;
+					}
+				}
+				minDistance = Math.min(minDistance, distance);
+			}
+		}
+		return (double) minDistance / probeInputs.length;
+	}
+
+	/**
+	 * Ein Eintrag im Archiv.
+	 */
+	private static class Entry {
+		private NetworkSnapshot snapshot;
+		private final byte[] behavior;
+		private final long fingerprint;
+		private double rating;
+
+		private Entry(NetworkSnapshot snapshot, byte[] behavior, long fingerprint, double rating) {
+			this.snapshot = snapshot;
+			this.behavior = behavior;
+			this.fingerprint = fingerprint;
+			this.rating = rating;
+		}
+	}
+}
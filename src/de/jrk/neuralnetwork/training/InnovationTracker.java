@@ -0,0 +1,71 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.HashMap;
+
+/**
+ * Vergibt die Innovationsnummern der Verbindungen und die Nummern der Neuronen
+ * für alle {@link Genome}s einer Population. Entsteht dieselbe strukturelle
+ * Mutation in mehreren {@link Genome}s, bekommt sie überall dieselbe Nummer,
+ * sodass die {@link Genome}s bei der Kreuzung und beim Vergleich der Spezies
+ * aneinander ausgerichtet werden können.
+ */
+public class InnovationTracker {
+	private final HashMap<Long, Integer> connectionInnovations = new HashMap<Long, Integer>();
+	private final HashMap<Integer, Integer> splitNodes = new HashMap<Integer, Integer>();
+	private int nextInnovation;
+	private int nextNodeId;
+
+	/**
+	 * Erzeugt einen neuen {@link InnovationTracker}.
+	 * 
+	 * @param firstNodeId
+	 *            Die erste freie Nummer für versteckte Neuronen.
+	 */
+	public InnovationTracker(int firstNodeId) {
+		nextNodeId = firstNodeId;
+	}
+
+	/**
+	 * Gibt die Innovationsnummer der Verbindung vom Neuron {@code from} zum
+	 * Neuron {@code to} zurück.
+	 * 
+	 * @param from
+	 *            Die Nummer des Eingangsneurons.
+	 * @param to
+	 *            Die Nummer des Ausgangsneurons.
+	 * @return Die Innovationsnummer.
+	 */
+	public synchronized int getConnectionInnovation(int from, int to) {
+		long key = ((long) from << 32) | (to & 0xFFFFFFFFL);
+		Integer innovation = connectionInnovations.get(key);
+		if (innovation == null) {
+			innovation = nextInnovation++;
+			connectionInnovations.put(key, innovation);
+		}
+		return innovation;
+	}
+
+	/**
+	 * Gibt die Nummer des Neurons zurück, das beim Teilen der Verbindung mit der
+	 * Innovationsnummer {@code innovation} entsteht. Hat das {@link Genome}
+	 * {@code genome} dieses Neuron schon, bekommt nur dieses {@link Genome} eine
+	 * neue Nummer, damit spätere {@link Genome}s weiter die ursprüngliche Nummer
+	 * bekommen.
+	 * 
+	 * @param innovation
+	 *            Die Innovationsnummer der geteilten Verbindung.
+	 * @param genome
+	 *            Das {@link Genome}, in dem die Verbindung geteilt wird.
+	 * @return Die Nummer des neuen Neurons.
+	 */
+	public synchronized int getSplitNode(int innovation, Genome genome) {
+		Integer node = splitNodes.get(innovation);
+		if (node == null) {
+			node = nextNodeId++;
+			splitNodes.put(innovation, node);
+		} else if (genome.hasNode(node)) {
+			return nextNodeId++;
+		}
+		return node;
+	}
+}
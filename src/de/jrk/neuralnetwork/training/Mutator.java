@@ -0,0 +1,275 @@
+package de.jrk.neuralnetwork.training;
+
+import java.nio.DoubleBuffer;
+import java.util.Random;
+
+import de.jrk.neuralnetwork.Matrix;
+import de.jrk.neuralnetwork.NeuralNetwork;
+
+public class Mutator {
+	/**
+	 * Eine Mutationsart.<br>
+	 * Folgende Mutationsarten sind möglich (r ist die Mutationsrate):<br>
+	 * <br>
+	 * {@link #MULTIPLICATIVE}: <code>x'=x+u*x</code>, u gleichverteilt in
+	 * [-r, r]<br>
+	 * {@link #UNIFORM}: <code>x'=x+u</code>, u gleichverteilt in [-r, r]<br>
+	 * {@link #GAUSSIAN}: <code>x'=x+r*n</code>, n standardnormalverteilt<br>
+	 */
+	public static final String MULTIPLICATIVE = "multiplicative", UNIFORM = "uniform", GAUSSIAN = "gaussian";
+
+	private final Random random = new Random();
+	private String mode = MULTIPLICATIVE;
+	private double probability = 1;
+	private double[] layerRates;
+
+	/**
+	 * Mutiert die Gewichte und Schwellenwerte des {@link NeuralNetwork}s
+	 * {@code nn} direkt in den bestehenden Matrizen. Bei einer
+	 * Mutationswahrscheinlichkeit kleiner 1 werden die zu mutierenden Werte per
+	 * geometrischer Sprungverteilung ausgewählt, sodass der Aufwand nur von der
+	 * Anzahl der mutierten Werte abhängt.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}, das mutiert werden soll.
+	 * @param mutationRate
+	 *            Die Mutationsrate.
+	 */
+	public void mutate(NeuralNetwork nn, double mutationRate) {
+		for (int l = 0; l < nn.getWeights().length; l++) {
+			double rate = mutationRate * getLayerRate(l);
+			if (rate == 0) {
+				continue;
+			}
+			mutate(new MatrixValues(nn.getWeights()[l]), rate);
+			mutate(new MatrixValues(nn.getBiases()[l]), rate);
+			nn.markChanged(l);
+		}
+	}
+
+	private void mutate(MatrixValues values, double rate) {
+		mutate(values, (long) values.m.getRows() * values.m.getCols(), rate);
+	}
+
+	/**
+	 * Mutiert die Gewichte und Schwellenwerte des Netzwerkes {@code genome} im
+	 * {@link PopulationStore} {@code store} direkt im Speicher. Bei gleichem
+	 * Startwert werden genau dieselben Mutationen wie bei
+	 * {@link #mutate(NeuralNetwork, double) mutate} für ein
+	 * {@link NeuralNetwork} mit denselben Parametern erzeugt.
+	 * 
+	 * @param store
+	 *            Der {@link PopulationStore}.
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @param mutationRate
+	 *            Die Mutationsrate.
+	 */
+	public void mutate(PopulationStore store, int genome, double mutationRate) {
+		DoubleBuffer chunk = store.getChunk(genome);
+		int offset = store.getOffset(genome);
+		int[] neurons = store.getNeurons();
+		for (int l = 0; l < neurons.length - 1; l++) {
+			int weightCount = neurons[l + 1] * neurons[l];
+			double rate = mutationRate * getLayerRate(l);
+			if (rate != 0) {
+				mutate(new BufferValues(chunk, offset), weightCount, rate);
+				mutate(new BufferValues(chunk, offset + weightCount), neurons[l + 1], rate);
+			}
+			offset += weightCount + neurons[l + 1];
+		}
+	}
+
+	/**
+	 * Mutiert die ersten {@code size} Werte von {@code values} direkt.
+	 * 
+	 * @param values
+	 *            Der Zugriff auf die Werte.
+	 * @param size
+	 *            Die Anzahl der Werte.
+	 * @param rate
+	 *            Die Mutationsrate.
+	 */
+	private void mutate(Values values, long size, double rate) {
+		if (probability >= 1) {
+			for (long k = 0; k < size; k++) {
+				values.set(k, mutateValue(values.get(k), rate));
+			}
+			return;
+		}
+		if (probability <= 0) {
+			return;
+		}
+		double logQ = Math.log(1 - probability);
+		for (long k = skip(logQ); k < size; k += 1 + skip(logQ)) {
+			values.set(k, mutateValue(values.get(k), rate));
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der Werte zurück, die bis zum nächsten mutierten Wert
+	 * übersprungen werden (geometrisch verteilt).
+	 * 
+	 * @param logQ
+	 *            Der Logarithmus der Gegenwahrscheinlichkeit der
+	 *            Mutationswahrscheinlichkeit.
+	 * @return Die Anzahl der zu überspringenden Werte.
+	 */
+	private long skip(double logQ) {
+		return (long) (Math.log(1 - random.nextDouble()) / logQ);
+	}
+
+	/**
+	 * Gibt den mutierten Wert von {@code x} zurück.
+	 * 
+	 * @param x
+	 *            Der alte Wert.
+	 * @param rate
+	 *            Die Mutationsrate.
+	 * @return Der mutierte Wert.
+	 */
+	private double mutateValue(double x, double rate) {
+		switch (mode) {
+		case MULTIPLICATIVE:
+			return x + ((random.nextDouble() * rate * 2) - rate) * x;
+		case UNIFORM:
+			return x + (random.nextDouble() * rate * 2) - rate;
+		case GAUSSIAN:
+			return x + random.nextGaussian() * rate;
+		default:
+			throw new IllegalArgumentException("Mutation mode \"" + mode + "\" does not exist!");
+		}
+	}
+
+	/**
+	 * Setzt den Startwert des Zufallsgenerators, sodass die Mutationen
+	 * reproduzierbar sind.
+	 * 
+	 * @param seed
+	 *            Der Startwert.
+	 */
+	public void setSeed(long seed) {
+		random.setSeed(seed);
+	}
+
+	/**
+	 * Gibt den Faktor für die Mutationsrate der Schicht {@code layer} zurück.
+	 * 
+	 * @param layer
+	 *            Der Index der Schicht.
+	 * @return Der Faktor für die Mutationsrate.
+	 */
+	public double getLayerRate(int layer) {
+		return layerRates == null || layer >= layerRates.length ? 1 : layerRates[layer];
+	}
+
+	/**
+	 * Setzt für jede Schicht einen Faktor, mit dem die Mutationsrate
+	 * multipliziert wird. Schichten ohne Faktor werden mit dem Faktor 1 mutiert,
+	 * Schichten mit dem Faktor 0 gar nicht.
+	 * 
+	 * @param layerRates
+	 *            Die Faktoren für jede Schicht.
+	 */
+	public void setLayerRates(double... layerRates) {
+		this.layerRates = layerRates;
+	}
+
+	/**
+	 * Gibt die Mutationsart zurück.
+	 * 
+	 * @return Die Mutationsart.
+	 */
+	public String getMode() {
+		return mode;
+	}
+
+	/**
+	 * Setzt die Mutationsart.<br>
+	 * Folgende Mutationsarten sind möglich (r ist die Mutationsrate):<br>
+	 * <br>
+	 * {@link #MULTIPLICATIVE}: <code>x'=x+u*x</code>, u gleichverteilt in
+	 * [-r, r]<br>
+	 * {@link #UNIFORM}: <code>x'=x+u</code>, u gleichverteilt in [-r, r]<br>
+	 * {@link #GAUSSIAN}: <code>x'=x+r*n</code>, n standardnormalverteilt<br>
+	 * 
+	 * @param mode
+	 *            Die Mutationsart.
+	 */
+	public void setMode(String mode) {
+		if (!mode.equals(MULTIPLICATIVE) && !mode.equals(UNIFORM) && !mode.equals(GAUSSIAN)) {
+			throw new IllegalArgumentException("Mutation mode \"" + mode + "\" does not exist!");
+		}
+		this.mode = mode;
+	}
+
+	/**
+	 * Gibt die Wahrscheinlichkeit zurück, mit der ein einzelner Wert mutiert wird.
+	 * 
+	 * @return Die Mutationswahrscheinlichkeit.
+	 */
+	public double getProbability() {
+		return probability;
+	}
+
+	/**
+	 * Setzt die Wahrscheinlichkeit, mit der ein einzelner Wert mutiert wird. Bei
+	 * {@code 1} werden alle Werte mutiert.
+	 * 
+	 * @param probability
+	 *            Die Mutationswahrscheinlichkeit.
+	 */
+	public void setProbability(double probability) {
+		this.probability = probability;
+	}
+
+	/**
+	 * Der Zugriff auf die Werte, die mutiert werden, unabhängig davon, wo sie
+	 * gespeichert sind.
+	 */
+	private interface Values {
+		public double get(long index);
+
+		public void set(long index, double value);
+	}
+
+	private static class MatrixValues implements Values {
+		private final Matrix m;
+		private final int cols;
+
+		private MatrixValues(Matrix m) {
+			this.m = m;
+			cols = m.getCols();
+		}
+
+		@Override
+		public double get(long index) {
+			return m.get((int) (index / cols), (int) (index % cols));
+		}
+
+		@Override
+		public void set(long index, double value) {
+			m.set((int) (index / cols), (int) (index % cols), value);
+		}
+	}
+
+	private static class BufferValues implements Values {
+		private final DoubleBuffer buffer;
+		private final int offset;
+
+		private BufferValues(DoubleBuffer buffer, int offset) {
+			this.buffer = buffer;
+			this.offset = offset;
+		}
+
+		@Override
+		public double get(long index) {
+			return buffer.get(offset + (int) index);
+		}
+
+		@Override
+		public void set(long index, double value) {
+			buffer.put(offset + (int) index, value);
+		}
+	}
+}
@@ -0,0 +1,432 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.jrk.neuralnetwork.InferenceFunction;
+
+/**
+ * Ein Trainer, der neben den Gewichten auch die Topologie der Netzwerke
+ * verändert (NEAT, NeuroEvolution of Augmenting Topologies). Die
+ * {@link Genome}s starten ohne versteckte Neuronen, Mutationen fügen Neuronen
+ * und Verbindungen hinzu oder entfernen sie. Damit neue Strukturen Zeit haben,
+ * ihre Gewichte zu optimieren, werden die {@link Genome}s in Spezies
+ * eingeteilt, die nur untereinander konkurrieren.<br>
+ * <br>
+ * Bei gleichem Score werden kleinere Netzwerke bevorzugt, sodass sich die
+ * Population zum kleinsten Netzwerk hin bewegt, das den besten Score erreicht.
+ * Die {@link Genome}s werden als {@link ExecutionPlan} getestet.
+ */
+public class NEATTrainer {
+	private final int populationSize;
+	private final Random random;
+	private final InnovationTracker innovations;
+	private ArrayList<Genome> genomes = new ArrayList<Genome>();
+	private double[] scores;
+	private final ArrayList<Species> species = new ArrayList<Species>();
+	private ArrayList<Genome> lastGenomes = new ArrayList<Genome>();
+	private Genome bestGenome;
+	private double bestScore = Double.NEGATIVE_INFINITY;
+	private double lastHighscore;
+	private final ArrayList<Double> highscoreHistory = new ArrayList<Double>();
+
+	private double weightMutationProbability = 0.8;
+	private double weightMutationPower = 0.5;
+	private double addConnectionProbability = 0.1;
+	private double addNodeProbability = 0.03;
+	private double removeConnectionProbability = 0.05;
+	private double removeNodeProbability = 0.02;
+	private double crossoverProbability = 0.75;
+	private double survivalRate = 0.2;
+	private double compatibilityThreshold = 3;
+	private int targetSpeciesCount = 10;
+	private int maxStagnation = 15;
+
+	/**
+	 * Erzeugt einen neuen {@link NEATTrainer}.
+	 * 
+	 * @param activationFunction
+	 *            Die {@link de.jrk.neuralnetwork.ActivationFunction
+	 *            ActivationFunction} aller Neuronen.
+	 * @param inputCount
+	 *            Die Anzahl der Inputs.
+	 * @param outputCount
+	 *            Die Anzahl der Outputs.
+	 * @param populationSize
+	 *            Die Anzahl der {@link Genome}s pro Iteration.
+	 */
+	public NEATTrainer(String activationFunction, int inputCount, int outputCount, int populationSize) {
+		this(activationFunction, inputCount, outputCount, populationSize, new Random().nextLong());
+	}
+
+	/**
+	 * Erzeugt einen neuen {@link NEATTrainer}, dessen Zufallsentscheidungen
+	 * durch {@code seed} festgelegt sind.
+	 * 
+	 * @param activationFunction
+	 *            Die {@link de.jrk.neuralnetwork.ActivationFunction
+	 *            ActivationFunction} aller Neuronen.
+	 * @param inputCount
+	 *            Die Anzahl der Inputs.
+	 * @param outputCount
+	 *            Die Anzahl der Outputs.
+	 * @param populationSize
+	 *            Die Anzahl der {@link Genome}s pro Iteration.
+	 * @param seed
+	 *            Der Startwert des Zufallsgenerators.
+	 */
+	public NEATTrainer(String activationFunction, int inputCount, int outputCount, int populationSize, long seed) {
+		if (populationSize < 2) {
+			throw new IllegalArgumentException("The population size must not be less than 2!");
+		}
+		this.populationSize = populationSize;
+		random = new Random(seed);
+		innovations = new InnovationTracker(inputCount + outputCount);
+		for (int i = 0; i < populationSize; i++) {
+			genomes.add(new Genome(activationFunction, inputCount, outputCount, innovations, random));
+		}
+		scores = new double[populationSize];
+	}
+
+	/**
+	 * Führt eine Iteration aus, in der alle {@link Genome}s mit dem
+	 * {@link InferenceTester} {@code tester} getestet, in Spezies eingeteilt und
+	 * durch ihre Nachkommen ersetzt werden.
+	 * 
+	 * @param tester
+	 *            Der {@link InferenceTester}, mit dem die {@link Genome}s
+	 *            getestet werden.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	public void doIteration(InferenceTester tester, boolean useMultiThreading) {
+		testGenomes(tester, useMultiThreading);
+		ArrayList<Integer> order = getOrder();
+		lastGenomes = new ArrayList<Genome>();
+		for (int i : order) {
+			lastGenomes.add(genomes.get(i));
+		}
+		lastHighscore = scores[order.get(0)];
+		highscoreHistory.add(lastHighscore);
+		if (lastHighscore > bestScore || (lastHighscore == bestScore
+				&& lastGenomes.get(0).getConnectionCount() < bestGenome.getConnectionCount())) {
+			bestScore = lastHighscore;
+			bestGenome = lastGenomes.get(0).getCopy();
+		}
+		speciate();
+		reproduce();
+	}
+
+	/**
+	 * Testet alle {@link Genome}s. Die Threads holen sich die {@link Genome}s
+	 * nacheinander, sodass nicht mehr Threads als Prozessorkerne laufen.
+	 * 
+	 * @param tester
+	 *            Der {@link InferenceTester}.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	private void testGenomes(InferenceTester tester, boolean useMultiThreading) {
+		AtomicInteger next = new AtomicInteger();
+		Runnable task = () -> {
+			for (int i = next.getAndIncrement(); i < genomes.size(); i = next.getAndIncrement()) {
+				scores[i] = tester.test(genomes.get(i).getExecutionPlan());
+			}
+		};
+		if (!useMultiThreading) {
+			task.run();
+			return;
+		}
+		Thread[] threads = new Thread[Math.min(genomes.size(), Runtime.getRuntime().availableProcessors())];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(task);
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			try {
+				threads[t].join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Gibt die Indizes der {@link Genome}s sortiert nach Score zurück. Bei
+	 * gleichem Score kommt das {@link Genome} mit weniger Verbindungen zuerst.
+	 * 
+	 * @return Die sortierten Indizes.
+	 */
+	private ArrayList<Integer> getOrder() {
+		ArrayList<Integer> order = new ArrayList<Integer>();
+		for (int i = 0; i < genomes.size(); i++) {
+			order.add(i);
+		}
+		Collections.sort(order, getComparator());
+		return order;
+	}
+
+	private Comparator<Integer> getComparator() {
+		return (a, b) -> {
+			int result = Double.compare(scores[b], scores[a]);
+			if (result == 0) {
+				result = Integer.compare(genomes.get(a).getConnectionCount(), genomes.get(b).getConnectionCount());
+			}
+			return result != 0 ? result : Integer.compare(a, b);
+		};
+	}
+
+	/**
+	 * Teilt die {@link Genome}s in Spezies ein. Jedes {@link Genome} kommt in die
+	 * erste Spezies, deren Repräsentant nah genug ist, sonst in eine neue.
+	 * Anschließend wird der Schwellenwert so angepasst, dass ungefähr
+	 * {@link #targetSpeciesCount} Spezies entstehen.
+	 */
+	private void speciate() {
+		for (Species s : species) {
+			s.members.clear();
+		}
+		for (int i = 0; i < genomes.size(); i++) {
+			Genome genome = genomes.get(i);
+			Species match = null;
+			for (Species s : species) {
+				if (genome.getDistance(s.representative, 1, 0.4) < compatibilityThreshold) {
+					match = s;
+					break;
+				}
+			}
+			if (match == null) {
+				match = new Species(genome);
+				species.add(match);
+			}
+			match.members.add(i);
+		}
+		species.removeIf(s -> s.members.isEmpty());
+		if (species.size() > targetSpeciesCount) {
+			compatibilityThreshold += 0.1;
+		} else if (species.size() < targetSpeciesCount) {
+			compatibilityThreshold = Math.max(0.1, compatibilityThreshold - 0.1);
+		}
+		Comparator<Integer> comparator = getComparator();
+		for (Species s : species) {
+			Collections.sort(s.members, comparator);
+			double score = scores[s.members.get(0)];
+			if (score > s.bestScore) {
+				s.bestScore = score;
+				s.stagnation = 0;
+			} else {
+				s.stagnation++;
+			}
+		}
+	}
+
+	/**
+	 * Erzeugt die nächste Generation. Jede Spezies bekommt Nachkommen im
+	 * Verhältnis ihres durchschnittlichen Scores, ihr bestes {@link Genome}
+	 * bleibt unverändert erhalten. Spezies, die sich zu lange nicht verbessert
+	 * haben, sterben aus, außer sie enthalten das beste {@link Genome}.
+	 */
+	private void reproduce() {
+		ArrayList<Integer> order = getOrder();
+		int best = order.get(0);
+		species.removeIf(s -> s.stagnation > maxStagnation && !s.members.contains(best));
+		double minScore = scores[order.get(order.size() - 1)];
+		double[] shares = new double[species.size()];
+		double totalShare = 0;
+		for (int s = 0; s < species.size(); s++) {
+			double sum = 0;
+			for (int member : species.get(s).members) {
+				sum += scores[member] - minScore + 1e-6;
+			}
+			shares[s] = sum / species.get(s).members.size();
+			totalShare += shares[s];
+		}
+		int[] offspring = new int[species.size()];
+		int assigned = 0;
+		for (int s = 0; s < species.size(); s++) {
+			offspring[s] = (int) (populationSize * shares[s] / totalShare);
+			assigned += offspring[s];
+		}
+		for (int s = 0; assigned < populationSize; s = (s + 1) % species.size()) {
+			offspring[s]++;
+			assigned++;
+		}
+		ArrayList<Genome> newGenomes = new ArrayList<Genome>();
+		for (int s = 0; s < species.size(); s++) {
+			Species sp = species.get(s);
+			List<Integer> parents = sp.members.subList(0,
+					Math.max(1, (int) Math.ceil(sp.members.size() * survivalRate)));
+			for (int o = 0; o < offspring[s]; o++) {
+				if (o == 0) {
+					newGenomes.add(genomes.get(sp.members.get(0)));
+					continue;
+				}
+				int mother = parents.get(random.nextInt(parents.size()));
+				Genome child;
+				if (parents.size() > 1 && random.nextDouble() < crossoverProbability) {
+					int father = parents.get(random.nextInt(parents.size()));
+					child = getComparator().compare(mother, father) <= 0
+							? genomes.get(mother).crossover(genomes.get(father), random)
+							: genomes.get(father).crossover(genomes.get(mother), random);
+				} else {
+					child = genomes.get(mother).getCopy();
+				}
+				child.mutate(this, innovations, random);
+				newGenomes.add(child);
+			}
+			sp.representative = genomes.get(sp.members.get(random.nextInt(sp.members.size())));
+		}
+		genomes = newGenomes;
+		scores = new double[genomes.size()];
+	}
+
+	/**
+	 * Gibt den Highscore der letzten Iteration zurück.
+	 * 
+	 * @return Der Highscore.
+	 */
+	public double getHighscore() {
+		return lastHighscore;
+	}
+
+	/**
+	 * Gibt die Highscores aller bisherigen Iterationen zurück.
+	 * 
+	 * @return Die Highscores.
+	 */
+	public List<Double> getHighscoreHistory() {
+		return Collections.unmodifiableList(highscoreHistory);
+	}
+
+	/**
+	 * Gibt das beste bisher getestete {@link Genome} zurück. Bei gleichem Score
+	 * ist es das mit den wenigsten Verbindungen.
+	 * 
+	 * @return Das beste {@link Genome}.
+	 */
+	public Genome getBestGenome() {
+		return bestGenome;
+	}
+
+	/**
+	 * Gibt die {@link Genome}s der letzten Iteration nach Score sortiert zurück.
+	 * 
+	 * @return Die {@link Genome}s.
+	 */
+	public ArrayList<Genome> getGenomes() {
+		return new ArrayList<Genome>(lastGenomes.isEmpty() ? genomes : lastGenomes);
+	}
+
+	/**
+	 * Gibt die Anzahl der Spezies zurück.
+	 * 
+	 * @return Die Anzahl der Spezies.
+	 */
+	public int getSpeciesCount() {
+		return species.size();
+	}
+
+	/**
+	 * Setzt die Wahrscheinlichkeiten der strukturellen Mutationen pro
+	 * Nachkomme.
+	 * 
+	 * @param addConnection
+	 *            Die Wahrscheinlichkeit für eine neue Verbindung.
+	 * @param addNode
+	 *            Die Wahrscheinlichkeit für ein neues Neuron.
+	 * @param removeConnection
+	 *            Die Wahrscheinlichkeit, dass eine Verbindung entfernt wird.
+	 * @param removeNode
+	 *            Die Wahrscheinlichkeit, dass ein Neuron entfernt wird.
+	 */
+	public void setStructuralMutationProbabilities(double addConnection, double addNode, double removeConnection,
+			double removeNode) {
+		addConnectionProbability = addConnection;
+		addNodeProbability = addNode;
+		removeConnectionProbability = removeConnection;
+		removeNodeProbability = removeNode;
+	}
+
+	/**
+	 * Setzt, wie oft und wie stark die Gewichte eines Nachkommen verändert
+	 * werden.
+	 * 
+	 * @param probability
+	 *            Die Wahrscheinlichkeit, dass die Gewichte verändert werden.
+	 * @param power
+	 *            Die Standardabweichung der Änderung.
+	 */
+	public void setWeightMutation(double probability, double power) {
+		weightMutationProbability = probability;
+		weightMutationPower = power;
+	}
+
+	/**
+	 * Setzt die Anzahl der Spezies, auf die der Schwellenwert für die Einteilung
+	 * hin angepasst wird. Standardwert ist {@code 10}.
+	 * 
+	 * @param targetSpeciesCount
+	 *            Die Anzahl der Spezies.
+	 */
+	public void setTargetSpeciesCount(int targetSpeciesCount) {
+		this.targetSpeciesCount = targetSpeciesCount;
+	}
+
+	double getWeightMutationProbability() {
+		return weightMutationProbability;
+	}
+
+	double getWeightMutationPower() {
+		return weightMutationPower;
+	}
+
+	double getAddConnectionProbability() {
+		return addConnectionProbability;
+	}
+
+	double getAddNodeProbability() {
+		return addNodeProbability;
+	}
+
+	double getRemoveConnectionProbability() {
+		return removeConnectionProbability;
+	}
+
+	double getRemoveNodeProbability() {
+		return removeNodeProbability;
+	}
+
+	/**
+	 * Ein Interface zum Testen eines {@link Genome}s über seine
+	 * {@link InferenceFunction}.
+	 */
+	public interface InferenceTester {
+		/**
+		 * Testet die {@link InferenceFunction} {@code inference}. Wird von
+		 * mehreren Threads gleichzeitig aufgerufen.
+		 * 
+		 * @param inference
+		 *            Die {@link InferenceFunction}.
+		 * @return Der Score.
+		 */
+		public double test(InferenceFunction inference);
+	}
+
+	/**
+	 * Eine Spezies mit ihrem Repräsentanten und den Indizes ihrer Mitglieder.
+	 */
+	private static class Species {
+		private Genome representative;
+		private final ArrayList<Integer> members = new ArrayList<Integer>();
+		private double bestScore = Double.NEGATIVE_INFINITY;
+		private int stagnation;
+
+		private Species(Genome representative) {
+			this.representative = representative;
+		}
+	}
+}
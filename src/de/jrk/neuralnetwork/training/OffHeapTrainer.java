@@ -0,0 +1,253 @@
+package de.jrk.neuralnetwork.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.training.NEATTrainer.InferenceTester;
+import de.jrk.neuralnetwork.training.PopulationStore.GenomeView;
+
+/**
+ * Ein Trainer wie der {@link EvolutionalTrainer}, dessen Population in einem
+ * {@link PopulationStore} außerhalb des Heaps liegt. Getestet wird direkt auf
+ * den gespeicherten Parametern mit {@link GenomeView}s, mutiert wird mit dem
+ * {@link Mutator} direkt im Speicher. Pro Iteration werden nur Arrays mit einem
+ * Eintrag pro Netzwerk angelegt, unabhängig von der Größe der Netzwerke.<br>
+ * <br>
+ * Wird der {@link PopulationStore} von mehreren Prozessen abgebildet, kann
+ * jeder Prozess mit {@link #test(InferenceTester, int, int, boolean) test}
+ * einen eigenen Bereich testen und ein Prozess anschließend
+ * {@link #evolve() evolve} aufrufen.
+ */
+public class OffHeapTrainer {
+	private final PopulationStore store;
+	private final int keepAmount;
+	private final Random random;
+	private Mutator mutator = new Mutator();
+	private double mutationRate = 0.2;
+	private double lastHighscore;
+	private int bestGenome;
+	private final ArrayList<Double> highscoreHistory = new ArrayList<Double>();
+
+	/**
+	 * Erzeugt einen neuen {@link OffHeapTrainer}.
+	 * 
+	 * @param store
+	 *            Der {@link PopulationStore} mit der Population.
+	 * @param keepAmount
+	 *            Anzahl der Netzwerke, die nach jeder Iteration erhalten bleiben.
+	 * @param seed
+	 *            Der Startwert des Zufallsgenerators.
+	 */
+	public OffHeapTrainer(PopulationStore store, int keepAmount, long seed) {
+		if (keepAmount < 1 || keepAmount >= store.getGenomeCount()) {
+			throw new IllegalArgumentException("The keep amount must be between 1 and the amount of genomes!");
+		}
+		this.store = store;
+		this.keepAmount = keepAmount;
+		random = new Random(seed);
+		mutator.setSeed(random.nextLong());
+	}
+
+	/**
+	 * Setzt alle Netzwerke auf gleichverteilte Zufallswerte.
+	 * 
+	 * @param range
+	 *            Der größte Betrag der Zufallswerte.
+	 */
+	public void randomize(double range) {
+		for (int g = 0; g < store.getGenomeCount(); g++) {
+			store.randomize(g, range, random);
+		}
+	}
+
+	/**
+	 * Führt eine Iteration aus, in der alle Netzwerke mit dem
+	 * {@link InferenceTester} {@code tester} getestet werden und anschließend
+	 * {@link #evolve() evolve} aufgerufen wird.
+	 * 
+	 * @param tester
+	 *            Der {@link InferenceTester}. Er bekommt eine {@link GenomeView}.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	public void doIteration(InferenceTester tester, boolean useMultiThreading) {
+		test(tester, 0, store.getGenomeCount(), useMultiThreading);
+		evolve();
+	}
+
+	/**
+	 * Testet die Netzwerke von {@code from} bis ausschließlich {@code to} und
+	 * speichert ihre Scores im {@link PopulationStore}. Jeder Thread benutzt
+	 * eine eigene {@link GenomeView}.
+	 * 
+	 * @param tester
+	 *            Der {@link InferenceTester}. Er bekommt eine {@link GenomeView}.
+	 * @param from
+	 *            Der Index des ersten Netzwerkes.
+	 * @param to
+	 *            Der Index nach dem letzten Netzwerk.
+	 * @param useMultiThreading
+	 *            Ob Multithreading genutzt werden soll.
+	 */
+	public void test(InferenceTester tester, int from, int to, boolean useMultiThreading) {
+		AtomicInteger next = new AtomicInteger(from);
+		Runnable task = () -> {
+			GenomeView view = store.newView();
+			for (int g = next.getAndIncrement(); g < to; g = next.getAndIncrement()) {
+				store.setScore(g, tester.test(view.setGenome(g)));
+			}
+		};
+		if (!useMultiThreading) {
+			task.run();
+			return;
+		}
+		Thread[] threads = new Thread[Math.max(1, Math.min(to - from, Runtime.getRuntime().availableProcessors()))];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(task);
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			try {
+				threads[t].join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Behält die {@link #keepAmount} Netzwerke mit den höchsten Scores und
+	 * überschreibt alle anderen mit mutierten Kopien zufällig ausgewählter
+	 * behaltener Netzwerke. Die Scores der Kopien werden auf
+	 * {@link Double#NEGATIVE_INFINITY} gesetzt, weil sie noch nicht getestet
+	 * sind, sodass {@link #getBestGenomes(int) getBestGenomes} danach nur
+	 * behaltene Netzwerke liefert.
+	 */
+	public void evolve() {
+		int n = store.getGenomeCount();
+		double[] sorted = new double[n];
+		for (int g = 0; g < n; g++) {
+			sorted[g] = store.getScore(g);
+		}
+		Arrays.sort(sorted);
+		double threshold = sorted[n - keepAmount];
+		lastHighscore = sorted[n - 1];
+		highscoreHistory.add(lastHighscore);
+		int[] parents = new int[keepAmount];
+		int parentCount = 0;
+		for (int g = 0; g < n && parentCount < keepAmount; g++) {
+			if (store.getScore(g) > threshold) {
+				parents[parentCount++] = g;
+			}
+		}
+		for (int g = 0; g < n && parentCount < keepAmount; g++) {
+			if (store.getScore(g) == threshold) {
+				parents[parentCount++] = g;
+			}
+		}
+		bestGenome = parents[0];
+		boolean[] keep = new boolean[n];
+		for (int p = 0; p < parentCount; p++) {
+			keep[parents[p]] = true;
+			if (store.getScore(parents[p]) > store.getScore(bestGenome)) {
+				bestGenome = parents[p];
+			}
+		}
+		for (int g = 0; g < n; g++) {
+			if (!keep[g]) {
+				store.copy(parents[random.nextInt(parentCount)], g);
+				mutator.mutate(store, g, mutationRate);
+				store.setScore(g, Double.NEGATIVE_INFINITY);
+			}
+		}
+	}
+
+	/**
+	 * Gibt die Indizes der {@code count} besten Netzwerke der letzten Iteration
+	 * zurück, z.B. als Gegner für die nächste Iteration.
+	 * 
+	 * @param count
+	 *            Die Anzahl der Netzwerke, höchstens {@link #keepAmount}.
+	 * @return Die Indizes.
+	 */
+	public int[] getBestGenomes(int count) {
+		int n = store.getGenomeCount();
+		double[] sorted = new double[n];
+		for (int g = 0; g < n; g++) {
+			sorted[g] = store.getScore(g);
+		}
+		Arrays.sort(sorted);
+		double threshold = sorted[Math.max(0, n - count)];
+		int[] result = new int[Math.min(count, n)];
+		int found = 0;
+		for (int g = 0; g < n && found < result.length; g++) {
+			if (store.getScore(g) >= threshold) {
+				result[found++] = g;
+			}
+		}
+		return Arrays.copyOf(result, found);
+	}
+
+	/**
+	 * Gibt den Highscore der letzten Iteration zurück.
+	 * 
+	 * @return Der Highscore.
+	 */
+	public double getHighscore() {
+		return lastHighscore;
+	}
+
+	/**
+	 * Gibt die Highscores aller bisherigen Iterationen zurück.
+	 * 
+	 * @return Die Highscores.
+	 */
+	public List<Double> getHighscoreHistory() {
+		return Collections.unmodifiableList(highscoreHistory);
+	}
+
+	/**
+	 * Gibt das beste Netzwerk der letzten Iteration als {@link NeuralNetwork}
+	 * zurück.
+	 * 
+	 * @return Das beste {@link NeuralNetwork}.
+	 */
+	public NeuralNetwork getBestNetwork() {
+		return store.get(bestGenome);
+	}
+
+	/**
+	 * Setzt die Mutationsrate. Standardwert ist {@code 0.2}.
+	 * 
+	 * @param mutationRate
+	 *            Die Mutationsrate.
+	 */
+	public void setMutationRate(double mutationRate) {
+		this.mutationRate = mutationRate;
+	}
+
+	/**
+	 * Gibt den {@link Mutator} zurück, mit dem die Netzwerke verändert werden.
+	 * 
+	 * @return Der {@link Mutator}.
+	 */
+	public Mutator getMutator() {
+		return mutator;
+	}
+
+	/**
+	 * Setzt den {@link Mutator}, mit dem die Netzwerke verändert werden.
+	 * 
+	 * @param mutator
+	 *            Der {@link Mutator}.
+	 */
+	public void setMutator(Mutator mutator) {
+		this.mutator = mutator;
+		mutator.setSeed(random.nextLong());
+	}
+}
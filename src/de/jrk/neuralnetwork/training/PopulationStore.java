@@ -0,0 +1,478 @@
+package de.jrk.neuralnetwork.training;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import de.jrk.neuralnetwork.ActivationFunction;
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.Matrix;
+import de.jrk.neuralnetwork.NeuralNetwork;
+
+/**
+ * Speichert die Parameter einer Population von {@link NeuralNetwork}s gleicher
+ * Topologie außerhalb des Heaps, entweder in direkten Puffern oder in einer in
+ * den Speicher abgebildeten Datei. Dadurch erzeugt auch eine Population aus
+ * Millionen von Netzwerken keine Objekte, die der Garbage Collector verwalten
+ * muss, und mehrere Prozesse können dieselbe Datei gleichzeitig abbilden und
+ * verschiedene Bereiche der Population bearbeiten.<br>
+ * <br>
+ * Die Parameter eines Netzwerkes liegen hintereinander in der Reihenfolge von
+ * {@link NeuralNetwork#getParameters() getParameters}. Die Datei beginnt mit
+ * einem Kopf, der die Topologie beschreibt, danach folgen die Scores und die
+ * Parameter. Da ein einzelner abgebildeter Bereich höchstens 2 GiB groß sein
+ * kann, werden die Parameter in mehreren Bereichen abgebildet.
+ */
+public class PopulationStore implements Closeable {
+	private static final int MAGIC = 0x54545053;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4096;
+	private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+	private final String activationFunction;
+	private final int[] neurons;
+	private final int genomeCount;
+	private final int parameterCount;
+	private final int genomesPerChunk;
+	private final DoubleBuffer scores;
+	private final DoubleBuffer[] chunks;
+	private final ByteBuffer[] byteBuffers;
+	private final RandomAccessFile file;
+
+	private PopulationStore(String activationFunction, int[] neurons, int genomeCount, RandomAccessFile file)
+			throws IOException {
+		ActivationFunction.function(activationFunction, 0);
+		this.activationFunction = activationFunction;
+		this.neurons = neurons;
+		this.genomeCount = genomeCount;
+		this.file = file;
+		int count = 0;
+		for (int l = 0; l < neurons.length - 1; l++) {
+			count += neurons[l + 1] * (neurons[l] + 1);
+		}
+		parameterCount = count;
+		if ((long) genomeCount * 8 > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The amount of genomes is too large!");
+		}
+		genomesPerChunk = (int) Math.max(1, MAX_CHUNK_SIZE / (8L * parameterCount));
+		int chunkCount = (genomeCount + genomesPerChunk - 1) / genomesPerChunk;
+		chunks = new DoubleBuffer[chunkCount];
+		byteBuffers = new ByteBuffer[chunkCount + 1];
+		long scoresSize = (long) genomeCount * 8;
+		byteBuffers[chunkCount] = allocate(HEADER_SIZE, scoresSize);
+		scores = byteBuffers[chunkCount].asDoubleBuffer();
+		long position = HEADER_SIZE + scoresSize;
+		for (int c = 0; c < chunkCount; c++) {
+			int genomes = Math.min(genomesPerChunk, genomeCount - c * genomesPerChunk);
+			long size = (long) genomes * parameterCount * 8;
+			byteBuffers[c] = allocate(position, size);
+			chunks[c] = byteBuffers[c].asDoubleBuffer();
+			position += size;
+		}
+	}
+
+	/**
+	 * Bildet einen Bereich der Datei ab oder reserviert einen direkten Puffer,
+	 * falls es keine Datei gibt.
+	 */
+	private ByteBuffer allocate(long position, long size) throws IOException {
+		ByteBuffer buffer;
+		if (file == null) {
+			buffer = ByteBuffer.allocateDirect((int) size);
+		} else {
+			buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, position, size);
+		}
+		return buffer.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Erzeugt einen {@link PopulationStore} in direkten Puffern außerhalb des
+	 * Heaps. Alle Parameter und Scores sind 0.
+	 * 
+	 * @param template
+	 *            Ein {@link NeuralNetwork} mit der gewünschten Topologie.
+	 * @param genomeCount
+	 *            Die Anzahl der Netzwerke.
+	 * @return Der {@link PopulationStore}.
+	 */
+	public static PopulationStore allocate(NeuralNetwork template, int genomeCount) {
+		try {
+			return new PopulationStore(template.getActivationFunction(), getNeurons(template), genomeCount, null);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Bildet die Datei {@code file} in den Speicher ab. Existiert sie noch nicht,
+	 * wird sie mit der Topologie von {@code template} und {@code genomeCount}
+	 * Netzwerken angelegt, sonst muss sie dazu passen.
+	 * 
+	 * @param file
+	 *            Die Datei.
+	 * @param template
+	 *            Ein {@link NeuralNetwork} mit der gewünschten Topologie.
+	 * @param genomeCount
+	 *            Die Anzahl der Netzwerke.
+	 * @return Der {@link PopulationStore}.
+	 * @throws IOException
+	 *             Wenn die Datei nicht gelesen oder geschrieben werden kann oder
+	 *             nicht passt.
+	 */
+	public static PopulationStore map(File file, NeuralNetwork template, int genomeCount) throws IOException {
+		if (file.exists() && file.length() > 0) {
+			PopulationStore store = open(file);
+			if (store.genomeCount != genomeCount || !store.activationFunction.equals(template.getActivationFunction())
+					|| !Arrays.equals(store.neurons, getNeurons(template))) {
+				store.close();
+				throw new IOException("The population file " + file + " does not match the NeuralNetwork!");
+			}
+			return store;
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			int[] neurons = getNeurons(template);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			byte[] name = template.getActivationFunction().getBytes(StandardCharsets.UTF_8);
+			header.putInt(MAGIC).putInt(VERSION).putInt(genomeCount).putInt(neurons.length);
+			for (int n : neurons) {
+				header.putInt(n);
+			}
+			header.putInt(name.length).put(name);
+			header.rewind();
+			raf.getChannel().write(header, 0);
+			return new PopulationStore(template.getActivationFunction(), neurons, genomeCount, raf);
+		} catch (IOException | RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Bildet eine bestehende Datei in den Speicher ab und liest die Topologie
+	 * aus ihrem Kopf.
+	 * 
+	 * @param file
+	 *            Die Datei.
+	 * @return Der {@link PopulationStore}.
+	 * @throws IOException
+	 *             Wenn die Datei nicht gelesen werden kann oder kein gültiger
+	 *             Kopf gefunden wird.
+	 */
+	public static PopulationStore open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			raf.getChannel().read(header, 0);
+			header.flip();
+			if (header.remaining() < 16 || header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException(file + " is not a population file!");
+			}
+			int genomeCount = header.getInt();
+			int[] neurons = new int[header.getInt()];
+			for (int n = 0; n < neurons.length; n++) {
+				neurons[n] = header.getInt();
+			}
+			byte[] name = new byte[header.getInt()];
+			header.get(name);
+			return new PopulationStore(new String(name, StandardCharsets.UTF_8), neurons, genomeCount, raf);
+		} catch (IOException | RuntimeException e) {
+			raf.close();
+			throw e;
+		}
+	}
+
+	private static int[] getNeurons(NeuralNetwork template) {
+		Matrix[] weights = template.getWeights();
+		int[] neurons = new int[weights.length + 1];
+		neurons[0] = weights[0].getCols();
+		for (int l = 0; l < weights.length; l++) {
+			neurons[l + 1] = weights[l].getRows();
+		}
+		return neurons;
+	}
+
+	/**
+	 * Gibt den Puffer zurück, in dem die Parameter des Netzwerkes {@code genome}
+	 * liegen.
+	 */
+	DoubleBuffer getChunk(int genome) {
+		return chunks[genome / genomesPerChunk];
+	}
+
+	/**
+	 * Gibt den Index des ersten Parameters des Netzwerkes {@code genome} in
+	 * seinem Puffer zurück.
+	 */
+	int getOffset(int genome) {
+		return (genome % genomesPerChunk) * parameterCount;
+	}
+
+	/**
+	 * Gibt einen Parameter zurück.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @param parameter
+	 *            Der Index des Parameters.
+	 * @return Der Wert des Parameters.
+	 */
+	public double getParameter(int genome, int parameter) {
+		return getChunk(genome).get(getOffset(genome) + parameter);
+	}
+
+	/**
+	 * Setzt einen Parameter.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @param parameter
+	 *            Der Index des Parameters.
+	 * @param value
+	 *            Der neue Wert.
+	 */
+	public void setParameter(int genome, int parameter, double value) {
+		getChunk(genome).put(getOffset(genome) + parameter, value);
+	}
+
+	/**
+	 * Kopiert alle Parameter des Netzwerkes {@code from} in das Netzwerk
+	 * {@code to}.
+	 * 
+	 * @param from
+	 *            Der Index des kopierten Netzwerkes.
+	 * @param to
+	 *            Der Index des überschriebenen Netzwerkes.
+	 */
+	public void copy(int from, int to) {
+		DoubleBuffer source = getChunk(from).duplicate();
+		source.limit(getOffset(from) + parameterCount).position(getOffset(from));
+		DoubleBuffer target = getChunk(to).duplicate();
+		target.position(getOffset(to));
+		target.put(source);
+	}
+
+	/**
+	 * Überschreibt die Parameter des Netzwerkes {@code genome} mit denen des
+	 * {@link NeuralNetwork}s {@code nn}.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @param nn
+	 *            Das {@link NeuralNetwork} mit passender Topologie.
+	 */
+	public void set(int genome, NeuralNetwork nn) {
+		double[] parameters = nn.getParameters();
+		if (parameters.length != parameterCount) {
+			throw new IllegalArgumentException("The amount of parameters does not match this PopulationStore!");
+		}
+		DoubleBuffer target = getChunk(genome).duplicate();
+		target.position(getOffset(genome));
+		target.put(parameters);
+	}
+
+	/**
+	 * Erzeugt ein {@link NeuralNetwork} mit den Parametern des Netzwerkes
+	 * {@code genome}.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @return Das {@link NeuralNetwork}.
+	 */
+	public NeuralNetwork get(int genome) {
+		double[] parameters = new double[parameterCount];
+		DoubleBuffer source = getChunk(genome).duplicate();
+		source.position(getOffset(genome));
+		source.get(parameters);
+		NeuralNetwork nn = new NeuralNetwork(activationFunction, neurons);
+		nn.setParameters(parameters);
+		return nn;
+	}
+
+	/**
+	 * Setzt alle Parameter des Netzwerkes {@code genome} auf gleichverteilte
+	 * Zufallswerte zwischen {@code -range} und {@code range}.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @param range
+	 *            Der größte Betrag der Zufallswerte.
+	 * @param random
+	 *            Der Zufallsgenerator.
+	 */
+	public void randomize(int genome, double range, Random random) {
+		DoubleBuffer chunk = getChunk(genome);
+		int offset = getOffset(genome);
+		for (int p = 0; p < parameterCount; p++) {
+			chunk.put(offset + p, (random.nextDouble() * 2 - 1) * range);
+		}
+	}
+
+	/**
+	 * Gibt den Score des Netzwerkes {@code genome} zurück.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @return Der Score.
+	 */
+	public double getScore(int genome) {
+		return scores.get(genome);
+	}
+
+	/**
+	 * Setzt den Score des Netzwerkes {@code genome}.
+	 * 
+	 * @param genome
+	 *            Der Index des Netzwerkes.
+	 * @param score
+	 *            Der Score.
+	 */
+	public void setScore(int genome, double score) {
+		scores.put(genome, score);
+	}
+
+	/**
+	 * Erzeugt eine {@link GenomeView}, mit der ein Netzwerk direkt aus dem
+	 * Speicher ausgeführt werden kann.
+	 * 
+	 * @return Die {@link GenomeView}.
+	 */
+	public GenomeView newView() {
+		return new GenomeView();
+	}
+
+	/**
+	 * Schreibt alle Änderungen in die Datei, falls es eine gibt.
+	 */
+	public void force() {
+		if (file != null) {
+			for (ByteBuffer buffer : byteBuffers) {
+				((MappedByteBuffer) buffer).force();
+			}
+		}
+	}
+
+	/**
+	 * Schreibt alle Änderungen in die Datei und schließt sie. Die abgebildeten
+	 * Bereiche werden unter Java 8 erst vom Garbage Collector freigegeben und
+	 * dürfen danach nicht mehr benutzt werden.
+	 */
+	@Override
+	public void close() throws IOException {
+		force();
+		if (file != null) {
+			file.close();
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der Netzwerke zurück.
+	 * 
+	 * @return Die Anzahl der Netzwerke.
+	 */
+	public int getGenomeCount() {
+		return genomeCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der Parameter eines Netzwerkes zurück.
+	 * 
+	 * @return Die Anzahl der Parameter.
+	 */
+	public int getParameterCount() {
+		return parameterCount;
+	}
+
+	/**
+	 * Gibt die Anzahl der Neuronen jeder Schicht zurück.
+	 * 
+	 * @return Die Anzahl der Neuronen jeder Schicht.
+	 */
+	public int[] getNeurons() {
+		return neurons.clone();
+	}
+
+	/**
+	 * Gibt die Aktivierungsfunktion der Netzwerke zurück.
+	 * 
+	 * @return Die Aktivierungsfunktion.
+	 */
+	public String getActivationFunction() {
+		return activationFunction;
+	}
+
+	/**
+	 * Eine {@link InferenceFunction}, die den Feedforward Algorithmus direkt auf
+	 * den Parametern eines Netzwerkes im {@link PopulationStore} ausführt, ohne
+	 * Objekte zu erzeugen. Das Ergebnis ist bitgenau das gleiche wie bei
+	 * {@link NeuralNetwork#feedforward(Matrix) feedforward}. Eine
+	 * {@link GenomeView} darf nur von einem Thread benutzt werden.
+	 */
+	public class GenomeView implements InferenceFunction {
+		private final double[][] layerOutputs;
+		private int genome;
+
+		private GenomeView() {
+			layerOutputs = new double[neurons.length - 1][];
+			for (int l = 0; l < layerOutputs.length; l++) {
+				layerOutputs[l] = new double[neurons[l + 1]];
+			}
+		}
+
+		/**
+		 * Setzt das Netzwerk, das ausgeführt wird.
+		 * 
+		 * @param genome
+		 *            Der Index des Netzwerkes.
+		 * @return Diese {@link GenomeView}.
+		 */
+		public GenomeView setGenome(int genome) {
+			if (genome < 0 || genome >= genomeCount) {
+				throw new IndexOutOfBoundsException("Genome " + genome + " does not exist!");
+			}
+			this.genome = genome;
+			return this;
+		}
+
+		/**
+		 * Gibt den Index des Netzwerkes zurück, das ausgeführt wird.
+		 * 
+		 * @return Der Index des Netzwerkes.
+		 */
+		public int getGenome() {
+			return genome;
+		}
+
+		@Override
+		public double[] feedforward(double[] inputs, double[] outputs) {
+			DoubleBuffer chunk = getChunk(genome);
+			int p = getOffset(genome);
+			double[] layerInputs = inputs;
+			for (int l = 0; l < layerOutputs.length; l++) {
+				int rows = neurons[l + 1];
+				int cols = neurons[l];
+				double[] layerOutput = l == layerOutputs.length - 1 ? outputs : layerOutputs[l];
+				int biasOffset = p + rows * cols;
+				for (int r = 0; r < rows; r++) {
+					double sum = 0;
+					for (int c = 0; c < cols; c++) {
+						sum += chunk.get(p++) * layerInputs[c];
+					}
+					layerOutput[r] = ActivationFunction.function(activationFunction, sum + chunk.get(biasOffset + r));
+				}
+				p += rows;
+				layerInputs = layerOutput;
+			}
+			return outputs;
+		}
+	}
+}
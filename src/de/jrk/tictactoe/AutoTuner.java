@@ -0,0 +1,464 @@
+package de.jrk.tictactoe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import de.jrk.neuralnetwork.ActivationFunction;
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.Matrix;
+import de.jrk.neuralnetwork.NetworkCompiler;
+import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.SparseNeuralNetwork;
+import de.jrk.neuralnetwork.TernaryKernel;
+import de.jrk.tictactoe.players.NeuralNetworkPlayer;
+
+/**
+ * Wählt die schnellsten Einstellungen für den aktuellen Rechner aus. Dazu
+ * werden kurze Messungen von {@link Matrix#multiply(Matrix) multiply},
+ * {@link NeuralNetwork#feedforward(Matrix) feedforward} (interpretiert,
+ * übersetzt und als {@link SparseNeuralNetwork}), des {@link TernaryKernel}s
+ * (vollständig und inkrementell) und eines kleinen {@link Training}s mit
+ * verschiedenen Einstellungen gemacht:<br>
+ * <br>
+ * {@code inference}: Womit ein einzelnes {@link NeuralNetwork} seine Züge
+ * berechnet, siehe {@link #getInference()}<br>
+ * {@code incremental}: Ob die Spieler inkrementell rechnen<br>
+ * {@code interleaved}: Ob die {@link NeuralNetwork}s einer Gruppe gemeinsam
+ * getestet werden<br>
+ * {@code minBatchSize}: Die kleinste Gruppengröße beim gemeinsamen Testen<br>
+ * {@code multiThreading}: Ob die {@link NeuralNetwork}s bzw. Gruppen parallel
+ * getestet werden, statt nur die Spiele parallel laufen zu lassen<br>
+ * {@code threads}: Die Anzahl der Threads, ab der der {@link ForkJoinPool},
+ * in dem das {@link Training} mit den gewählten Einstellungen läuft, nicht
+ * mehr schneller wird<br>
+ * <br>
+ * Die Messungen von {@link Matrix#multiply(Matrix) multiply} und der
+ * interpretierten Berechnung werden nur als Vergleichswerte gespeichert, da es
+ * keine schnellere Variante der {@link Matrix} gibt.<br>
+ * <br>
+ * Das Ergebnis wird als Profil in einer Properties-Datei gespeichert und beim
+ * nächsten Start wiederverwendet, solange Prozessoranzahl, Architektur und JVM
+ * gleich sind. Alle Messwerte stehen ebenfalls im Profil.
+ */
+public class AutoTuner {
+	/**
+	 * Eine Art, die Züge eines einzelnen {@link NeuralNetwork}s zu berechnen.<br>
+	 * Folgende Arten sind möglich:<br>
+	 * <br>
+	 * {@link #COMPILED}: Mit dem {@link NetworkCompiler} übersetzt.<br>
+	 * {@link #SPARSE}: Als {@link SparseNeuralNetwork}.<br>
+	 * {@link #KERNEL}: Mit dem {@link TernaryKernel} des
+	 * {@link NeuralNetworkPlayer}s.<br>
+	 */
+	public static final String COMPILED = "compiled", SPARSE = "sparse", KERNEL = "kernel";
+
+	private static final String VERSION = "4";
+	private final File profileFile;
+	private Properties profile;
+	private long measureMillis = 200;
+
+	/**
+	 * Erzeugt einen neuen {@link AutoTuner}, der das Profil in der Datei
+	 * {@code profileFile} speichert.
+	 * 
+	 * @param profileFile
+	 *            Die Datei für das Profil oder {@code null}, um immer neu zu
+	 *            messen.
+	 */
+	public AutoTuner(File profileFile) {
+		this.profileFile = profileFile;
+	}
+
+	/**
+	 * Gibt die Standard-Datei für das Profil im Home-Verzeichnis zurück.
+	 * 
+	 * @return Die Datei.
+	 */
+	public static File getDefaultProfileFile() {
+		return new File(System.getProperty("user.home"), ".tictactoe-tuning.properties");
+	}
+
+	/**
+	 * Setzt, wie lange jede einzelne Messung ungefähr dauert. Standardwert ist
+	 * {@code 200} Millisekunden.
+	 * 
+	 * @param measureMillis
+	 *            Die Dauer einer Messung in Millisekunden.
+	 */
+	public void setMeasureMillis(long measureMillis) {
+		this.measureMillis = measureMillis;
+	}
+
+	/**
+	 * Liest das Profil aus der Datei oder misst neu, wenn es keine passende Datei
+	 * gibt oder {@code force} gesetzt ist. Ein neues Profil wird gespeichert. Kann
+	 * die Datei nicht gelesen oder geschrieben werden, wird ohne sie
+	 * weitergemacht. Die gewählten Einstellungen werden auf der Konsole
+	 * ausgegeben.
+	 * 
+	 * @param force
+	 *            Ob auf jeden Fall neu gemessen wird.
+	 */
+	public void tune(boolean force) {
+		profile = null;
+		if (!force && profileFile != null && profileFile.exists()) {
+			Properties cached = new Properties();
+			try (InputStream in = new FileInputStream(profileFile)) {
+				cached.load(in);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (VERSION.equals(cached.getProperty("version")) && getMachine().equals(cached.getProperty("machine"))) {
+				profile = cached;
+				System.out.println("Tuning: using profile " + profileFile.getAbsolutePath());
+			}
+		}
+		if (profile == null) {
+			System.out.println("Tuning: calibrating for " + getMachine());
+			profile = calibrate();
+			if (profileFile != null) {
+				try (OutputStream out = new FileOutputStream(profileFile)) {
+					profile.store(out, "Tic-Tac-Toe auto-tuning profile");
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		System.out.println("Tuning: inference=" + getInference() + ", incremental=" + isIncremental()
+				+ ", interleaved=" + isInterleaved() + ", minBatchSize=" + getMinBatchSize() + ", multiThreading="
+				+ isMultiThreading() + ", threads=" + getThreads());
+	}
+
+	/**
+	 * Überträgt die gewählten Einstellungen auf das {@link Training}
+	 * {@code training}. Die Anzahl der Threads muss der Aufrufer selbst anwenden,
+	 * indem er das {@link Training} in einem {@link ForkJoinPool} mit
+	 * {@link #getThreads()} Threads ausführt.
+	 * 
+	 * @param training
+	 *            Das {@link Training}.
+	 */
+	public void configure(Training training) {
+		training.setIncremental(isIncremental());
+		training.setInterleaved(isInterleaved());
+		training.setMinBatchSize(getMinBatchSize());
+		training.setMultiThreading(isMultiThreading());
+	}
+
+	/**
+	 * @return Womit ein einzelnes {@link NeuralNetwork} seine Züge am schnellsten
+	 *         berechnet, {@link #COMPILED}, {@link #SPARSE} oder {@link #KERNEL}.
+	 */
+	public String getInference() {
+		return getProfile().getProperty("inference");
+	}
+
+	/**
+	 * Erzeugt einen {@link NeuralNetworkPlayer} für das {@link NeuralNetwork}
+	 * {@code nn}, der mit der gewählten Art und bei {@link #KERNEL} gegebenenfalls
+	 * inkrementell rechnet.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @return Der {@link NeuralNetworkPlayer}.
+	 */
+	public NeuralNetworkPlayer newPlayer(NeuralNetwork nn) {
+		if (KERNEL.equals(getInference())) {
+			NeuralNetworkPlayer player = new NeuralNetworkPlayer(nn);
+			player.setIncremental(isIncremental());
+			return player;
+		}
+		return new NeuralNetworkPlayer(newInferenceFunction(nn));
+	}
+
+	/**
+	 * Erzeugt eine {@link InferenceFunction} für das {@link NeuralNetwork}
+	 * {@code nn}, z.B. für einen {@link de.jrk.tictactoe.players.MCTSPlayer
+	 * MCTSPlayer}. Da der {@link TernaryKernel} keine Outputs liefert, wird bei
+	 * {@link #KERNEL} wie bei {@link #COMPILED} übersetzt.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @return Die {@link InferenceFunction}.
+	 */
+	public InferenceFunction newInferenceFunction(NeuralNetwork nn) {
+		if (SPARSE.equals(getInference())) {
+			return new SparseNeuralNetwork(nn);
+		}
+		return NetworkCompiler.compileOrInterpret(nn);
+	}
+
+	/**
+	 * @return Ob die Spieler inkrementell rechnen sollen.
+	 */
+	public boolean isIncremental() {
+		return Boolean.parseBoolean(getProfile().getProperty("incremental"));
+	}
+
+	/**
+	 * @return Ob die {@link NeuralNetwork}s einer Gruppe gemeinsam getestet
+	 *         werden sollen.
+	 */
+	public boolean isInterleaved() {
+		return Boolean.parseBoolean(getProfile().getProperty("interleaved"));
+	}
+
+	/**
+	 * @return Die kleinste Gruppengröße beim gemeinsamen Testen.
+	 */
+	public int getMinBatchSize() {
+		return Integer.parseInt(getProfile().getProperty("minBatchSize"));
+	}
+
+	/**
+	 * @return Ob eigene Threads pro {@link NeuralNetwork} bzw. Gruppe genutzt
+	 *         werden sollen.
+	 */
+	public boolean isMultiThreading() {
+		return Boolean.parseBoolean(getProfile().getProperty("multiThreading"));
+	}
+
+	/**
+	 * @return Die Anzahl der Threads für einen {@link ForkJoinPool}.
+	 */
+	public int getThreads() {
+		return Integer.parseInt(getProfile().getProperty("threads"));
+	}
+
+	private Properties getProfile() {
+		if (profile == null) {
+			throw new IllegalStateException("The auto-tuner has not been run yet!");
+		}
+		return profile;
+	}
+
+	/**
+	 * Führt alle Messungen aus und gibt das neue Profil zurück.
+	 */
+	private Properties calibrate() {
+		Properties result = new Properties();
+		result.setProperty("version", VERSION);
+		result.setProperty("machine", getMachine());
+		Random random = new Random(1);
+
+		NeuralNetwork nn = new NeuralNetwork(ActivationFunction.SOFTSIGN_NORM, 9, 18, 18, 9);
+		nn.randomize(1, random);
+		long[][] games = new long[64][];
+		for (int g = 0; g < games.length; g++) {
+			games[g] = getRandomGame(random);
+		}
+
+		Matrix a = new Matrix(18, 18);
+		Matrix b = new Matrix(18, 1);
+		for (int i = 0; i < 18; i++) {
+			b.set(i, 0, random.nextDouble());
+			for (int j = 0; j < 18; j++) {
+				a.set(i, j, random.nextDouble());
+			}
+		}
+		result.setProperty("matrix.multiply.ns", format(measure(() -> a.multiply(b))));
+		InferenceFunction interpreted = NetworkCompiler.interpret(nn);
+		result.setProperty("feedforward.interpreted.ns", format(measure(() -> playFunction(games, interpreted))));
+
+		TernaryKernel kernel = new TernaryKernel(nn);
+		TernaryKernel.Accumulator accumulator = kernel.newAccumulator();
+		double fullNs = measure(() -> playKernel(games, kernel, null));
+		double incrementalNs = measure(() -> playKernel(games, kernel, accumulator));
+		result.setProperty("kernel.full.ns", format(fullNs));
+		result.setProperty("kernel.incremental.ns", format(incrementalNs));
+		result.setProperty("incremental", Boolean.toString(incrementalNs < fullNs));
+
+		SparseNeuralNetwork sparse = new SparseNeuralNetwork(nn);
+		double sparseNs = measure(() -> playFunction(games, sparse));
+		result.setProperty("feedforward.sparse.ns", format(sparseNs));
+		InferenceFunction compiled = NetworkCompiler.compile(nn);
+		double compiledNs = Double.POSITIVE_INFINITY;
+		if (compiled != null) {
+			compiledNs = measure(() -> playFunction(games, compiled));
+			result.setProperty("feedforward.compiled.ns", format(compiledNs));
+		}
+		double kernelNs = Math.min(fullNs, incrementalNs);
+		result.setProperty("inference", kernelNs < Math.min(compiledNs, sparseNs) ? KERNEL
+				: compiledNs < sparseNs ? COMPILED : SPARSE);
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		double bestMs = Double.POSITIVE_INFINITY;
+		for (int candidate = 0; candidate < 6; candidate++) {
+			boolean multiThreading = candidate < 4;
+			boolean interleaved = candidate % 4 != 0;
+			int minBatchSize = multiThreading && interleaved ? 2 << candidate : 8;
+			double ms = measureTournament(multiThreading, interleaved, minBatchSize, isIncremental(result), 0);
+			String name = (multiThreading ? "threads" : "pool") + (interleaved ? ".interleaved" + minBatchSize : "");
+			result.setProperty("tournament." + name + ".ms", format(ms));
+			if (ms < bestMs) {
+				bestMs = ms;
+				result.setProperty("multiThreading", Boolean.toString(multiThreading));
+				result.setProperty("interleaved", Boolean.toString(interleaved));
+				result.setProperty("minBatchSize", Integer.toString(minBatchSize));
+			}
+		}
+
+		int bestThreads = 1;
+		double bestThreadsMs = Double.POSITIVE_INFINITY;
+		for (int threads = 1; threads <= cores; threads = threads < cores ? Math.min(cores, threads * 2) : threads + 1) {
+			double ms = measureTournament(Boolean.parseBoolean(result.getProperty("multiThreading")),
+					Boolean.parseBoolean(result.getProperty("interleaved")),
+					Integer.parseInt(result.getProperty("minBatchSize")), isIncremental(result), threads);
+			result.setProperty("tournament.pool" + threads + ".ms", format(ms));
+			if (ms < bestThreadsMs * 0.95) {
+				bestThreads = threads;
+				bestThreadsMs = ms;
+			}
+		}
+		result.setProperty("threads", Integer.toString(bestThreads));
+		return result;
+	}
+
+	private static boolean isIncremental(Properties profile) {
+		return Boolean.parseBoolean(profile.getProperty("incremental"));
+	}
+
+	/**
+	 * Misst, wie lange eine Runde eines kleinen {@link Training}s mit den
+	 * übergebenen Einstellungen dauert. Mit {@code threads > 0} läuft das
+	 * {@link Training} in einem eigenen {@link ForkJoinPool}.
+	 */
+	private double measureTournament(boolean multiThreading, boolean interleaved, int minBatchSize,
+			boolean incremental, int threads) {
+		Training training = new Training();
+		training.setSeed(1);
+		training.setSaveFile(null);
+		training.setVerbose(false);
+		training.setHallOfFameSize(0);
+		training.setGroupCount(4);
+		training.setNetworkAmount(32);
+		training.setKeepAmount(16);
+		training.setIterationsPerRound(2);
+		training.setMultiThreading(multiThreading);
+		training.setInterleaved(interleaved);
+		training.setMinBatchSize(minBatchSize);
+		training.setIncremental(incremental);
+		Runnable round = () -> training.trainRounds(1);
+		if (threads > 0) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				return measure(() -> {
+					try {
+						pool.submit(round).get();
+					} catch (InterruptedException | ExecutionException e) {
+						throw new IllegalStateException(e);
+					}
+				}) / 1e6;
+			} finally {
+				pool.shutdown();
+			}
+		}
+		return measure(round) / 1e6;
+	}
+
+	/**
+	 * Spielt alle Spiele {@code games} Zug für Zug mit dem {@link TernaryKernel}
+	 * bzw. dem {@link TernaryKernel.Accumulator} nach.
+	 */
+	private static int playKernel(long[][] games, TernaryKernel kernel, TernaryKernel.Accumulator accumulator) {
+		int sum = 0;
+		for (long[] game : games) {
+			if (accumulator != null) {
+				accumulator.reset();
+			}
+			for (int m = 0; m + 1 < game.length; m += 2) {
+				sum += accumulator != null ? accumulator.selectMove(game[m], game[m + 1])
+						: kernel.selectMove(game[m], game[m + 1]);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Spielt alle Spiele {@code games} Zug für Zug mit der
+	 * {@link InferenceFunction} {@code inference} nach und wählt die Züge wie der
+	 * {@link NeuralNetworkPlayer}.
+	 */
+	private static int playFunction(long[][] games, InferenceFunction inference) {
+		double[] inputs = new double[9];
+		double[] outputs = new double[9];
+		int sum = 0;
+		for (long[] game : games) {
+			for (int m = 0; m + 1 < game.length; m += 2) {
+				for (int c = 0; c < 9; c++) {
+					inputs[c] = (game[m] >>> c & 1) != 0 ? 1 : (game[m + 1] >>> c & 1) != 0 ? -1 : 0;
+				}
+				inference.feedforward(inputs, outputs);
+				sum += TernaryKernel.selectMove(outputs, game[m] | game[m + 1]);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Erzeugt die Stellungen eines zufälligen Spiels aus der Sicht eines
+	 * Spielers, als abwechselnde Bitmasken der eigenen und gegnerischen Felder.
+	 */
+	private static long[] getRandomGame(Random random) {
+		long[] positions = new long[16];
+		long own = 0;
+		long opponent = 0;
+		for (int m = 0; m < 8; m++) {
+			int cell;
+			do {
+				cell = random.nextInt(9);
+			} while (((own | opponent) >>> cell & 1) != 0);
+			if (m % 2 == 0) {
+				opponent |= 1L << cell;
+			} else {
+				own |= 1L << cell;
+			}
+			positions[2 * m] = own;
+			positions[2 * m + 1] = opponent;
+		}
+		return positions;
+	}
+
+	/**
+	 * Führt {@code task} erst zum Aufwärmen und dann für die Messung jeweils
+	 * ungefähr {@link #measureMillis} lang aus und gibt die durchschnittliche
+	 * Dauer in Nanosekunden zurück.
+	 */
+	private double measure(Runnable task) {
+		long end = System.nanoTime() + measureMillis * 1000000;
+		do {
+			task.run();
+		} while (System.nanoTime() < end);
+		long runs = 0;
+		long start = System.nanoTime();
+		end = start + measureMillis * 1000000;
+		long now;
+		do {
+			task.run();
+			runs++;
+		} while ((now = System.nanoTime()) < end);
+		return (now - start) / (double) runs;
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.1f", value);
+	}
+
+	/**
+	 * Gibt eine Beschreibung des Rechners und der JVM zurück, zu der ein Profil
+	 * passen muss.
+	 */
+	private static String getMachine() {
+		return Runtime.getRuntime().availableProcessors() + " cores, " + System.getProperty("os.arch") + ", "
+				+ System.getProperty("java.vm.name") + " " + System.getProperty("java.version");
+	}
+}
@@ -0,0 +1,37 @@
+package de.jrk.tictactoe;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ein Java Flight Recorder Event für ein Spiel von {@link TicTacToe}.
+ */
+@Name("de.jrk.Game")
+@Label("Tic-Tac-Toe Game")
+@Category({ "Tic-Tac-Toe" })
+@Description("One game of Tic-Tac-Toe")
+@StackTrace(false)
+class GameEvent extends Event {
+	@Label("Player 1")
+	String player1;
+
+	@Label("Player 2")
+	String player2;
+
+	@Label("Player 1 Starts")
+	boolean startPlayer1;
+
+	@Label("Move Count")
+	int moveCount;
+
+	@Label("Win Player")
+	@Description("1 or 2 for the winning player, 0 for a draw")
+	int winPlayer;
+
+	@Label("Illegal Move")
+	boolean illegalMove;
+}
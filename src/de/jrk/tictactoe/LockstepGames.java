@@ -0,0 +1,197 @@
+package de.jrk.tictactoe;
+
+import java.util.Arrays;
+
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.InterleavedInference;
+import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.TernaryKernel;
+import de.jrk.tictactoe.records.GameRecord;
+import de.jrk.tictactoe.records.GameRecordSink;
+
+/**
+ * Spielt für jede Spur einer {@link InterleavedInference} ein Spiel
+ * Tic-Tac-Toe gegen dieselbe Gegner-{@link InferenceFunction}, alle im
+ * Gleichschritt. Da alle Spiele vom gleichen Spieler begonnen werden, ist in
+ * allen Spielen immer derselbe Spieler am Zug: Die getesteten
+ * {@link NeuralNetwork}s berechnen ihre Züge in einem Durchlauf der
+ * {@link InterleavedInference}, der Gegner seine nacheinander mit denselben
+ * Arrays. Beendete Spiele laufen leer mit.<br>
+ * <br>
+ * Die Regeln und die Zugwahl sind die gleichen wie bei {@link TicTacToe} mit
+ * zwei {@link de.jrk.tictactoe.players.NeuralNetworkPlayer NeuralNetworkPlayer}n,
+ * das getestete {@link NeuralNetwork} ist Spieler 1. Eine {@link LockstepGames}
+ * darf nur von einem Thread genutzt werden.
+ */
+public class LockstepGames {
+	private static final int CELLS = 9;
+	private final InterleavedInference candidates;
+	private final int lanes;
+	private final int[] fields;
+	private final int[] winPlayers;
+	private final boolean[] running;
+	private final boolean[] illegalMoves;
+	private final int[] moveCounts;
+	private final double[] inputs;
+	private final double[] outputs;
+	private final double[] opponentInputs = new double[CELLS];
+	private final double[] opponentOutputs = new double[CELLS];
+	private final double[] laneOutputs = new double[CELLS];
+	private final byte[][] moves;
+	private GameRecordSink recordSink;
+
+	/**
+	 * Erzeugt neue {@link LockstepGames} für die getesteten {@link NeuralNetwork}s
+	 * in {@code candidates}.
+	 * 
+	 * @param candidates
+	 *            Die getesteten {@link NeuralNetwork}s mit 9 Inputs und 9
+	 *            Outputs.
+	 */
+	public LockstepGames(InterleavedInference candidates) {
+		if (candidates.getInputCount() != CELLS || candidates.getOutputCount() != CELLS) {
+			throw new IllegalArgumentException("The neural networks must have 9 inputs and 9 outputs!");
+		}
+		this.candidates = candidates;
+		lanes = candidates.getLanes();
+		fields = new int[lanes * CELLS];
+		winPlayers = new int[lanes];
+		running = new boolean[lanes];
+		illegalMoves = new boolean[lanes];
+		moveCounts = new int[lanes];
+		inputs = new double[lanes * CELLS];
+		outputs = new double[lanes * CELLS];
+		moves = new byte[lanes][CELLS];
+	}
+
+	/**
+	 * Setzt den {@link GameRecordSink}, an den jedes Spiel übergeben wird.
+	 * {@code null} schaltet die Aufzeichnung aus.
+	 * 
+	 * @param recordSink
+	 *            Der {@link GameRecordSink}.
+	 */
+	public void setGameRecordSink(GameRecordSink recordSink) {
+		this.recordSink = recordSink;
+	}
+
+	/**
+	 * Spielt ein Spiel pro Spur gegen die {@link InferenceFunction}
+	 * {@code opponent} und addiert das Ergebnis jeder Spur {@code k} in halben
+	 * Punkten (Sieg 2, Unentschieden 1, illegaler Zug -2) zu
+	 * {@code halfPoints[k]}.
+	 * 
+	 * @param opponent
+	 *            Die {@link InferenceFunction} des Gegners, z.B. ein
+	 *            {@link de.jrk.neuralnetwork.NetworkSnapshot NetworkSnapshot}.
+	 * @param startPlayer
+	 *            Ob die getesteten {@link NeuralNetwork}s anfangen.
+	 * @param halfPoints
+	 *            Das Array für die Ergebnisse.
+	 */
+	public void play(InferenceFunction opponent, boolean startPlayer, long[] halfPoints) {
+		Arrays.fill(fields, 0);
+		Arrays.fill(winPlayers, 0);
+		Arrays.fill(running, true);
+		Arrays.fill(illegalMoves, false);
+		Arrays.fill(moveCounts, 0);
+		boolean currentPlayer = startPlayer;
+		for (int moveCount = 0; moveCount < CELLS; moveCount++) {
+			if (currentPlayer) {
+				candidatesTurn(moveCount);
+			} else {
+				opponentTurn(opponent, moveCount);
+			}
+			currentPlayer = !currentPlayer;
+		}
+		for (int k = 0; k < lanes; k++) {
+			if (illegalMoves[k] && winPlayers[k] == 2) {
+				halfPoints[k] -= 2;
+			} else {
+				halfPoints[k] += winPlayers[k] == 1 ? 2 : winPlayers[k] == 0 ? 1 : 0;
+			}
+			if (recordSink != null) {
+				recordSink.record(moves[k], moveCounts[k],
+						GameRecord.encodeResult(winPlayers[k], startPlayer, illegalMoves[k]));
+			}
+		}
+	}
+
+	/**
+	 * Berechnet die Züge der getesteten {@link NeuralNetwork}s in allen
+	 * laufenden Spielen mit einem Durchlauf der {@link InterleavedInference}.
+	 */
+	private void candidatesTurn(int moveCount) {
+		for (int k = 0; k < lanes; k++) {
+			for (int a = 0; a < CELLS; a++) {
+				int fieldPart = running[k] ? fields[k * CELLS + a] : 0;
+				inputs[a * lanes + k] = fieldPart == 0 ? 0 : fieldPart == 1 ? 1 : -1;
+			}
+		}
+		candidates.feedforward(inputs, outputs);
+		for (int k = 0; k < lanes; k++) {
+			if (running[k]) {
+				for (int a = 0; a < CELLS; a++) {
+					laneOutputs[a] = outputs[a * lanes + k];
+				}
+				move(k, TernaryKernel.selectMove(laneOutputs, getOccupied(k)), 1, moveCount);
+			}
+		}
+	}
+
+	/**
+	 * Berechnet die Züge des Gegners in allen laufenden Spielen.
+	 */
+	private void opponentTurn(InferenceFunction opponent, int moveCount) {
+		for (int k = 0; k < lanes; k++) {
+			if (running[k]) {
+				for (int a = 0; a < CELLS; a++) {
+					int fieldPart = fields[k * CELLS + a];
+					opponentInputs[a] = fieldPart == 0 ? 0 : fieldPart == 2 ? 1 : -1;
+				}
+				opponent.feedforward(opponentInputs, opponentOutputs);
+				move(k, TernaryKernel.selectMove(opponentOutputs, getOccupied(k)), 2, moveCount);
+			}
+		}
+	}
+
+	/**
+	 * Setzt den Spieler {@code player} in der Spur {@code k} auf das Feld
+	 * {@code pos} und beendet das Spiel, wenn er gewonnen hat oder das Feld voll
+	 * ist. Ist das Feld schon besetzt, verliert er wie bei {@link TicTacToe} durch
+	 * einen illegalen Zug.
+	 */
+	private void move(int k, int pos, int player, int moveCount) {
+		int offset = k * CELLS;
+		moves[k][moveCount] = (byte) pos;
+		moveCounts[k]++;
+		if (fields[offset + pos] != 0) {
+			winPlayers[k] = 3 - player;
+			illegalMoves[k] = true;
+			running[k] = false;
+			return;
+		}
+		fields[offset + pos] = player;
+		if (WinLines.getWinPlayer(fields, offset, 3) != 0) {
+			winPlayers[k] = player;
+			running[k] = false;
+			return;
+		}
+		if (moveCount == CELLS - 1) {
+			running[k] = false;
+		}
+	}
+
+	/**
+	 * Gibt die Bitmaske der besetzten Felder in der Spur {@code k} zurück.
+	 */
+	private long getOccupied(int k) {
+		long occupied = 0;
+		for (int a = 0; a < CELLS; a++) {
+			if (fields[k * CELLS + a] != 0) {
+				occupied |= 1L << a;
+			}
+		}
+		return occupied;
+	}
+}
@@ -3,23 +3,103 @@ package de.jrk.tictactoe;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 
+import de.jrk.neuralnetwork.NetworkPruner;
 import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.SparseNeuralNetwork;
 import de.jrk.tictactoe.players.ConsolePlayer;
-import de.jrk.tictactoe.players.NeuralNetworkPlayer;
+import de.jrk.tictactoe.players.MCTSPlayer;
+import de.jrk.tictactoe.records.GameRecord;
+import de.jrk.tictactoe.records.GameRecordReader;
+import de.jrk.tictactoe.records.GameRecordWriter;
+import de.jrk.tictactoe.server.GameServer;
+import de.jrk.tictactoe.server.LoadGenerator;
+import de.jrk.tictactoe.solver.RetrogradeSolver;
+import de.jrk.tictactoe.sweep.SearchSpace;
+import de.jrk.tictactoe.sweep.SweepRunner;
+import de.jrk.tictactoe.sweep.Trial;
 
 public class Main {
 	public static void main(String[] args) {
 		if (args.length > 0 && args[0].equals("train")) {
-			train();
+			Training training = new Training();
+			String recordDirectory = null;
+			try {
+				recordDirectory = parseTrainOptions(args, training);
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+			train(training, recordDirectory);
+		} else if (args.length > 0 && args[0].equals("neat")) {
+			new Training().trainTopology();
+		} else if (args.length > 0 && args[0].equals("cmaes")) {
+			new Training().trainCMAES();
+		} else if (args.length > 2 && args[0].equals("offheap")) {
+			try {
+				new Training().trainOffHeap(new File(args[1]), Integer.parseInt(args[2]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+		} else if (args.length > 1 && args[0].equals("records")) {
+			try {
+				printRecords(args[1]);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
 		} else if (args.length > 1 && args[0].equals("play")) {
 			try {
-				BufferedReader br = new BufferedReader(new FileReader(new File(args[1])));
-				for (int i = 0; i < Integer.parseInt(args[2]) - 1; i++) {
-					br.readLine();
-				}
-				play(br.readLine());
-				br.close();
+				play(readNetwork(args[1], Integer.parseInt(args[2])), args.length > 3 ? Integer.parseInt(args[3]) : 0);
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+		} else if (args.length > 3 && args[0].equals("serve")) {
+			try {
+				serve(readNetwork(args[1], Integer.parseInt(args[2])), Integer.parseInt(args[3]));
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+		} else if (args.length > 2 && args[0].equals("prune")) {
+			try {
+				prune(readNetwork(args[1], Integer.parseInt(args[2])));
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+		} else if (args.length > 0 && args[0].equals("tune")) {
+			new AutoTuner(args.length > 1 ? new File(args[1]) : AutoTuner.getDefaultProfileFile()).tune(true);
+		} else if (args.length > 1 && args[0].equals("sweep")) {
+			try {
+				sweep(new File(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 0);
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+		} else if (args.length > 2 && (args[0].equals("solve") || args[0].equals("oracle"))) {
+			try {
+				solve(new File(args[1]), Integer.parseInt(args[2]), args[0].equals("oracle"));
+			} catch (Exception e) {
+				e.printStackTrace();
+				printUsage();
+				System.exit(0);
+			}
+		} else if (args.length > 4 && args[0].equals("loadtest")) {
+			try {
+				new LoadGenerator(args[1], Integer.parseInt(args[2])).run(Integer.parseInt(args[3]),
+						Integer.parseInt(args[4]));
 			} catch (Exception e) {
 				e.printStackTrace();
 				printUsage();
@@ -30,18 +110,148 @@ public class Main {
 		}
 	}
 	
-	public static void train() {
-		new Training().train();
+	public static String parseTrainOptions(String[] args, Training training) {
+		String recordDirectory = null;
+		for (int i = 1; i < args.length; i++) {
+			if (args[i].equals("-racing")) {
+				training.setRacing(true);
+			} else if (args[i].equals("-mutation") && i + 1 < args.length) {
+				training.setMutationRateControl(args[++i]);
+			} else if (args[i].equals("-operator") && i + 1 < args.length) {
+				training.setMutationMode(args[++i]);
+			} else if (args[i].startsWith("-") || recordDirectory != null) {
+				throw new IllegalArgumentException("Unknown option " + args[i] + "!");
+			} else {
+				recordDirectory = args[i];
+			}
+		}
+		return recordDirectory;
+	}
+
+	public static void train(Training training, String recordDirectory) {
+		AutoTuner tuner = new AutoTuner(AutoTuner.getDefaultProfileFile());
+		tuner.tune(false);
+		tuner.configure(training);
+		if (recordDirectory != null) {
+			GameRecordWriter writer = new GameRecordWriter(new File(recordDirectory),
+					"games" + System.currentTimeMillis() / 1000);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}));
+			training.setGameRecordSink(writer);
+		}
+		ForkJoinPool pool = new ForkJoinPool(tuner.getThreads());
+		try {
+			pool.submit(training::train).get();
+		} catch (InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	public static void sweep(File csvFile, int threads) throws IOException, InterruptedException {
+		SearchSpace space = new SearchSpace().addValues(Trial.GROUPS, 8).addValues(Trial.ITERATIONS, 20)
+				.addValues(Trial.MUTATION_RATE, 0.05, 0.1, 0.2, 0.4).addValues(Trial.NETWORKS, 10, 20)
+				.addValues(Trial.HIDDEN_NEURONS, 9, 18, 36).addValues(Trial.RACING, 0, 1);
+		if (threads <= 0) {
+			AutoTuner tuner = new AutoTuner(AutoTuner.getDefaultProfileFile());
+			tuner.tune(false);
+			threads = tuner.getThreads();
+		}
+		SweepRunner runner = new SweepRunner(space.getGrid(), threads);
+		runner.setMinRounds(16);
+		runner.setMaxRounds(144);
+		runner.setCsvFile(csvFile);
+		List<Trial> trials = runner.run();
+		for (Trial trial : trials.subList(0, Math.min(5, trials.size()))) {
+			System.out.println("Trial " + trial.getId() + " " + trial.getParameters() + ": score " + trial.getScore()
+					+ " after " + trial.getRoundCount() + " rounds");
+		}
+	}
+
+	public static void printRecords(String recordDirectory) throws IOException {
+		long[] results = new long[5];
+		long start = System.nanoTime();
+		long games = GameRecordReader.fromDirectory(new File(recordDirectory), null).read((moves, moveCount, result) -> {
+			results[GameRecord.getWinPlayer(result)]++;
+			if (GameRecord.isIllegalMove(result)) {
+				results[3]++;
+			}
+			results[4] += moveCount;
+		});
+		System.out.println(games + " games read in " + (System.nanoTime() - start) / 1000000 + " ms");
+		if (games > 0) {
+			System.out.println("Player 1 won: " + results[1] + ", player 2 won: " + results[2] + ", draws: "
+					+ results[0] + ", illegal moves: " + results[3] + ", average moves: "
+					+ results[4] / (double) games);
+		}
 	}
 	
-	public static void play(String networkString) {
+	public static String readNetwork(String networkFile, int network) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(new File(networkFile)));
+		for (int i = 0; i < network - 1; i++) {
+			br.readLine();
+		}
+		String result = br.readLine();
+		br.close();
+		return result;
+	}
+
+	public static void serve(String networkString, int port) throws IOException {
+		GameServer server = new GameServer(NeuralNetwork.fromString(networkString), port);
+		System.out.println("Serving on port " + server.getPort());
+		server.run();
+	}
+
+	public static void prune(String networkString) {
+		NeuralNetwork nn = NeuralNetwork.fromString(networkString);
+		ProbePositions positions = ProbePositions.reachable(3);
+		NeuralNetwork pruned = NetworkPruner.prune(nn, positions.getInputs(), positions.getLegalMoves());
+		SparseNeuralNetwork dense = new SparseNeuralNetwork(nn);
+		SparseNeuralNetwork sparse = new SparseNeuralNetwork(pruned);
+		System.err.println("Weights: " + dense.getNonZeroCount() + " -> " + sparse.getNonZeroCount() + " ("
+				+ String.format("%.1f", sparse.getDensity() * 100) + " % dense), same moves in " + positions.size()
+				+ " positions");
+		System.out.println(pruned);
+	}
+
+	public static void play(String networkString, int playouts) {
+		NeuralNetwork nn = NeuralNetwork.fromString(networkString);
+		AutoTuner tuner = new AutoTuner(AutoTuner.getDefaultProfileFile());
+		tuner.tune(false);
 		TicTacToe ticTacToe = new TicTacToe();
 		ticTacToe.setPlayer1(new ConsolePlayer());
-		ticTacToe.setPlayer2(new NeuralNetworkPlayer(NeuralNetwork.fromString(networkString)));
-		ticTacToe.run();
+		if (playouts > 0) {
+			MCTSPlayer player = new MCTSPlayer(tuner.newInferenceFunction(nn),
+					Runtime.getRuntime().availableProcessors());
+			player.setPlayoutBudget(playouts);
+			ticTacToe.setPlayer2(player);
+			ticTacToe.run();
+			player.close();
+		} else {
+			ticTacToe.setPlayer2(tuner.newPlayer(nn));
+			ticTacToe.run();
+		}
+	}
+
+	public static void solve(File directory, int size, boolean train) throws IOException {
+		try (RetrogradeSolver solver = RetrogradeSolver.open(directory, size)) {
+			solver.solve(ForkJoinPool.commonPool());
+			String[] values = { "unknown", "loss", "draw", "win" };
+			System.out.println("The empty " + size + "x" + size + " board is a "
+					+ values[solver.getValue(0, 0)] + " for the first player");
+			if (train) {
+				new Training().trainWithOracle(solver);
+			}
+		}
 	}
 
 	public static void printUsage() {
-		System.out.println("Usage: Use \"train\" to train the network or \"play <networkfile> <network (1-20)>\" to play against the neural network.");
+		System.out.println("Usage: Use \"train [-racing] [-mutation fixed|one_fifth_rule|self_adaptive] [-operator gaussian|uniform|multiplicative] [recorddirectory]\" to train the network (racing stops testing hopeless networks early, the mutation rate is fixed and the noise gaussian by default), \"neat\" to train networks with evolving topologies, \"cmaes\" to train the network with CMA-ES, \"offheap <populationfile> <networks>\" to train a large population stored in a file, \"sweep <csvfile> [threads]\" to compare training configurations, \"tune [profilefile]\" to measure the best settings for this machine, \"play <networkfile> <network (1-20)> [playouts]\" to play against the neural network (with a tree search if playouts are given), \"serve <networkfile> <network (1-20)> <port>\" to serve the neural network to many clients, \"loadtest <host> <port> <clients> <sessions>\" to measure a server, \"solve <directory> <size>\" to solve the game on a size x size board, \"oracle <directory> <size>\" to train against the solved game, \"prune <networkfile> <network (1-20)>\" to print a pruned copy of the neural network or \"records <recorddirectory>\" to show statistics of recorded games.");
 	}
 }
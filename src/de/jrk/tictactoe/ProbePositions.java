@@ -0,0 +1,122 @@
+package de.jrk.tictactoe;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+/**
+ * Alle Stellungen, die in einem Spiel {@link TicTacToe} erreicht werden können
+ * und in denen noch ein Spieler am Zug ist. Jede Stellung wird als Input aus
+ * Sicht des Spielers am Zug gespeichert ({@code 1} für eigene Felder,
+ * {@code -1} für Felder des Gegners, {@code 0} für freie Felder), wie ihn der
+ * {@link de.jrk.tictactoe.players.NeuralNetworkPlayer NeuralNetworkPlayer}
+ * erzeugt, zusammen mit den erlaubten Zügen.
+ */
+public class ProbePositions {
+	private final double[][] inputs;
+	private final boolean[][] legalMoves;
+
+	private ProbePositions(double[][] inputs, boolean[][] legalMoves) {
+		this.inputs = inputs;
+		this.legalMoves = legalMoves;
+	}
+
+	/**
+	 * Erzeugt alle erreichbaren Stellungen eines Spielfeldes mit der Seitenlänge
+	 * {@code size}. Gewonnen hat, wer eine ganze Zeile, Spalte oder Diagonale
+	 * besetzt. Stellungen, die sich nur durch die Farben der Spieler
+	 * unterscheiden, werden nur einmal gespeichert. Die Anzahl der Stellungen
+	 * wächst sehr schnell mit {@code size}, sinnvoll ist nur {@code 3}.
+	 * 
+	 * @param size
+	 *            Die Seitenlänge des Spielfeldes.
+	 * @return Die Stellungen.
+	 */
+	public static ProbePositions reachable(int size) {
+		ArrayList<double[]> inputs = new ArrayList<double[]>();
+		ArrayList<boolean[]> legalMoves = new ArrayList<boolean[]>();
+		collect(new byte[size * size], size, 1, new HashSet<Long>(), inputs, legalMoves);
+		return new ProbePositions(inputs.toArray(new double[inputs.size()][]),
+				legalMoves.toArray(new boolean[legalMoves.size()][]));
+	}
+
+	/**
+	 * Fügt die Stellung {@code board} und alle von ihr aus erreichbaren
+	 * Stellungen hinzu, falls sie noch nicht besucht wurden.
+	 * 
+	 * @param board
+	 *            Das Spielfeld.
+	 * @param size
+	 *            Die Seitenlänge des Spielfeldes.
+	 * @param player
+	 *            Die Nummer des Spielers am Zug.
+	 * @param visited
+	 *            Die Schlüssel der bereits besuchten Inputs.
+	 * @param inputs
+	 *            Die Liste für die Inputs.
+	 * @param legalMoves
+	 *            Die Liste für die erlaubten Züge.
+	 */
+	private static void collect(byte[] board, int size, int player, HashSet<Long> visited, ArrayList<double[]> inputs,
+			ArrayList<boolean[]> legalMoves) {
+		long key = 0;
+		for (int c = 0; c < board.length; c++) {
+			key = key * 3 + (board[c] == 0 ? 0 : board[c] == player ? 1 : 2);
+		}
+		if (!visited.add(key)) {
+			return;
+		}
+		double[] input = new double[board.length];
+		boolean[] legal = new boolean[board.length];
+		for (int c = 0; c < board.length; c++) {
+			input[c] = board[c] == 0 ? 0 : board[c] == player ? 1 : -1;
+			legal[c] = board[c] == 0;
+		}
+		inputs.add(input);
+		legalMoves.add(legal);
+		for (int c = 0; c < board.length; c++) {
+			if (board[c] == 0) {
+				board[c] = (byte) player;
+				if (!WinLines.isWinningMove(board, size, c) && !isFull(board)) {
+					collect(board, size, 3 - player, visited, inputs, legalMoves);
+				}
+				board[c] = 0;
+			}
+		}
+	}
+
+	private static boolean isFull(byte[] board) {
+		for (byte cell : board) {
+			if (cell == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gibt die Inputs aller Stellungen zurück.
+	 * 
+	 * @return Die Inputs.
+	 */
+	public double[][] getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Gibt für jede Stellung die erlaubten Züge zurück.
+	 * 
+	 * @return Die erlaubten Züge.
+	 */
+	public boolean[][] getLegalMoves() {
+		return legalMoves;
+	}
+
+	/**
+	 * Gibt die Anzahl der Stellungen zurück.
+	 * 
+	 * @return Die Anzahl der Stellungen.
+	 */
+	public int size() {
+		return inputs.length;
+	}
+}
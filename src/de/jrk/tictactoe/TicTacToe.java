@@ -1,13 +1,39 @@
 package de.jrk.tictactoe;
 
 import de.jrk.tictactoe.players.Player;
+import de.jrk.tictactoe.records.GameRecord;
+import de.jrk.tictactoe.records.GameRecordSink;
 
 public class TicTacToe implements Runnable {
+	private final int size;
 	private int[][] field;
 	private Player player1;
 	private Player player2;
 	private boolean started;
 	private boolean startPlayer;
+	private GameRecordSink recordSink;
+	private byte[] moves;
+
+	/**
+	 * Erzeugt ein neues Spiel auf einem 3x3-Feld.
+	 */
+	public TicTacToe() {
+		this(3);
+	}
+
+	/**
+	 * Erzeugt ein neues Spiel auf einem Feld mit {@code size * size} Feldern.
+	 * Gewonnen hat, wer eine ganze Zeile, Spalte oder Diagonale besetzt.
+	 * 
+	 * @param size
+	 *            Die Seitenlänge des Feldes, höchstens 8.
+	 */
+	public TicTacToe(int size) {
+		if (size < 1 || size > 8) {
+			throw new IllegalArgumentException("The size must be between 1 and 8!");
+		}
+		this.size = size;
+	}
 
 	/**
 	 * Setzt Spieler 1.
@@ -41,29 +67,65 @@ public class TicTacToe implements Runnable {
 		this.startPlayer = startPlayer;
 	}
 
+	/**
+	 * Setzt den {@link GameRecordSink}, an den jedes Spiel übergeben wird.
+	 * {@code null} schaltet die Aufzeichnung aus.
+	 * 
+	 * @param recordSink
+	 */
+	public void setGameRecordSink(GameRecordSink recordSink) {
+		if (!started) {
+			this.recordSink = recordSink;
+		}
+	}
+
 	/**
 	 * Führt eine Runde des Spiels Tic-Tac-Toe aus.
 	 */
 	@Override
 	public void run() {
 		started = true;
-		field = new int[3][3];
+		GameEvent event = new GameEvent();
+		event.begin();
+		field = new int[size][size];
 		player1.init(true);
 		player2.init(false);
+		if (recordSink != null && moves == null) {
+			moves = new byte[field.length * field[0].length];
+		}
 		boolean currentPlayer = startPlayer;
+		boolean illegalMove = false;
+		int moveCount = 0;
 		int winPlayer;
 		while ((winPlayer = getWinPlayer()) == 0 && !isFieldFull()) {
 			int[] pos = (currentPlayer ? player1 : player2).turn(getFieldCopy());
+			if (recordSink != null) {
+				moves[moveCount] = (byte) (pos[0] * field[0].length + pos[1]);
+			}
+			moveCount++;
 			if (field[pos[0]][pos[1]] == 0) {
 				field[pos[0]][pos[1]] = currentPlayer ? 1 : 2;
 			} else {
 				winPlayer = currentPlayer ? 2 : 1;
+				illegalMove = true;
 				break;
 			}
 			currentPlayer = !currentPlayer;
 		}
 		player1.finish(winPlayer, field);
 		player2.finish(winPlayer, field);
+		if (recordSink != null) {
+			recordSink.record(moves, moveCount, GameRecord.encodeResult(winPlayer, startPlayer, illegalMove));
+		}
+		if (event.shouldCommit()) {
+			event.player1 = player1.getClass().getSimpleName();
+			event.player2 = player2.getClass().getSimpleName();
+			event.startPlayer1 = startPlayer;
+			event.moveCount = moveCount;
+			event.winPlayer = winPlayer;
+			event.illegalMove = illegalMove;
+			event.commit();
+		}
 		started = false;
 	}
 
@@ -73,7 +135,7 @@ public class TicTacToe implements Runnable {
 	 * @return Eine Kopie des aktuellen Spielfeldes.
 	 */
 	private int[][] getFieldCopy() {
-		int[][] result = new int[3][3];
+		int[][] result = new int[size][size];
 		for (int i = 0; i < result.length; i++) {
 			for (int j = 0; j < result[0].length; j++) {
 				result[i][j] = field[i][j];
@@ -89,36 +151,7 @@ public class TicTacToe implements Runnable {
 	 * @return Die Nummer des Spielers, der gewonnen hat.
 	 */
 	private int getWinPlayer() {
-		int currentPlayer = field[0][0];
-		if (currentPlayer != 0 && field[1][1] == currentPlayer && field[2][2] == currentPlayer) {
-			return currentPlayer;
-		}
-		if (currentPlayer != 0 && field[0][1] == currentPlayer && field[0][2] == currentPlayer) {
-			return currentPlayer;
-		}
-		if (currentPlayer != 0 && field[1][0] == currentPlayer && field[2][0] == currentPlayer) {
-			return currentPlayer;
-		}
-		currentPlayer = field[2][0];
-		if (currentPlayer != 0 && field[1][1] == currentPlayer && field[0][2] == currentPlayer) {
-			return currentPlayer;
-		}
-		if (currentPlayer != 0 && field[2][1] == currentPlayer && field[2][2] == currentPlayer) {
-			return currentPlayer;
-		}
-		currentPlayer = field[2][2];
-		if (currentPlayer != 0 && field[1][2] == currentPlayer && field[0][2] == currentPlayer) {
-			return currentPlayer;
-		}
-		currentPlayer = field[0][1];
-		if (currentPlayer != 0 && field[1][1] == currentPlayer && field[2][1] == currentPlayer) {
-			return currentPlayer;
-		}
-		currentPlayer = field[1][0];
-		if (currentPlayer != 0 && field[1][1] == currentPlayer && field[1][2] == currentPlayer) {
-			return currentPlayer;
-		}
-		return 0;
+		return WinLines.getWinPlayer(field);
 	}
 
 	/**
@@ -3,93 +3,805 @@ package de.jrk.tictactoe;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Random;
+import java.util.stream.IntStream;
 
 import de.jrk.neuralnetwork.ActivationFunction;
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.InterleavedInference;
+import de.jrk.neuralnetwork.NetworkSnapshot;
 import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.training.CMAESTrainer;
+import de.jrk.neuralnetwork.training.ChampionRegistry;
 import de.jrk.neuralnetwork.training.EvolutionalTrainer;
+import de.jrk.neuralnetwork.training.EvolutionalTrainer.BatchTester;
 import de.jrk.neuralnetwork.training.EvolutionalTrainer.NeuralNetworkTester;
+import de.jrk.neuralnetwork.training.EvolutionalTrainer.RacingTester;
+import de.jrk.neuralnetwork.training.ExecutionPlan;
+import de.jrk.neuralnetwork.training.Genome;
+import de.jrk.neuralnetwork.training.HallOfFame;
+import de.jrk.neuralnetwork.training.Mutator;
+import de.jrk.neuralnetwork.training.NEATTrainer;
+import de.jrk.neuralnetwork.training.OffHeapTrainer;
+import de.jrk.neuralnetwork.training.PopulationStore;
+import de.jrk.neuralnetwork.training.PopulationStore.GenomeView;
 import de.jrk.tictactoe.players.NeuralNetworkPlayer;
+import de.jrk.tictactoe.players.OraclePlayer;
+import de.jrk.tictactoe.players.Player;
+import de.jrk.tictactoe.players.RandomPlayer;
+import de.jrk.tictactoe.records.GameRecordSink;
+import de.jrk.tictactoe.solver.OracleTester;
+import de.jrk.tictactoe.solver.RetrogradeSolver;
 
 public class Training {
 	private File saveFile = new File("nets" + System.currentTimeMillis() / 1000 + ".txt");
 	private ArrayList<EvolutionalTrainer> evolutionalTrainers;
 	private int evolutionalTrainerIndex;
+	private ChampionRegistry champions;
+	private HallOfFame hallOfFame;
+	private int hallOfFameSize = 20;
+	private GameRecordSink gameRecordSink;
+	private Random random = new Random();
+	private boolean racing;
+	private boolean interleaved;
+	private boolean incremental;
+	private boolean multiThreading = true;
+	private boolean verbose = true;
+	private int groupCount = 20;
+	private int networkAmount = 10;
+	private int keepAmount = 5;
+	private double mutationRate = 0.2;
+	private String mutationRateControl = EvolutionalTrainer.FIXED;
+	private String mutationMode = Mutator.GAUSSIAN;
+	private int iterationsPerRound = 100;
+	private int minBatchSize = 8;
+	private int[] neurons = { 9, 18, 18, 9 };
+	private int wholeIterations;
+	private int roundCount;
 
 	/**
-	 * Trainiert 20 Gruppen á 10 {@link NeuralNetwork}s, Tic-Tac-Toe zu spielen.
-	 * Speichert nach jeder Iteration das jeweils Beste {@link NeuralNetwork} aus
-	 * jeder Gruppe in eine Datei.
+	 * Trainiert Gruppen von {@link NeuralNetwork}s, Tic-Tac-Toe zu spielen, bis
+	 * das Programm beendet wird. Standardmäßig sind es 20 Gruppen á 10
+	 * {@link NeuralNetwork}s. Speichert nach jeder Iteration das jeweils Beste
+	 * {@link NeuralNetwork} aus jeder Gruppe in eine Datei.
 	 */
 	public void train() {
-		NeuralNetwork n = new NeuralNetwork(ActivationFunction.SOFTSIGN_NORM, 9, 18, 18, 9);
+		while (true) {
+			trainRounds(1);
+		}
+	}
+
+	/**
+	 * Trainiert {@code rounds} Runden. In jeder Runde spielt eine Gruppe
+	 * {@link #setIterationsPerRound(int) iterationsPerRound} Iterationen lang
+	 * gegen die besten {@link NeuralNetwork}s der anderen Gruppen und der
+	 * {@link HallOfFame}, die Gruppen kommen reihum dran. Beim ersten Aufruf
+	 * werden die Gruppen mit den aktuellen Einstellungen erzeugt, spätere
+	 * Änderungen an Anzahl, Größe und Topologie der Gruppen werden ignoriert.
+	 * Ein weiterer Aufruf setzt das Training fort.
+	 * 
+	 * @param rounds
+	 *            Die Anzahl der Runden.
+	 */
+	public void trainRounds(int rounds) {
+		if (evolutionalTrainers == null) {
+			createGroups();
+		}
+		for (int round = 0; round < rounds; round++) {
+			trainRound();
+		}
+	}
+
+	/**
+	 * Erzeugt die Gruppen mit zufälligen {@link NeuralNetwork}s und
+	 * veröffentlicht ihre ersten Champions.
+	 */
+	private void createGroups() {
+		NeuralNetwork n = new NeuralNetwork(ActivationFunction.SOFTSIGN_NORM, neurons);
 		evolutionalTrainers = new ArrayList<EvolutionalTrainer>();
-		for (int i = 0; i < 20; i++) {
-			evolutionalTrainers.add(new EvolutionalTrainer(n, 10, 5, true));
-			evolutionalTrainers.get(i).setMutationRate(0.2);
+		for (int i = 0; i < groupCount; i++) {
+			evolutionalTrainers.add(new EvolutionalTrainer(n, networkAmount, keepAmount, true, random.nextLong()));
+			evolutionalTrainers.get(i).setMutationRate(mutationRate);
+			evolutionalTrainers.get(i).setMutationRateControl(mutationRateControl);
+			evolutionalTrainers.get(i).getMutator().setMode(mutationMode);
+			evolutionalTrainers.get(i).setMinBatchSize(minBatchSize);
 		}
-		int wholeIterations = 0;
-		while (true) {
-			if (evolutionalTrainerIndex == 0) {
-				wholeIterations++;
-			}
+		champions = new ChampionRegistry(evolutionalTrainers.size());
+		for (int i = 0; i < evolutionalTrainers.size(); i++) {
+			champions.publish(i, evolutionalTrainers.get(i).getNetworks().subList(0, 2));
+		}
+		if (hallOfFameSize > 0) {
+			ProbePositions positions = ProbePositions.reachable(3);
+			hallOfFame = new HallOfFame(hallOfFameSize, positions.getInputs(), positions.getLegalMoves());
+		}
+	}
+
+	/**
+	 * Trainiert die nächste Gruppe eine Runde lang.
+	 */
+	private void trainRound() {
+		if (evolutionalTrainerIndex == 0) {
+			wholeIterations++;
+		}
+		if (verbose) {
 			System.out.println("Training " + evolutionalTrainerIndex + " at iteration " + wholeIterations);
-			EvolutionalTrainer evolutionalTrainer = evolutionalTrainers.get(evolutionalTrainerIndex);
-			ArrayList<NeuralNetwork> opponentNetworks = getOpponentNetworks();
-			evolutionalTrainer.resetTested();
-			for (int i = 0; i < 100; i++) {
-				evolutionalTrainer.doIteration((nn) -> getNeuralNetworkTester(opponentNetworks).test(nn), true);
+		}
+		EvolutionalTrainer evolutionalTrainer = evolutionalTrainers.get(evolutionalTrainerIndex);
+		ArrayList<NetworkSnapshot> opponentNetworks = getOpponentNetworks();
+		evolutionalTrainer.resetTested();
+		for (int i = 0; i < iterationsPerRound; i++) {
+			if (racing) {
+				evolutionalTrainer.doIteration(getRacingTester(opponentNetworks), multiThreading);
+			} else if (interleaved) {
+				evolutionalTrainer.doIteration(getBatchTester(opponentNetworks), multiThreading);
+			} else {
+				evolutionalTrainer.doIteration((nn) -> getNeuralNetworkTester(opponentNetworks).test(nn),
+						multiThreading);
+			}
+		}
+		champions.publish(evolutionalTrainerIndex, evolutionalTrainer.getNetworks().subList(0, 2));
+		if (hallOfFame != null) {
+			hallOfFame.offer(champions.get(evolutionalTrainerIndex).get(0), evolutionalTrainer.getHighscore());
+		}
+		if (evolutionalTrainerIndex == evolutionalTrainers.size() - 1 && saveFile != null) {
+			saveBestNetworks();
+		}
+		evolutionalTrainerIndex = ++evolutionalTrainerIndex % evolutionalTrainers.size();
+		roundCount++;
+	}
+
+	/**
+	 * Lässt das beste {@link NeuralNetwork} jeder Gruppe {@code games} Spiele
+	 * gegen einen {@link RandomPlayer} mit dem Startwert {@code seed} spielen,
+	 * abwechselnd mit und ohne ersten Zug, und gibt den besten Score zurück
+	 * (Sieg 1, Unentschieden 0.5, illegaler Zug -1, gemittelt über die Spiele).
+	 * Anders als der Highscore hängt dieser Score nicht von den Gegnern im
+	 * Training ab, er ist also zwischen verschiedenen Trainings vergleichbar.
+	 * 
+	 * @param games
+	 *            Die Anzahl der Spiele pro Gruppe.
+	 * @param seed
+	 *            Der Startwert des {@link RandomPlayer}s.
+	 * @return Der beste Score.
+	 */
+	public double getBenchmarkScore(int games, long seed) {
+		if (evolutionalTrainers == null) {
+			throw new IllegalStateException("The training has not been started yet!");
+		}
+		double best = Double.NEGATIVE_INFINITY;
+		for (EvolutionalTrainer evolutionalTrainer : evolutionalTrainers) {
+			NetworkSnapshot snapshot = NetworkSnapshot.of(evolutionalTrainer.getBestNetwork());
+			RandomPlayer randomPlayer = new RandomPlayer(seed);
+			long halfPoints = 0;
+			for (int i = 0; i < games; i++) {
+				NeuralNetworkPlayer nnp = new NeuralNetworkPlayer(snapshot);
+				nnp.setIncremental(incremental);
+				halfPoints += playGame(nnp, randomPlayer, i % 2 == 0);
+			}
+			best = Math.max(best, halfPoints / (2.0 * games));
+		}
+		return best;
+	}
+
+	/**
+	 * Gibt die Anzahl der bisher trainierten Runden zurück.
+	 * 
+	 * @return Die Anzahl der Runden.
+	 */
+	public int getRoundCount() {
+		return roundCount;
+	}
+
+	/**
+	 * Gibt das jeweils beste {@link NeuralNetwork} jeder Gruppe zurück.
+	 * 
+	 * @return Die {@link NeuralNetwork}s in einer neuen Liste.
+	 */
+	public ArrayList<NeuralNetwork> getBestNetworks() {
+		ArrayList<NeuralNetwork> bestNetworks = new ArrayList<NeuralNetwork>();
+		if (evolutionalTrainers != null) {
+			for (EvolutionalTrainer evolutionalTrainer : evolutionalTrainers) {
+				bestNetworks.add(evolutionalTrainer.getBestNetwork());
+			}
+		}
+		return bestNetworks;
+	}
+
+	/**
+	 * Trainiert mit einem {@link NEATTrainer} 150 {@link Genome}s, deren
+	 * Topologie sich mit entwickelt. Jedes {@link Genome} spielt gegen die 20
+	 * besten {@link Genome}s der letzten Iteration. Speichert nach jeder
+	 * Iteration das beste {@link Genome} in eine Datei.
+	 */
+	public void trainTopology() {
+		NEATTrainer trainer = new NEATTrainer(ActivationFunction.SOFTSIGN_NORM, 9, 9, 150, random.nextLong());
+		File genomeFile = new File("genomes" + System.currentTimeMillis() / 1000 + ".txt");
+		for (int iteration = 1;; iteration++) {
+			ArrayList<InferenceFunction> opponents = new ArrayList<InferenceFunction>();
+			for (Genome genome : trainer.getGenomes().subList(0, 20)) {
+				opponents.add(genome.getExecutionPlan());
+			}
+			trainer.doIteration(inference -> {
+				long halfPoints = 0;
+				for (int i = 0; i < opponents.size(); i++) {
+					halfPoints += playGame(inference, opponents.get(i), i % 2 == 0);
+				}
+				return halfPoints / (2.0 * opponents.size());
+			}, true);
+			Genome best = trainer.getGenomes().get(0);
+			ExecutionPlan plan = best.getExecutionPlan();
+			System.out.println("Iteration " + iteration + ": highscore " + trainer.getHighscore() + ", "
+					+ trainer.getSpeciesCount() + " species, best genome has " + plan.getNodeCount()
+					+ " neurons and " + plan.getConnectionCount() + " connections");
+			try {
+				FileWriter fw = new FileWriter(genomeFile);
+				fw.write(trainer.getBestGenome().toString() + "\n");
+				fw.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Trainiert mit einem {@link CMAESTrainer} {@link NeuralNetwork}s mit der
+	 * Topologie aus {@link #setNeurons(int...)}. Jedes {@link NeuralNetwork}
+	 * spielt gegen die 20 besten {@link NeuralNetwork}s der letzten Iteration.
+	 * Speichert nach jeder Iteration das beste {@link NeuralNetwork} in die
+	 * Datei, die mit {@link #setSaveFile(File)} gesetzt wurde.
+	 */
+	public void trainCMAES() {
+		CMAESTrainer trainer = new CMAESTrainer(new NeuralNetwork(ActivationFunction.SOFTSIGN_NORM, neurons),
+				groupCount * networkAmount, mutationRate, true, random.nextLong());
+		for (int iteration = 1;; iteration++) {
+			ArrayList<NetworkSnapshot> opponents = new ArrayList<NetworkSnapshot>();
+			ArrayList<NeuralNetwork> networks = trainer.getNetworks();
+			if (networks.isEmpty()) {
+				networks.add(trainer.getBestNetwork());
+			}
+			for (NeuralNetwork nn : networks.subList(0, Math.min(20, networks.size()))) {
+				opponents.add(NetworkSnapshot.of(nn));
+			}
+			trainer.doIteration(getNeuralNetworkTester(opponents), multiThreading);
+			if (verbose) {
+				System.out.println("Iteration " + iteration + ": highscore " + trainer.getHighscore() + ", sigma "
+						+ trainer.getSigma());
+			}
+			if (saveFile != null) {
+				try {
+					FileWriter fw = new FileWriter(saveFile);
+					fw.write(trainer.getBestNetwork().toString() + "\n");
+					fw.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Trainiert mit einem {@link OffHeapTrainer} {@code genomeCount}
+	 * {@link NeuralNetwork}s, deren Parameter in der Datei {@code file} liegen.
+	 * Ist die Datei nicht leer, wird das Training mit der gespeicherten
+	 * Population fortgesetzt. Jedes {@link NeuralNetwork} spielt gegen die bis zu
+	 * 20 besten behaltenen {@link NeuralNetwork}s der letzten Iteration. Nach
+	 * jeder Iteration werden der Highscore und die Arbeit des Garbage Collectors
+	 * ausgegeben.
+	 * 
+	 * @param file
+	 *            Die Datei mit der Population.
+	 * @param genomeCount
+	 *            Die Anzahl der {@link NeuralNetwork}s.
+	 * @throws IOException
+	 *             Wenn die Datei nicht abgebildet werden kann.
+	 */
+	public void trainOffHeap(File file, int genomeCount) throws IOException {
+		boolean resume = file.length() > 0;
+		NeuralNetwork template = new NeuralNetwork(ActivationFunction.SOFTSIGN_NORM, 9, 18, 18, 9);
+		try (PopulationStore store = PopulationStore.map(file, template, genomeCount)) {
+			int keep = Math.max(1, genomeCount / 10);
+			OffHeapTrainer trainer = new OffHeapTrainer(store, keep, random.nextLong());
+			trainer.getMutator().setMode(mutationMode);
+			if (!resume) {
+				trainer.randomize(1);
+			}
+			int[] opponents = new int[0];
+			for (int iteration = 1;; iteration++) {
+				int[] currentOpponents = opponents.length > 0 ? opponents : trainer.getBestGenomes(Math.min(20, keep));
+				ThreadLocal<GenomeView[]> opponentViews = ThreadLocal.withInitial(() -> {
+					GenomeView[] views = new GenomeView[currentOpponents.length];
+					for (int i = 0; i < views.length; i++) {
+						views[i] = store.newView().setGenome(currentOpponents[i]);
+					}
+					return views;
+				});
+				trainer.doIteration(inference -> {
+					GenomeView[] views = opponentViews.get();
+					long halfPoints = 0;
+					for (int i = 0; i < views.length; i++) {
+						halfPoints += playGame(inference, views[i], i % 2 == 0);
+					}
+					return halfPoints / (2.0 * views.length);
+				}, true);
+				opponents = trainer.getBestGenomes(Math.min(20, keep));
+				long gcCount = 0;
+				long gcTime = 0;
+				for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+					gcCount += Math.max(0, gc.getCollectionCount());
+					gcTime += Math.max(0, gc.getCollectionTime());
+				}
+				System.out.println("Iteration " + iteration + ": highscore " + trainer.getHighscore() + ", " + gcCount
+						+ " garbage collections in " + gcTime + " ms so far");
+				store.force();
+			}
+		}
+	}
+
+	/**
+	 * Trainiert eine Gruppe von {@link NeuralNetwork}s für das Feld des
+	 * {@link RetrogradeSolver}s {@code solver}. Statt Turnieren bewertet ein
+	 * {@link OracleTester}, wie oft ein {@link NeuralNetwork} in 10000 Stellungen
+	 * einen besten Zug wählt. Nach jeweils {@link #setIterationsPerRound(int)}
+	 * Iterationen spielt das beste {@link NeuralNetwork} mit und ohne ersten Zug
+	 * gegen einen {@link OraclePlayer}. Da beide Spieler deterministisch sind,
+	 * reichen dafür zwei Spiele, und ein Score von 0.5 heißt, dass es perfekt
+	 * spielt. Anschließend wird es in die Datei gespeichert, die mit
+	 * {@link #setSaveFile(File)} gesetzt wurde.
+	 * 
+	 * @param solver
+	 *            Der vollständig berechnete {@link RetrogradeSolver}.
+	 */
+	public void trainWithOracle(RetrogradeSolver solver) {
+		int cells = solver.getIndex().getCellCount();
+		OracleTester tester = new OracleTester(solver, 10000, random.nextLong());
+		System.out.println("Testing with " + tester.getPositionCount() + " positions");
+		EvolutionalTrainer trainer = new EvolutionalTrainer(
+				new NeuralNetwork(ActivationFunction.SOFTSIGN_NORM, cells, 2 * cells, 2 * cells, cells), networkAmount,
+				keepAmount, true, random.nextLong());
+		trainer.setMutationRate(mutationRate);
+		trainer.setMutationRateControl(mutationRateControl);
+		trainer.getMutator().setMode(mutationMode);
+		OraclePlayer oracle = new OraclePlayer(solver);
+		for (int iteration = 1;; iteration++) {
+			trainer.doIteration(tester, multiThreading);
+			if (verbose) {
+				System.out.println("Iteration " + iteration + ": highscore " + trainer.getHighscore());
 			}
-			if (evolutionalTrainerIndex == evolutionalTrainers.size() - 1) {
-				saveBestNetworks();
+			if (iteration % iterationsPerRound != 0) {
+				continue;
+			}
+			NetworkSnapshot best = NetworkSnapshot.of(trainer.getBestNetwork());
+			long halfPoints = 0;
+			for (int i = 0; i < 2; i++) {
+				NeuralNetworkPlayer nnp = new NeuralNetworkPlayer(best);
+				nnp.setIncremental(incremental);
+				halfPoints += playGame(nnp, oracle, i == 0, solver.getSize());
+			}
+			System.out.println("Score against the oracle: " + halfPoints / 4.0);
+			if (saveFile != null) {
+				System.out.println("Saving to " + saveFile.getAbsolutePath());
+				try {
+					FileWriter fw = new FileWriter(saveFile);
+					fw.write(trainer.getBestNetwork().toString() + "\n");
+					fw.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
 			}
-			evolutionalTrainerIndex = ++evolutionalTrainerIndex % evolutionalTrainers.size();
 		}
 	}
 
+	/**
+	 * Setzt den Startwert für alle Zufallsentscheidungen des Trainings. Zwei
+	 * Trainings mit dem gleichen Startwert erzeugen genau die gleichen
+	 * {@link NeuralNetwork}s, obwohl alle Prozessorkerne genutzt werden.
+	 * 
+	 * @param seed
+	 *            Der Startwert.
+	 */
+	public void setSeed(long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Setzt die Anzahl der Gruppen. Standardwert ist {@code 20}.
+	 * 
+	 * @param groupCount
+	 *            Die Anzahl der Gruppen, mindestens 2.
+	 */
+	public void setGroupCount(int groupCount) {
+		if (groupCount < 2) {
+			throw new IllegalArgumentException("At least two groups are needed!");
+		}
+		this.groupCount = groupCount;
+	}
+
+	/**
+	 * Setzt die Anzahl der {@link NeuralNetwork}s pro Gruppe. Standardwert ist
+	 * {@code 10}.
+	 * 
+	 * @param networkAmount
+	 *            Die Anzahl der {@link NeuralNetwork}s.
+	 */
+	public void setNetworkAmount(int networkAmount) {
+		this.networkAmount = networkAmount;
+	}
+
+	/**
+	 * Setzt die Anzahl der {@link NeuralNetwork}s, die in jeder Iteration einer
+	 * Gruppe behalten werden. Standardwert ist {@code 5}.
+	 * 
+	 * @param keepAmount
+	 *            Die Anzahl der behaltenen {@link NeuralNetwork}s.
+	 */
+	public void setKeepAmount(int keepAmount) {
+		this.keepAmount = keepAmount;
+	}
+
+	/**
+	 * Setzt die anfängliche Mutationsrate. Standardwert ist {@code 0.2}.
+	 * 
+	 * @param mutationRate
+	 *            Die Mutationsrate.
+	 */
+	public void setMutationRate(double mutationRate) {
+		this.mutationRate = mutationRate;
+	}
+
+	/**
+	 * Setzt, wie die Mutationsrate während des Trainings angepasst wird, siehe
+	 * {@link EvolutionalTrainer#setMutationRateControl(String)}. Standardwert ist
+	 * {@link EvolutionalTrainer#FIXED}.
+	 * 
+	 * @param mutationRateControl
+	 *            Die Art der Anpassung.
+	 */
+	public void setMutationRateControl(String mutationRateControl) {
+		if (!mutationRateControl.equals(EvolutionalTrainer.FIXED)
+				&& !mutationRateControl.equals(EvolutionalTrainer.ONE_FIFTH_RULE)
+				&& !mutationRateControl.equals(EvolutionalTrainer.SELF_ADAPTIVE)) {
+			throw new IllegalArgumentException(
+					"Mutation rate control \"" + mutationRateControl + "\" does not exist!");
+		}
+		this.mutationRateControl = mutationRateControl;
+	}
+
+	/**
+	 * Setzt die Mutationsart des {@link Mutator}s, siehe
+	 * {@link Mutator#setMode(String)}. Standardwert ist {@link Mutator#GAUSSIAN},
+	 * da bei {@link Mutator#MULTIPLICATIVE} ein Gewicht mit dem Wert 0 nicht mehr
+	 * verändert wird.
+	 * 
+	 * @param mutationMode
+	 *            Die Mutationsart.
+	 */
+	public void setMutationMode(String mutationMode) {
+		if (!mutationMode.equals(Mutator.MULTIPLICATIVE) && !mutationMode.equals(Mutator.UNIFORM)
+				&& !mutationMode.equals(Mutator.GAUSSIAN)) {
+			throw new IllegalArgumentException("Mutation mode \"" + mutationMode + "\" does not exist!");
+		}
+		this.mutationMode = mutationMode;
+	}
+
+	/**
+	 * Setzt die Anzahl der Iterationen, die eine Gruppe pro Runde trainiert wird.
+	 * Standardwert ist {@code 100}.
+	 * 
+	 * @param iterationsPerRound
+	 *            Die Anzahl der Iterationen.
+	 */
+	public void setIterationsPerRound(int iterationsPerRound) {
+		this.iterationsPerRound = iterationsPerRound;
+	}
+
+	/**
+	 * Setzt die Anzahl der Neuronen in jeder Schicht. Die erste und die letzte
+	 * Schicht müssen 9 Neuronen haben. Standardwert ist {@code 9, 18, 18, 9}.
+	 * 
+	 * @param neurons
+	 *            Die Anzahl der Neuronen in jeder Schicht.
+	 */
+	public void setNeurons(int... neurons) {
+		if (neurons.length < 2 || neurons[0] != 9 || neurons[neurons.length - 1] != 9) {
+			throw new IllegalArgumentException("The neural networks must have 9 inputs and 9 outputs!");
+		}
+		this.neurons = neurons.clone();
+	}
+
+	/**
+	 * Setzt die Datei, in die nach jeder Runde der letzten Gruppe die besten
+	 * {@link NeuralNetwork}s gespeichert werden. {@code null} schaltet das
+	 * Speichern aus. Standardwert ist {@code nets<Zeitstempel>.txt}.
+	 * 
+	 * @param saveFile
+	 *            Die Datei.
+	 */
+	public void setSaveFile(File saveFile) {
+		this.saveFile = saveFile;
+	}
+
+	/**
+	 * Setzt, ob die {@link NeuralNetwork}s einer Gruppe parallel getestet
+	 * werden. Die Spiele gegen die einzelnen Gegner laufen unabhängig davon in
+	 * parallelen Streams. Beides nutzt den
+	 * {@link java.util.concurrent.ForkJoinPool ForkJoinPool} des aufrufenden
+	 * Threads. Standardwert ist {@code true}.
+	 * 
+	 * @param multiThreading
+	 *            Ob die {@link NeuralNetwork}s parallel getestet werden.
+	 */
+	public void setMultiThreading(boolean multiThreading) {
+		this.multiThreading = multiThreading;
+	}
+
+	/**
+	 * Setzt, ob der Fortschritt auf der Konsole ausgegeben wird. Standardwert ist
+	 * {@code true}.
+	 * 
+	 * @param verbose
+	 *            Ob der Fortschritt ausgegeben wird.
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	/**
+	 * Setzt, ob die {@link NeuralNetwork}s mit einem {@link RacingTester}
+	 * getestet werden, sodass schlechte {@link NeuralNetwork}s nicht gegen alle
+	 * Gegner spielen müssen. Standardwert ist {@code false}.
+	 * 
+	 * @param racing
+	 *            Ob mit einem {@link RacingTester} getestet wird.
+	 */
+	public void setRacing(boolean racing) {
+		this.racing = racing;
+	}
+
+	/**
+	 * Setzt, ob alle {@link NeuralNetwork}s einer Gruppe mit einem
+	 * {@link BatchTester} gemeinsam getestet werden. Sie spielen dann mit einer
+	 * {@link InterleavedInference} im Gleichschritt gegen jeden Gegner. Wird
+	 * ignoriert, wenn mit einem {@link RacingTester} getestet wird.
+	 * 
+	 * @param interleaved
+	 *            Ob mit einem {@link BatchTester} getestet wird.
+	 */
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	/**
+	 * Setzt, wie viele {@link NeuralNetwork}s beim gemeinsamen Testen mit
+	 * Multithreading mindestens zusammen getestet werden. Standardwert ist
+	 * {@code 8}.
+	 * 
+	 * @param minBatchSize
+	 *            Die kleinste Gruppengröße.
+	 * @see EvolutionalTrainer#setMinBatchSize(int)
+	 */
+	public void setMinBatchSize(int minBatchSize) {
+		this.minBatchSize = minBatchSize;
+	}
+
+	/**
+	 * Setzt, ob die {@link NeuralNetworkPlayer} die erste Schicht inkrementell
+	 * über die Züge eines Spiels hinweg berechnen. Standardwert ist
+	 * {@code false}.
+	 * 
+	 * @param incremental
+	 *            Ob inkrementell gerechnet wird.
+	 * @see NeuralNetworkPlayer#setIncremental(boolean)
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Setzt die Größe der {@link HallOfFame}, in der die besten
+	 * {@link NeuralNetwork}s früherer Runden als zusätzliche Gegner gesammelt
+	 * werden. {@code 0} schaltet die {@link HallOfFame} aus. Standardwert ist
+	 * {@code 20}.
+	 * 
+	 * @param hallOfFameSize
+	 *            Die größte Anzahl an früheren {@link NeuralNetwork}s.
+	 */
+	public void setHallOfFameSize(int hallOfFameSize) {
+		this.hallOfFameSize = hallOfFameSize;
+	}
+
+	/**
+	 * Setzt den {@link GameRecordSink}, an den alle Trainingsspiele übergeben
+	 * werden. Der {@link GameRecordSink} muss von mehreren Threads gleichzeitig
+	 * genutzt werden können. {@code null} schaltet die Aufzeichnung aus.
+	 * 
+	 * @param gameRecordSink
+	 *            Der {@link GameRecordSink}.
+	 */
+	public void setGameRecordSink(GameRecordSink gameRecordSink) {
+		this.gameRecordSink = gameRecordSink;
+	}
+
 	/**
 	 * Gibt einen {@link NeuralNetworkTester} zurück, um zu testen, wie gut ein
-	 * {@link NeuralNetwork} gegen die {@link NeuralNetwork}s
-	 * {@code opponentNetworks} ist.
+	 * {@link NeuralNetwork} gegen die {@link NetworkSnapshot}s
+	 * {@code opponentNetworks} ist. Das getestete {@link NeuralNetwork} spielt
+	 * selbst auch als {@link NetworkSnapshot}, damit die parallelen Spiele keinen
+	 * gemeinsamen Zustand verändern.
 	 * 
 	 * @param opponentNetworks
-	 *            Die {@link NeuralNetwork}s gegen die das zu testende
+	 *            Die {@link NetworkSnapshot}s gegen die das zu testende
 	 *            {@link NeuralNetwork} spielt.
 	 * @return Der {@link NeuralNetworkTester}.
 	 */
-	private NeuralNetworkTester getNeuralNetworkTester(ArrayList<NeuralNetwork> opponentNetworks) {
+	private NeuralNetworkTester getNeuralNetworkTester(ArrayList<NetworkSnapshot> opponentNetworks) {
 		return new NeuralNetworkTester() {
 			@Override
 			public double test(NeuralNetwork nn) {
-				TicTacToe ttt = new TicTacToe();
-				NeuralNetworkPlayer nnp = new NeuralNetworkPlayer(nn);
-				ttt.setPlayer1(nnp);
-				for (int i = 0; i < opponentNetworks.size(); i++) {
-					ttt.setPlayer2(new NeuralNetworkPlayer(opponentNetworks.get(i)));
-					ttt.setStartPlayer(i % 2 == 0);
-					ttt.run();
+				NetworkSnapshot snapshot = NetworkSnapshot.of(nn);
+				long halfPoints = IntStream.range(0, opponentNetworks.size()).parallel()
+						.mapToLong(i -> playGame(snapshot, opponentNetworks.get(i), i % 2 == 0)).sum();
+				return halfPoints / (2.0 * opponentNetworks.size());
+			}
+		};
+	}
+
+	/**
+	 * Gibt einen {@link RacingTester} zurück, der wie der
+	 * {@link #getNeuralNetworkTester(ArrayList) NeuralNetworkTester} gegen die
+	 * {@link NetworkSnapshot}s {@code opponentNetworks} spielt, aber immer nur
+	 * gegen einen Teil davon. Ein Spiel ergibt 1 für einen Sieg, 0.5 für ein
+	 * Unentschieden und -1 für einen illegalen Zug.
+	 * 
+	 * @param opponentNetworks
+	 *            Die {@link NetworkSnapshot}s gegen die das zu testende
+	 *            {@link NeuralNetwork} spielt.
+	 * @return Der {@link RacingTester}.
+	 */
+	private RacingTester getRacingTester(ArrayList<NetworkSnapshot> opponentNetworks) {
+		return new RacingTester() {
+			@Override
+			public int getGameCount() {
+				return opponentNetworks.size();
+			}
+
+			@Override
+			public double getMinResult() {
+				return -1;
+			}
+
+			@Override
+			public double getMaxResult() {
+				return 1;
+			}
+
+			@Override
+			public void test(NeuralNetwork nn, int fromGame, int toGame, double[] results) {
+				NetworkSnapshot snapshot = NetworkSnapshot.of(nn);
+				IntStream.range(fromGame, toGame).parallel()
+						.forEach(i -> results[i] = playGame(snapshot, opponentNetworks.get(i), i % 2 == 0) / 2.0);
+			}
+		};
+	}
+
+	/**
+	 * Gibt einen {@link BatchTester} zurück, der wie der
+	 * {@link #getNeuralNetworkTester(ArrayList) NeuralNetworkTester} gegen die
+	 * {@link NetworkSnapshot}s {@code opponentNetworks} spielt, aber alle
+	 * {@link NeuralNetwork}s gleichzeitig mit {@link LockstepGames}. Die Scores
+	 * sind die gleichen wie beim {@link NeuralNetworkTester}.
+	 * 
+	 * @param opponentNetworks
+	 *            Die {@link NetworkSnapshot}s gegen die die zu testenden
+	 *            {@link NeuralNetwork}s spielen.
+	 * @return Der {@link BatchTester}.
+	 */
+	private BatchTester getBatchTester(ArrayList<NetworkSnapshot> opponentNetworks) {
+		return new BatchTester() {
+			@Override
+			public void test(NeuralNetwork[] nns, double[] scores) {
+				InterleavedInference candidates = new InterleavedInference(nns);
+				long[][] halfPoints = new long[opponentNetworks.size()][nns.length];
+				IntStream.range(0, opponentNetworks.size()).parallel().forEach(i -> {
+					LockstepGames games = new LockstepGames(candidates);
+					games.setGameRecordSink(gameRecordSink);
+					games.play(opponentNetworks.get(i), i % 2 == 0, halfPoints[i]);
+				});
+				for (int k = 0; k < nns.length; k++) {
+					long sum = 0;
+					for (int i = 0; i < halfPoints.length; i++) {
+						sum += halfPoints[i][k];
+					}
+					scores[k] = sum / (2.0 * opponentNetworks.size());
 				}
-				double score = (nnp.getWins() + nnp.getDraws() * 0.5 - nnp.getIlls())
-						/ (double) opponentNetworks.size();
-				return score;
 			}
 		};
 	}
 
 	/**
-	 * Gibt die Gegner-{@link NeuralNetwork}s in einer Liste zurück.
+	 * Spielt ein Spiel der {@link InferenceFunction} {@code inference} gegen die
+	 * {@link InferenceFunction} {@code opponent} und gibt das Ergebnis in halben
+	 * Punkten zurück (Sieg 2, Unentschieden 1, illegaler Zug -2). Da die
+	 * Ergebnisse ganzzahlig sind, hängt ihre Summe nicht von der Reihenfolge ab,
+	 * in der die Spiele fertig werden.
 	 * 
-	 * @return Die Gegner-{@link NeuralNetwork}s in einer Liste.
+	 * @param inference
+	 *            Die {@link InferenceFunction}, die getestet wird.
+	 * @param opponent
+	 *            Die {@link InferenceFunction} des Gegners.
+	 * @param startPlayer
+	 *            Ob die getestete {@link InferenceFunction} anfängt.
+	 * @return Das Ergebnis in halben Punkten.
 	 */
-	private ArrayList<NeuralNetwork> getOpponentNetworks() {
-		ArrayList<NeuralNetwork> opponentNetworks = new ArrayList<NeuralNetwork>();
-		for (int i = 0; i < evolutionalTrainers.size(); i++) {
-			if (i == evolutionalTrainerIndex)
-				continue;
-			opponentNetworks.addAll(evolutionalTrainers.get(i).getNetworks().subList(0, 2));
+	private long playGame(InferenceFunction inference, InferenceFunction opponent, boolean startPlayer) {
+		NeuralNetworkPlayer nnp = new NeuralNetworkPlayer(inference);
+		NeuralNetworkPlayer opponentPlayer = new NeuralNetworkPlayer(opponent);
+		nnp.setIncremental(incremental);
+		opponentPlayer.setIncremental(incremental);
+		return playGame(nnp, opponentPlayer, startPlayer);
+	}
+
+	/**
+	 * Spielt ein Spiel des {@link NeuralNetworkPlayer}s {@code nnp} gegen den
+	 * {@link Player} {@code opponent} und gibt das Ergebnis wie
+	 * {@link #playGame(InferenceFunction, InferenceFunction, boolean) playGame} in
+	 * halben Punkten zurück.
+	 * 
+	 * @param nnp
+	 *            Der {@link NeuralNetworkPlayer}, der getestet wird.
+	 * @param opponent
+	 *            Der Gegner.
+	 * @param startPlayer
+	 *            Ob der getestete {@link NeuralNetworkPlayer} anfängt.
+	 * @return Das Ergebnis in halben Punkten.
+	 */
+	private long playGame(NeuralNetworkPlayer nnp, Player opponent, boolean startPlayer) {
+		return playGame(nnp, opponent, startPlayer, 3);
+	}
+
+	/**
+	 * Spielt wie {@link #playGame(NeuralNetworkPlayer, Player, boolean) playGame}
+	 * ein Spiel, aber auf einem Feld mit {@code size * size} Feldern.
+	 * 
+	 * @param nnp
+	 *            Der {@link NeuralNetworkPlayer}, der getestet wird.
+	 * @param opponent
+	 *            Der Gegner.
+	 * @param startPlayer
+	 *            Ob der getestete {@link NeuralNetworkPlayer} anfängt.
+	 * @param size
+	 *            Die Seitenlänge des Feldes.
+	 * @return Das Ergebnis in halben Punkten.
+	 */
+	private long playGame(NeuralNetworkPlayer nnp, Player opponent, boolean startPlayer, int size) {
+		TicTacToe ttt = new TicTacToe(size);
+		ttt.setGameRecordSink(gameRecordSink);
+		ttt.setPlayer1(nnp);
+		ttt.setPlayer2(opponent);
+		ttt.setStartPlayer(startPlayer);
+		ttt.run();
+		return nnp.getWins() * 2 + nnp.getDraws() - nnp.getIlls() * 2;
+	}
+
+	/**
+	 * Gibt die veröffentlichten besten {@link NeuralNetwork}s aller anderen
+	 * Gruppen und die {@link NeuralNetwork}s aus der {@link HallOfFame} als
+	 * {@link NetworkSnapshot}s in einer gemischten Liste zurück. Von
+	 * {@link NetworkSnapshot}s, die in allen Stellungen gleich spielen, wird nur
+	 * einer behalten.
+	 * 
+	 * @return Die Gegner-{@link NetworkSnapshot}s in einer Liste.
+	 */
+	private ArrayList<NetworkSnapshot> getOpponentNetworks() {
+		ArrayList<NetworkSnapshot> opponentNetworks = champions.getChampions(evolutionalTrainerIndex);
+		if (hallOfFame != null) {
+			opponentNetworks.addAll(hallOfFame.getMembers());
+			opponentNetworks = hallOfFame.getDistinct(opponentNetworks);
 		}
-		Collections.shuffle(opponentNetworks);
+		Collections.shuffle(opponentNetworks, random);
 		return opponentNetworks;
 	}
 
@@ -0,0 +1,154 @@
+package de.jrk.tictactoe;
+
+/**
+ * Prüft, ob ein Spieler eine ganze Zeile, Spalte oder Diagonale eines
+ * Tic-Tac-Toe-Feldes mit {@code size * size} Feldern besetzt hat. Die Felder
+ * sind zeilenweise nummeriert, Feld {@code i * size + j} liegt also in Zeile
+ * {@code i} und Spalte {@code j}. Die Methoden mit Bitmasken unterstützen
+ * Felder bis 8x8.
+ */
+public final class WinLines {
+	private static final int MAX_SIZE = 8;
+	private static final long[][] LINES = new long[MAX_SIZE + 1][];
+
+	static {
+		for (int size = 1; size <= MAX_SIZE; size++) {
+			long[] lines = new long[2 * size + 2];
+			for (int i = 0; i < size; i++) {
+				for (int j = 0; j < size; j++) {
+					lines[i] |= 1L << (i * size + j);
+					lines[size + i] |= 1L << (j * size + i);
+				}
+				lines[2 * size] |= 1L << (i * size + i);
+				lines[2 * size + 1] |= 1L << (i * size + size - 1 - i);
+			}
+			LINES[size] = lines;
+		}
+	}
+
+	private WinLines() {
+	}
+
+	/**
+	 * Gibt die Bitmasken aller Zeilen, Spalten und der beiden Diagonalen zurück.
+	 * Das Array darf nicht verändert werden.
+	 * 
+	 * @param size
+	 *            Die Seitenlänge des Feldes, höchstens 8.
+	 * @return Die Bitmasken.
+	 */
+	public static long[] getLines(int size) {
+		if (size < 1 || size > MAX_SIZE) {
+			throw new IllegalArgumentException("The size must be between 1 and " + MAX_SIZE + "!");
+		}
+		return LINES[size];
+	}
+
+	/**
+	 * Gibt zurück, ob die Felder {@code cells} eine ganze Zeile, Spalte oder
+	 * Diagonale enthalten.
+	 * 
+	 * @param cells
+	 *            Die Bitmaske der Felder eines Spielers.
+	 * @param size
+	 *            Die Seitenlänge des Feldes, höchstens 8.
+	 * @return Ob der Spieler gewonnen hat.
+	 */
+	public static boolean hasLine(long cells, int size) {
+		for (long line : getLines(size)) {
+			if ((cells & line) == line) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gibt die Nummer des Spielers zurück, der eine ganze Linie besetzt hat, oder
+	 * {@code 0}.
+	 * 
+	 * @param field
+	 *            Die Felder, mit {@code 0} für leer und der Spielernummer sonst.
+	 * @param offset
+	 *            Der Index des ersten Feldes in {@code field}.
+	 * @param size
+	 *            Die Seitenlänge des Feldes, höchstens 8.
+	 * @return Die Nummer des Spielers, der gewonnen hat.
+	 */
+	public static int getWinPlayer(int[] field, int offset, int size) {
+		for (long line : getLines(size)) {
+			int player = field[offset + Long.numberOfTrailingZeros(line)];
+			if (player != 0 && isLine(field, offset, line, player)) {
+				return player;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Gibt die Nummer des Spielers zurück, der eine ganze Linie besetzt hat, oder
+	 * {@code 0}.
+	 * 
+	 * @param field
+	 *            Das quadratische Spielfeld, mit {@code 0} für leer und der
+	 *            Spielernummer sonst.
+	 * @return Die Nummer des Spielers, der gewonnen hat.
+	 */
+	public static int getWinPlayer(int[][] field) {
+		int size = field.length;
+		for (long line : getLines(size)) {
+			int first = Long.numberOfTrailingZeros(line);
+			int player = field[first / size][first % size];
+			if (player == 0) {
+				continue;
+			}
+			boolean win = true;
+			for (long bits = line; bits != 0 && win; bits &= bits - 1) {
+				int c = Long.numberOfTrailingZeros(bits);
+				win = field[c / size][c % size] == player;
+			}
+			if (win) {
+				return player;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Gibt zurück, ob der Spieler auf dem Feld {@code cell} eine Zeile, Spalte
+	 * oder Diagonale durch dieses Feld vollständig besetzt hat. Diese Methode
+	 * prüft nur die Linien durch {@code cell} und funktioniert für jede Größe.
+	 * 
+	 * @param board
+	 *            Das Spielfeld.
+	 * @param size
+	 *            Die Seitenlänge des Spielfeldes.
+	 * @param cell
+	 *            Das zuletzt besetzte Feld.
+	 * @return Ob der Spieler gewonnen hat.
+	 */
+	public static boolean isWinningMove(byte[] board, int size, int cell) {
+		int row = cell / size;
+		int col = cell % size;
+		boolean rowWin = true;
+		boolean colWin = true;
+		boolean diagonalWin = row == col;
+		boolean antiDiagonalWin = row + col == size - 1;
+		for (int k = 0; k < size; k++) {
+			rowWin &= board[row * size + k] == board[cell];
+			colWin &= board[k * size + col] == board[cell];
+			diagonalWin &= board[k * size + k] == board[cell];
+			antiDiagonalWin &= board[k * size + size - 1 - k] == board[cell];
+		}
+		return rowWin || colWin || diagonalWin || antiDiagonalWin;
+	}
+
+	private static boolean isLine(int[] field, int offset, long line, int player) {
+		for (long bits = line; bits != 0; bits &= bits - 1) {
+			if (field[offset + Long.numberOfTrailingZeros(bits)] != player) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
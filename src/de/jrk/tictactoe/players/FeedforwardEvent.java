@@ -0,0 +1,48 @@
+package de.jrk.tictactoe.players;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Ein Java Flight Recorder Event für die Berechnung eines Zuges durch das
+ * {@link de.jrk.neuralnetwork.NeuralNetwork NeuralNetwork} eines
+ * {@link NeuralNetworkPlayer}s. Da ein Durchlauf nur wenige Mikrosekunden
+ * dauert, wird nur jeder {@link #SAMPLE_INTERVAL}-te Durchlauf (im Mittel)
+ * aufgezeichnet. Ist das Event nicht eingeschaltet, kostet ein Durchlauf nur
+ * eine Abfrage. Das Intervall wird mit der System Property
+ * {@code de.jrk.jfr.feedforwardSampleInterval} gesetzt, Standardwert ist
+ * {@code 64}.
+ */
+@Name("de.jrk.Feedforward")
+@Label("Feedforward")
+@Category({ "Neural Network", "Inference" })
+@Description("A sampled feedforward pass of a neural network player")
+@StackTrace(false)
+class FeedforwardEvent extends Event {
+	static final int SAMPLE_INTERVAL = Math.max(1, Integer.getInteger("de.jrk.jfr.feedforwardSampleInterval", 64));
+	private static final EventType TYPE = EventType.getEventType(FeedforwardEvent.class);
+
+	@Label("Inference")
+	@Description("The class that computed the outputs")
+	String inference;
+
+	@Label("Sample Interval")
+	int sampleInterval;
+
+	/**
+	 * Gibt zurück, ob der nächste Durchlauf aufgezeichnet werden soll. Die
+	 * Zufallszahl wird nur gezogen, wenn das Event eingeschaltet ist.
+	 * 
+	 * @return Ob der Durchlauf aufgezeichnet wird.
+	 */
+	static boolean sample() {
+		return TYPE.isEnabled() && (SAMPLE_INTERVAL == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL) == 0);
+	}
+}
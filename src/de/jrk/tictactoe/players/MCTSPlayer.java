@@ -0,0 +1,489 @@
+package de.jrk.tictactoe.players;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.NetworkCompiler;
+import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.tictactoe.WinLines;
+
+/**
+ * Ein Spieler, der mit einer Monte-Carlo-Baumsuche zieht. Der Output eines
+ * {@link NeuralNetwork}s wird als Wahrscheinlichkeitsverteilung (Prior) für die
+ * Züge verwendet (PUCT), Stellungen werden durch zufällige Spiele bewertet.<br>
+ * <br>
+ * Mehrere Threads durchsuchen denselben Baum. Die Statistiken der Knoten werden
+ * ohne Locks mit atomaren Operationen aktualisiert und jeder Thread zählt einen
+ * Knoten, den er gerade durchsucht, vorübergehend als verloren (Virtual Loss),
+ * damit die anderen Threads andere Züge untersuchen. Der Baum wird zwischen
+ * den Zügen eines Spiels wiederverwendet.<br>
+ * <br>
+ * Das Spielfeld kann beliebig groß sein, gewonnen hat, wer eine ganze Zeile,
+ * Spalte oder Diagonale besetzt.
+ */
+public class MCTSPlayer extends Player implements Closeable {
+	private static final Node[] EXPANDING = new Node[0];
+
+	private final InferenceFunction prior;
+	private final int threads;
+	private final ExecutorService executor;
+	private int playoutBudget = 800;
+	private long timeBudget = 0;
+	private double exploration = 1.5;
+	private double temperature = 1;
+	private boolean firstPlayer;
+	private int size;
+	private byte[] rootBoard;
+	private Node root;
+	private final AtomicInteger playouts = new AtomicInteger();
+	private long deadline;
+
+	/**
+	 * Konstruiert einen neuen Spieler, der das {@link NeuralNetwork} {@code nn}
+	 * mit dem {@link NetworkCompiler} übersetzt und als Prior verwendet.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}.
+	 * @param threads
+	 *            Die Anzahl der Threads für die Suche.
+	 */
+	public MCTSPlayer(NeuralNetwork nn, int threads) {
+		this(NetworkCompiler.compileOrInterpret(nn), threads);
+	}
+
+	/**
+	 * Konstruiert einen neuen Spieler, der die {@link InferenceFunction}
+	 * {@code prior} als Prior verwendet. Sie muss von mehreren Threads
+	 * gleichzeitig aufgerufen werden können.
+	 * 
+	 * @param prior
+	 *            Die {@link InferenceFunction}.
+	 * @param threads
+	 *            Die Anzahl der Threads für die Suche.
+	 */
+	public MCTSPlayer(InferenceFunction prior, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The amount of threads must not be less than 1!");
+		}
+		this.prior = prior;
+		this.threads = threads;
+		executor = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "MCTSPlayer");
+			thread.setDaemon(true);
+			return thread;
+		}) : null;
+	}
+
+	/**
+	 * Setzt die Anzahl der zufälligen Spiele pro Zug. Ein Wert kleiner oder
+	 * gleich {@code 0} bedeutet keine Begrenzung, dann muss eine Zeit gesetzt
+	 * sein. Standardwert ist {@code 800}.
+	 * 
+	 * @param playoutBudget
+	 *            Die Anzahl der Spiele pro Zug.
+	 */
+	public void setPlayoutBudget(int playoutBudget) {
+		this.playoutBudget = playoutBudget;
+	}
+
+	/**
+	 * Setzt die Zeit pro Zug. Ein Wert kleiner oder gleich {@code 0} bedeutet
+	 * keine Begrenzung, das ist der Standardwert.
+	 * 
+	 * @param timeBudget
+	 *            Die Zeit in Millisekunden.
+	 */
+	public void setTimeBudget(long timeBudget) {
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Setzt die Gewichtung des Priors und der Exploration gegenüber dem
+	 * bisherigen Ergebnis eines Zuges (c<sub>puct</sub>). Standardwert ist
+	 * {@code 1.5}.
+	 * 
+	 * @param exploration
+	 *            Die Gewichtung.
+	 */
+	public void setExploration(double exploration) {
+		this.exploration = exploration;
+	}
+
+	/**
+	 * Setzt die Temperatur des Softmax, mit dem aus dem Output des
+	 * {@link NeuralNetwork}s die Prior-Wahrscheinlichkeiten berechnet werden.
+	 * Standardwert ist {@code 1}.
+	 * 
+	 * @param temperature
+	 *            Die Temperatur.
+	 */
+	public void setTemperature(double temperature) {
+		if (temperature <= 0) {
+			throw new IllegalArgumentException("The temperature must be positive!");
+		}
+		this.temperature = temperature;
+	}
+
+	@Override
+	public void init(boolean firstPlayer) {
+		this.firstPlayer = firstPlayer;
+		root = null;
+		rootBoard = null;
+	}
+
+	@Override
+	public int[] turn(int[][] field) {
+		if (playoutBudget <= 0 && timeBudget <= 0) {
+			throw new IllegalStateException("Neither a playout budget nor a time budget is set!");
+		}
+		int rows = field.length;
+		int cols = field[0].length;
+		if (rows != cols) {
+			throw new IllegalArgumentException("The field must be square!");
+		}
+		byte[] board = new byte[rows * cols];
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < cols; j++) {
+				board[i * cols + j] = (byte) field[i][j];
+			}
+		}
+		int player = firstPlayer ? 1 : 2;
+		reuseOrCreateRoot(board, cols, player);
+		playouts.set(0);
+		deadline = timeBudget > 0 ? System.nanoTime() + timeBudget * 1000000 : Long.MAX_VALUE;
+		if (executor == null) {
+			new Worker(board.length).search(player);
+		} else {
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(threads);
+			for (int t = 0; t < threads; t++) {
+				tasks.add(() -> {
+					new Worker(rootBoard.length).search(player);
+					return null;
+				});
+			}
+			try {
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		Node best = getBestChild(root);
+		if (best == null) {
+			best = getFallbackMove(board, player);
+		}
+		root = best;
+		rootBoard = board;
+		rootBoard[best.move] = (byte) player;
+		return new int[] { best.move / cols, best.move % cols };
+	}
+
+	@Override
+	public void finish(int winPlayer, int[][] field) {
+		root = null;
+		rootBoard = null;
+	}
+
+	/**
+	 * Beendet die Threads der Suche.
+	 */
+	@Override
+	public void close() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der zufälligen Spiele im letzten Zug zurück.
+	 * 
+	 * @return Die Anzahl der zufälligen Spiele.
+	 */
+	public int getLastPlayouts() {
+		return Math.min(playouts.get(), playoutBudget > 0 ? playoutBudget : Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Übernimmt den Teilbaum der aktuellen Stellung aus dem letzten Zug oder
+	 * erzeugt einen neuen Baum.
+	 * 
+	 * @param board
+	 *            Das aktuelle Spielfeld.
+	 * @param size
+	 *            Die Seitenlänge des Spielfeldes.
+	 * @param player
+	 *            Die Nummer dieses Spielers.
+	 */
+	private void reuseOrCreateRoot(byte[] board, int size, int player) {
+		Node newRoot = null;
+		if (root != null && this.size == size && rootBoard.length == board.length) {
+			int opponentMove = -1;
+			for (int c = 0; c < board.length; c++) {
+				if (board[c] != rootBoard[c]) {
+					if (opponentMove >= 0 || rootBoard[c] != 0 || board[c] != 3 - player) {
+						opponentMove = -1;
+						break;
+					}
+					opponentMove = c;
+				}
+			}
+			Node[] children = root.children;
+			if (opponentMove >= 0 && children != null) {
+				for (Node child : children) {
+					if (child.move == opponentMove) {
+						newRoot = child;
+						break;
+					}
+				}
+			}
+		}
+		this.size = size;
+		if (newRoot == null) {
+			newRoot = new Node(-1, 0, 3 - player, Node.ONGOING);
+		}
+		root = newRoot;
+		rootBoard = board.clone();
+	}
+
+	/**
+	 * Gibt das am häufigsten besuchte Kind des Knotens {@code node} zurück.
+	 * 
+	 * @param node
+	 *            Der Knoten.
+	 * @return Das Kind oder {@code null}, wenn der Knoten nicht expandiert ist.
+	 */
+	private static Node getBestChild(Node node) {
+		Node[] children = node.children;
+		if (children == null || children == EXPANDING) {
+			return null;
+		}
+		Node best = null;
+		for (Node child : children) {
+			if (best == null || child.visits > best.visits
+					|| (child.visits == best.visits && child.prior > best.prior)) {
+				best = child;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Gibt einen Knoten für das erste freie Feld zurück, falls die Suche keinen
+	 * Zug gefunden hat.
+	 */
+	private static Node getFallbackMove(byte[] board, int player) {
+		for (int c = 0; c < board.length; c++) {
+			if (board[c] == 0) {
+				return new Node(c, 0, player, Node.ONGOING);
+			}
+		}
+		throw new IllegalStateException("The field is full!");
+	}
+
+	/**
+	 * Ein Knoten im Suchbaum. Er steht für die Stellung nach dem Zug
+	 * {@code move} des Spielers {@code player}, {@code valueSum} ist aus dessen
+	 * Sicht gezählt ({@code 1} für einen Sieg, {@code -1} für eine
+	 * Niederlage).
+	 */
+	private static class Node {
+		private static final int ONGOING = -1;
+		private static final int DRAW = 0;
+		private static final AtomicIntegerFieldUpdater<Node> VISITS = AtomicIntegerFieldUpdater.newUpdater(Node.class,
+				"visits");
+		private static final AtomicIntegerFieldUpdater<Node> VALUE_SUM = AtomicIntegerFieldUpdater
+				.newUpdater(Node.class, "valueSum");
+		private static final AtomicReferenceFieldUpdater<Node, Node[]> CHILDREN = AtomicReferenceFieldUpdater
+				.newUpdater(Node.class, Node[].class, "children");
+
+		private final int move;
+		private final float prior;
+		private final int player;
+		private final int winner;
+		private volatile int visits;
+		private volatile int valueSum;
+		private volatile Node[] children;
+
+		private Node(int move, float prior, int player, int winner) {
+			this.move = move;
+			this.prior = prior;
+			this.player = player;
+			this.winner = winner;
+		}
+
+		private void addVirtualLoss() {
+			VISITS.incrementAndGet(this);
+			VALUE_SUM.decrementAndGet(this);
+		}
+
+		private void update(int winner) {
+			VALUE_SUM.addAndGet(this, (winner == player ? 1 : winner == DRAW ? 0 : -1) + 1);
+		}
+	}
+
+	/**
+	 * Die Daten eines Threads der Suche.
+	 */
+	private class Worker {
+		private final byte[] board;
+		private final Node[] path;
+		private final int[] emptyCells;
+		private final double[] inputs;
+		private final double[] outputs;
+
+		private Worker(int cells) {
+			board = new byte[cells];
+			path = new Node[cells + 1];
+			emptyCells = new int[cells];
+			inputs = new double[cells];
+			outputs = new double[cells];
+		}
+
+		/**
+		 * Führt zufällige Spiele aus, bis das Budget aufgebraucht ist.
+		 * 
+		 * @param player
+		 *            Die Nummer des Spielers, der in der Wurzel am Zug ist.
+		 */
+		private void search(int player) {
+			while ((playoutBudget <= 0 || playouts.getAndIncrement() < playoutBudget)
+					&& (timeBudget <= 0 || System.nanoTime() < deadline)) {
+				playout(player);
+			}
+		}
+
+		/**
+		 * Geht einmal von der Wurzel bis zu einem Blatt, expandiert es und
+		 * bewertet es mit einem zufälligen Spiel.
+		 */
+		private void playout(int player) {
+			System.arraycopy(rootBoard, 0, board, 0, board.length);
+			Node node = root;
+			Node.VISITS.incrementAndGet(node);
+			int depth = 0;
+			int toMove = player;
+			int winner;
+			while (true) {
+				if (node.winner != Node.ONGOING) {
+					winner = node.winner;
+					break;
+				}
+				Node[] children = node.children;
+				if (children == null) {
+					if (Node.CHILDREN.compareAndSet(node, null, EXPANDING)) {
+						node.children = expand(toMove);
+					}
+					winner = rollout(toMove);
+					break;
+				}
+				if (children == EXPANDING) {
+					winner = rollout(toMove);
+					break;
+				}
+				node = select(node, children);
+				node.addVirtualLoss();
+				board[node.move] = (byte) toMove;
+				path[depth++] = node;
+				toMove = 3 - toMove;
+			}
+			for (int d = 0; d < depth; d++) {
+				path[d].update(winner);
+				path[d] = null;
+			}
+		}
+
+		/**
+		 * Wählt das Kind mit dem höchsten PUCT-Wert.
+		 */
+		private Node select(Node node, Node[] children) {
+			double sqrtVisits = Math.sqrt(node.visits);
+			Node best = null;
+			double bestScore = Double.NEGATIVE_INFINITY;
+			for (Node child : children) {
+				int visits = child.visits;
+				double q = visits == 0 ? 0 : (double) child.valueSum / visits;
+				double score = q + exploration * child.prior * sqrtVisits / (1 + visits);
+				if (score > bestScore) {
+					best = child;
+					bestScore = score;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Erzeugt die Kinder der aktuellen Stellung mit den
+		 * Prior-Wahrscheinlichkeiten aus dem Output der {@link InferenceFunction}.
+		 */
+		private Node[] expand(int toMove) {
+			int emptyCount = 0;
+			for (int c = 0; c < board.length; c++) {
+				inputs[c] = board[c] == 0 ? 0 : board[c] == toMove ? 1 : -1;
+				if (board[c] == 0) {
+					emptyCells[emptyCount++] = c;
+				}
+			}
+			prior.feedforward(inputs, outputs);
+			double max = Double.NEGATIVE_INFINITY;
+			for (int e = 0; e < emptyCount; e++) {
+				max = Math.max(max, outputs[emptyCells[e]]);
+			}
+			double sum = 0;
+			for (int e = 0; e < emptyCount; e++) {
+				int c = emptyCells[e];
+				outputs[c] = Math.exp((outputs[c] - max) / temperature);
+				sum += outputs[c];
+			}
+			Node[] children = new Node[emptyCount];
+			for (int e = 0; e < emptyCount; e++) {
+				int c = emptyCells[e];
+				board[c] = (byte) toMove;
+				int winner = WinLines.isWinningMove(board, size, c) ? toMove
+						: emptyCount == 1 ? Node.DRAW : Node.ONGOING;
+				board[c] = 0;
+				children[e] = new Node(c, (float) (outputs[c] / sum), toMove, winner);
+			}
+			return children;
+		}
+
+		/**
+		 * Spielt von der aktuellen Stellung aus zufällig zu Ende.
+		 * 
+		 * @return Die Nummer des Spielers, der gewonnen hat, oder {@code 0}.
+		 */
+		private int rollout(int toMove) {
+			int emptyCount = 0;
+			for (int c = 0; c < board.length; c++) {
+				if (board[c] == 0) {
+					emptyCells[emptyCount++] = c;
+				}
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			while (emptyCount > 0) {
+				int e = random.nextInt(emptyCount);
+				int c = emptyCells[e];
+				emptyCells[e] = emptyCells[--emptyCount];
+				board[c] = (byte) toMove;
+				if (WinLines.isWinningMove(board, size, c)) {
+					return toMove;
+				}
+				toMove = 3 - toMove;
+			}
+			return Node.DRAW;
+		}
+	}
+}
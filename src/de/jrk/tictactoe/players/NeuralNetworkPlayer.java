@@ -1,7 +1,9 @@
 package de.jrk.tictactoe.players;
 
-import de.jrk.neuralnetwork.Matrix;
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.NetworkSnapshot;
 import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.TernaryKernel;
 
 public class NeuralNetworkPlayer extends Player {
 	private boolean firstPlayer;
@@ -9,11 +11,24 @@ public class NeuralNetworkPlayer extends Player {
 	private int loses = 0;
 	private int draws = 0;
 	private int ills = 0;
+	/**
+	 * Das {@link NeuralNetwork} dieses Spielers. Ist {@code null}, wenn der
+	 * Spieler mit {@link #NeuralNetworkPlayer(InferenceFunction)} erzeugt wurde.
+	 */
 	public NeuralNetwork nn;
+	private InferenceFunction inference;
+	private TernaryKernel kernel;
+	private long kernelVersion;
+	private TernaryKernel.Accumulator accumulator;
+	private boolean incremental;
+	private double[] inputs;
+	private double[] outputs;
 
 	/**
 	 * Konstruiert einen neuen Spieler auf Basis des übergebenen
-	 * {@link NeuralNetwork} {@code nn};
+	 * {@link NeuralNetwork} {@code nn}; Die Gewichte werden in einen
+	 * {@link TernaryKernel} übernommen, der erst neu erzeugt wird, wenn sich die
+	 * {@link NeuralNetwork#getVersion() Version} von {@code nn} ändert.
 	 * 
 	 * @param nn
 	 *            Das {@link NeuralNetwork}.
@@ -22,45 +37,100 @@ public class NeuralNetworkPlayer extends Player {
 		this.nn = nn;
 	}
 
+	/**
+	 * Konstruiert einen neuen Spieler auf Basis der übergebenen
+	 * {@link InferenceFunction} {@code inference}, z.B. eines mit dem
+	 * {@link de.jrk.neuralnetwork.NetworkCompiler NetworkCompiler} übersetzten
+	 * {@link NeuralNetwork}s. Für einen {@link NetworkSnapshot} wird dessen
+	 * {@link TernaryKernel} benutzt. Das Feld {@link #nn} bleibt bei diesem
+	 * Konstruktor {@code null}.
+	 * 
+	 * @param inference
+	 *            Die {@link InferenceFunction}.
+	 */
+	public NeuralNetworkPlayer(InferenceFunction inference) {
+		this.inference = inference;
+		if (inference instanceof NetworkSnapshot) {
+			kernel = ((NetworkSnapshot) inference).getKernel();
+		}
+	}
+
 	@Override
 	public void init(boolean firstPlayer) {
 		this.firstPlayer = firstPlayer;
+		if (accumulator != null) {
+			accumulator.reset();
+		}
+	}
+
+	/**
+	 * Setzt, ob die erste Schicht mit einem {@link TernaryKernel.Accumulator}
+	 * über die Züge eines Spiels hinweg inkrementell berechnet wird. Die Outputs
+	 * können sich dann in den letzten Bits vom normalen Feedforward
+	 * unterscheiden. Wird ignoriert, wenn kein {@link TernaryKernel} benutzt wird.
+	 * Standardwert ist {@code false}.
+	 * 
+	 * @param incremental
+	 *            Ob inkrementell gerechnet wird.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+		accumulator = null;
 	}
 
 	@Override
 	public int[] turn(int[][] field) {
-		double[] inputs = new double[9];
-		int a = 0;
+		int cols = field[0].length;
+		int ownPart = firstPlayer ? 1 : 2;
+		long own = 0;
+		long opponent = 0;
 		for (int i = 0; i < field.length; i++) {
-			for (int j = 0; j < field[i].length; j++) {
+			for (int j = 0; j < cols; j++) {
 				int fieldPart = field[i][j];
-				inputs[a] = 0;
-				if (fieldPart == 0) {
-					a++;
-					continue;
-				} else {
-					inputs[a] = (fieldPart == 1 && firstPlayer) || (fieldPart == 2 && !firstPlayer) ? 1 : -1;
-					a++;
+				if (fieldPart == ownPart) {
+					own |= 1L << (i * cols + j);
+				} else if (fieldPart != 0) {
+					opponent |= 1L << (i * cols + j);
 				}
 			}
 		}
-		Matrix outputs = nn.feedforward(Matrix.from2DArray(inputs));
-		int[] pos = null;
-		double posProp = -1;
-		int p = 0;
-		for (int i = 0; i < field.length; i++) {
-			for (int j = 0; j < field[i].length; j++) {
-				if (outputs.get(p, 0) > posProp && (field[i][j] == 0)) {
-					pos = new int[] { i, j };
-					posProp = outputs.get(p, 0);
-				}
-				p++;
+		FeedforwardEvent event = FeedforwardEvent.sample() ? new FeedforwardEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+		int pos;
+		if (inference == null && (kernel == null || kernelVersion != nn.getVersion())) {
+			kernel = new TernaryKernel(nn);
+			kernelVersion = nn.getVersion();
+			accumulator = null;
+		}
+		if (kernel != null && incremental) {
+			if (accumulator == null) {
+				accumulator = kernel.newAccumulator();
+			}
+			pos = accumulator.selectMove(own, opponent);
+		} else if (kernel != null) {
+			pos = kernel.selectMove(own, opponent);
+		} else {
+			if (inputs == null) {
+				inputs = new double[field.length * cols];
+				outputs = new double[inputs.length];
 			}
+			for (int a = 0; a < inputs.length; a++) {
+				inputs[a] = (own >>> a & 1) != 0 ? 1 : (opponent >>> a & 1) != 0 ? -1 : 0;
+			}
+			inference.feedforward(inputs, outputs);
+			pos = TernaryKernel.selectMove(outputs, own | opponent);
+		}
+		if (event != null && event.shouldCommit()) {
+			event.inference = (kernel != null ? kernel : inference).getClass().getName();
+			event.sampleInterval = FeedforwardEvent.SAMPLE_INTERVAL;
+			event.commit();
 		}
-		if (field[pos[0]][pos[1]] != 0) {
+		if (((own | opponent) >>> pos & 1) != 0) {
 			ills++;
 		}
-		return pos;
+		return new int[] { pos / cols, pos % cols };
 	}
 
 	/**
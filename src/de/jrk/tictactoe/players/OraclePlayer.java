@@ -0,0 +1,51 @@
+package de.jrk.tictactoe.players;
+
+import de.jrk.tictactoe.solver.RetrogradeSolver;
+
+/**
+ * Ein Spieler, der mit einem {@link RetrogradeSolver} immer einen besten Zug
+ * spielt. Jeder Zug kostet nur eine Abfrage pro freiem Feld.
+ */
+public class OraclePlayer extends Player {
+	private final RetrogradeSolver solver;
+	private boolean firstPlayer;
+
+	/**
+	 * Konstruiert einen neuen {@link OraclePlayer} mit dem vollständig
+	 * berechneten {@link RetrogradeSolver} {@code solver}.
+	 * 
+	 * @param solver
+	 *            Der {@link RetrogradeSolver}.
+	 */
+	public OraclePlayer(RetrogradeSolver solver) {
+		this.solver = solver;
+	}
+
+	@Override
+	public void init(boolean firstPlayer) {
+		this.firstPlayer = firstPlayer;
+	}
+
+	@Override
+	public int[] turn(int[][] field) {
+		int cols = field[0].length;
+		int ownPart = firstPlayer ? 1 : 2;
+		long own = 0;
+		long opponent = 0;
+		for (int i = 0; i < field.length; i++) {
+			for (int j = 0; j < cols; j++) {
+				if (field[i][j] == ownPart) {
+					own |= 1L << (i * cols + j);
+				} else if (field[i][j] != 0) {
+					opponent |= 1L << (i * cols + j);
+				}
+			}
+		}
+		int pos = solver.selectMove(own, opponent);
+		return new int[] { pos / cols, pos % cols };
+	}
+
+	@Override
+	public void finish(int winPlayer, int[][] field) {
+	}
+}
@@ -0,0 +1,53 @@
+package de.jrk.tictactoe.players;
+
+import java.util.Random;
+
+/**
+ * Ein Spieler, der auf ein zufälliges freies Feld setzt. Mit einem festen
+ * Startwert ist die Folge der Züge bei gleichen Spielverläufen immer dieselbe,
+ * der {@link RandomPlayer} eignet sich also als fester Maßstab.
+ */
+public class RandomPlayer extends Player {
+	private final Random random;
+
+	/**
+	 * Konstruiert einen neuen {@link RandomPlayer} mit dem Startwert
+	 * {@code seed}.
+	 * 
+	 * @param seed
+	 *            Der Startwert des Zufallsgenerators.
+	 */
+	public RandomPlayer(long seed) {
+		random = new Random(seed);
+	}
+
+	@Override
+	public void init(boolean firstPlayer) {
+	}
+
+	@Override
+	public int[] turn(int[][] field) {
+		int cols = field[0].length;
+		int free = 0;
+		for (int i = 0; i < field.length; i++) {
+			for (int j = 0; j < cols; j++) {
+				if (field[i][j] == 0) {
+					free++;
+				}
+			}
+		}
+		int choice = random.nextInt(free);
+		for (int i = 0; i < field.length; i++) {
+			for (int j = 0; j < cols; j++) {
+				if (field[i][j] == 0 && choice-- == 0) {
+					return new int[] { i, j };
+				}
+			}
+		}
+		throw new IllegalStateException("The field is full!");
+	}
+
+	@Override
+	public void finish(int winPlayer, int[][] field) {
+	}
+}
@@ -0,0 +1,81 @@
+package de.jrk.tictactoe.records;
+
+/**
+ * Das Binärformat eines aufgezeichneten Spiels.<br>
+ * Jeder Zug wird als ein Byte mit dem Index des Feldes
+ * (<code>i*Spalten+j</code>) gespeichert. Das Ende eines Spiels markiert ein
+ * Ergebnis-Byte, in dem das höchste Bit gesetzt ist:<br>
+ * <br>
+ * Bit 7: {@link #RESULT_FLAG}<br>
+ * Bit 4: {@link #START_PLAYER1_FLAG}, ob Spieler 1 angefangen hat<br>
+ * Bit 3: {@link #ILLEGAL_MOVE_FLAG}, ob der letzte Zug illegal war<br>
+ * Bit 0-1: Die Nummer des Spielers, der gewonnen hat ({@code 0} bei
+ * Unentschieden)<br>
+ */
+public class GameRecord {
+	public static final int RESULT_FLAG = 0x80, START_PLAYER1_FLAG = 0x10, ILLEGAL_MOVE_FLAG = 0x08,
+			WIN_PLAYER_MASK = 0x03;
+
+	private GameRecord() {
+	}
+
+	/**
+	 * Erzeugt das Ergebnis-Byte eines Spiels.
+	 * 
+	 * @param winPlayer
+	 *            Die Nummer des Spielers, der gewonnen hat.
+	 * @param startPlayer1
+	 *            Ob Spieler 1 angefangen hat.
+	 * @param illegalMove
+	 *            Ob das Spiel durch einen illegalen Zug beendet wurde.
+	 * @return Das Ergebnis-Byte.
+	 */
+	public static byte encodeResult(int winPlayer, boolean startPlayer1, boolean illegalMove) {
+		return (byte) (RESULT_FLAG | (startPlayer1 ? START_PLAYER1_FLAG : 0) | (illegalMove ? ILLEGAL_MOVE_FLAG : 0)
+				| (winPlayer & WIN_PLAYER_MASK));
+	}
+
+	/**
+	 * Gibt zurück, ob das Byte {@code b} ein Ergebnis-Byte ist.
+	 * 
+	 * @param b
+	 *            Das Byte.
+	 * @return Ob das Byte ein Ergebnis-Byte ist.
+	 */
+	public static boolean isResult(byte b) {
+		return (b & RESULT_FLAG) != 0;
+	}
+
+	/**
+	 * Gibt die Nummer des Spielers zurück, der gewonnen hat.
+	 * 
+	 * @param result
+	 *            Das Ergebnis-Byte.
+	 * @return Die Nummer des Spielers, der gewonnen hat.
+	 */
+	public static int getWinPlayer(int result) {
+		return result & WIN_PLAYER_MASK;
+	}
+
+	/**
+	 * Gibt zurück, ob Spieler 1 angefangen hat.
+	 * 
+	 * @param result
+	 *            Das Ergebnis-Byte.
+	 * @return Ob Spieler 1 angefangen hat.
+	 */
+	public static boolean isStartPlayer1(int result) {
+		return (result & START_PLAYER1_FLAG) != 0;
+	}
+
+	/**
+	 * Gibt zurück, ob das Spiel durch einen illegalen Zug beendet wurde.
+	 * 
+	 * @param result
+	 *            Das Ergebnis-Byte.
+	 * @return Ob der letzte Zug illegal war.
+	 */
+	public static boolean isIllegalMove(int result) {
+		return (result & ILLEGAL_MOVE_FLAG) != 0;
+	}
+}
@@ -0,0 +1,118 @@
+package de.jrk.tictactoe.records;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Liest Spiele, die von einem {@link GameRecordWriter} geschrieben wurden. Die
+ * Dateien werden in den Speicher abgebildet und pro Spiel wird nichts
+ * allokiert.
+ */
+public class GameRecordReader {
+	private final File[] files;
+
+	/**
+	 * Erzeugt einen {@link GameRecordReader} für die übergebenen Dateien.
+	 * 
+	 * @param files
+	 *            Die Dateien.
+	 */
+	public GameRecordReader(File... files) {
+		this.files = files;
+	}
+
+	/**
+	 * Erzeugt einen {@link GameRecordReader} für alle Dateien im Verzeichnis
+	 * {@code directory}, die mit {@code prefix} anfangen, in der Reihenfolge, in
+	 * der sie geschrieben wurden.
+	 * 
+	 * @param directory
+	 *            Das Verzeichnis.
+	 * @param prefix
+	 *            Der Anfang der Dateinamen oder {@code null} für alle Dateien.
+	 * @return Der {@link GameRecordReader}.
+	 */
+	public static GameRecordReader fromDirectory(File directory, String prefix) {
+		ArrayList<File> result = new ArrayList<File>();
+		File[] files = directory.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				String name = file.getName();
+				if (name.endsWith(GameRecordWriter.FILE_EXTENSION) && (prefix == null || name.startsWith(prefix + "-"))) {
+					result.add(file);
+				}
+			}
+		}
+		return new GameRecordReader(result.toArray(new File[result.size()]));
+	}
+
+	/**
+	 * Liest alle Spiele und übergibt sie nacheinander dem {@link GameVisitor}
+	 * {@code visitor}.
+	 * 
+	 * @param visitor
+	 *            Der {@link GameVisitor}.
+	 * @return Die Anzahl der gelesenen Spiele.
+	 * @throws IOException
+	 *             Wenn ein Fehler beim Lesen auftritt.
+	 */
+	public long read(GameVisitor visitor) throws IOException {
+		byte[] moves = new byte[128];
+		long games = 0;
+		for (File file : files) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+				long size = channel.size();
+				for (long position = 0; position < size;) {
+					long length = Math.min(Integer.MAX_VALUE, size - position);
+					MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+					int moveCount = 0;
+					int end = 0;
+					for (int i = 0; i < length; i++) {
+						byte b = buffer.get(i);
+						if (GameRecord.isResult(b)) {
+							visitor.visit(moves, moveCount, b & 0xFF);
+							games++;
+							moveCount = 0;
+							end = i + 1;
+						} else {
+							if (moveCount == moves.length) {
+								throw new IOException("Invalid game record in " + file + "!");
+							}
+							moves[moveCount++] = b;
+						}
+					}
+					if (end == 0) {
+						throw new IOException("Invalid game record in " + file + "!");
+					}
+					position += end;
+				}
+			}
+		}
+		return games;
+	}
+
+	/**
+	 * Ein Interface, das in {@link GameRecordReader#read(GameVisitor) read} für
+	 * jedes gelesene Spiel aufgerufen wird.
+	 */
+	public interface GameVisitor {
+		/**
+		 * Wird für jedes gelesene Spiel aufgerufen. Das Array {@code moves} wird
+		 * für das nächste Spiel wiederverwendet.
+		 * 
+		 * @param moves
+		 *            Die Züge.
+		 * @param moveCount
+		 *            Die Anzahl der Züge.
+		 * @param result
+		 *            Das Ergebnis-Byte im Format von {@link GameRecord}.
+		 */
+		public void visit(byte[] moves, int moveCount, int result);
+	}
+}
@@ -0,0 +1,21 @@
+package de.jrk.tictactoe.records;
+
+import de.jrk.tictactoe.TicTacToe;
+
+/**
+ * Ein Empfänger für Spiele, die von {@link TicTacToe} aufgezeichnet werden.
+ */
+public interface GameRecordSink {
+	/**
+	 * Wird am Ende jedes Spiels aufgerufen. Das Array {@code moves} wird danach
+	 * wiederverwendet und darf nicht gespeichert werden.
+	 * 
+	 * @param moves
+	 *            Die Züge im Format von {@link GameRecord}.
+	 * @param moveCount
+	 *            Die Anzahl der Züge.
+	 * @param result
+	 *            Das Ergebnis-Byte im Format von {@link GameRecord}.
+	 */
+	public void record(byte[] moves, int moveCount, byte result);
+}
@@ -0,0 +1,238 @@
+package de.jrk.tictactoe.records;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Ein {@link GameRecordSink}, der Spiele gepuffert in einem eigenen Thread in
+ * rotierende Dateien schreibt. Die Dateien heißen
+ * <code>&lt;prefix&gt;-&lt;index&gt;.ttr</code> und enthalten nur vollständige
+ * Spiele, sodass jede Datei für sich gelesen werden kann.
+ */
+public class GameRecordWriter implements GameRecordSink, Closeable {
+	public static final String FILE_EXTENSION = ".ttr";
+
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final File directory;
+	private final String prefix;
+	private final long maxFileSize;
+	private final BlockingQueue<ByteBuffer> freeBuffers;
+	private final BlockingQueue<ByteBuffer> fullBuffers;
+	private final Thread writerThread;
+	private ByteBuffer currentBuffer;
+	private FileOutputStream outputStream;
+	private FileChannel channel;
+	private long fileSize;
+	private int fileIndex;
+	private boolean closed;
+	private volatile IOException error;
+
+	/**
+	 * Erzeugt einen neuen {@link GameRecordWriter} mit 4 Puffern á 64 KiB und
+	 * Dateien mit höchstens 64 MiB.
+	 * 
+	 * @param directory
+	 *            Das Verzeichnis, in das geschrieben wird.
+	 * @param prefix
+	 *            Der Anfang der Dateinamen.
+	 */
+	public GameRecordWriter(File directory, String prefix) {
+		this(directory, prefix, 64 << 20, 4, 64 << 10);
+	}
+
+	/**
+	 * Erzeugt einen neuen {@link GameRecordWriter}.
+	 * 
+	 * @param directory
+	 *            Das Verzeichnis, in das geschrieben wird.
+	 * @param prefix
+	 *            Der Anfang der Dateinamen.
+	 * @param maxFileSize
+	 *            Die Größe in Bytes, ab der eine neue Datei angefangen wird.
+	 * @param bufferCount
+	 *            Die Anzahl der Puffer.
+	 * @param bufferSize
+	 *            Die Größe eines Puffers in Bytes.
+	 */
+	public GameRecordWriter(File directory, String prefix, long maxFileSize, int bufferCount, int bufferSize) {
+		if (bufferCount < 2) {
+			throw new IllegalArgumentException("The amount of buffers must not be less than 2!");
+		}
+		directory.mkdirs();
+		this.directory = directory;
+		this.prefix = prefix;
+		this.maxFileSize = maxFileSize;
+		freeBuffers = new ArrayBlockingQueue<ByteBuffer>(bufferCount);
+		fullBuffers = new ArrayBlockingQueue<ByteBuffer>(bufferCount + 1);
+		for (int i = 1; i < bufferCount; i++) {
+			freeBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+		}
+		currentBuffer = ByteBuffer.allocateDirect(bufferSize);
+		while (getFile(fileIndex).exists()) {
+			fileIndex++;
+		}
+		writerThread = new Thread(this::writeBuffers, "GameRecordWriter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	@Override
+	public synchronized void record(byte[] moves, int moveCount, byte result) {
+		if (closed) {
+			return;
+		}
+		if (currentBuffer.remaining() < moveCount + 1) {
+			submitCurrentBuffer();
+		}
+		currentBuffer.put(moves, 0, moveCount);
+		currentBuffer.put(result);
+	}
+
+	/**
+	 * Übergibt alle bisher aufgezeichneten Spiele an den Schreib-Thread.
+	 * 
+	 * @throws IOException
+	 *             Wenn beim Schreiben ein Fehler aufgetreten ist.
+	 */
+	public synchronized void flush() throws IOException {
+		if (currentBuffer.position() > 0) {
+			submitCurrentBuffer();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Schreibt alle aufgezeichneten Spiele, wartet auf den Schreib-Thread und
+	 * schließt die aktuelle Datei. Danach übergebene Spiele werden verworfen.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		flush();
+		closed = true;
+		putUninterruptibly(fullBuffers, END);
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	/**
+	 * Übergibt den aktuellen Puffer an den Schreib-Thread und wartet auf einen
+	 * freien Puffer, falls alle Puffer belegt sind.
+	 */
+	private void submitCurrentBuffer() {
+		currentBuffer.flip();
+		putUninterruptibly(fullBuffers, currentBuffer);
+		currentBuffer = null;
+		boolean interrupted = false;
+		while (currentBuffer == null) {
+			try {
+				currentBuffer = freeBuffers.take();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Die Schleife des Schreib-Threads.
+	 */
+	private void writeBuffers() {
+		while (true) {
+			ByteBuffer buffer;
+			try {
+				buffer = fullBuffers.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (buffer == END) {
+				break;
+			}
+			try {
+				if (error == null) {
+					writeBuffer(buffer);
+				}
+			} catch (IOException e) {
+				error = e;
+			}
+			buffer.clear();
+			freeBuffers.add(buffer);
+		}
+		try {
+			if (channel != null) {
+				channel.force(false);
+				outputStream.close();
+			}
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+
+	/**
+	 * Schreibt den Puffer {@code buffer} in die aktuelle Datei und fängt vorher
+	 * eine neue Datei an, wenn die aktuelle zu groß werden würde.
+	 * 
+	 * @param buffer
+	 *            Der Puffer.
+	 * @throws IOException
+	 *             Wenn ein Fehler beim Schreiben auftritt.
+	 */
+	private void writeBuffer(ByteBuffer buffer) throws IOException {
+		if (channel == null || (fileSize > 0 && fileSize + buffer.remaining() > maxFileSize)) {
+			if (channel != null) {
+				outputStream.close();
+			}
+			outputStream = new FileOutputStream(getFile(fileIndex++));
+			channel = outputStream.getChannel();
+			fileSize = 0;
+		}
+		while (buffer.hasRemaining()) {
+			fileSize += channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Gibt die Datei mit dem Index {@code index} zurück.
+	 * 
+	 * @param index
+	 *            Der Index.
+	 * @return Die Datei.
+	 */
+	private File getFile(int index) {
+		return new File(directory, String.format("%s-%05d%s", prefix, index, FILE_EXTENSION));
+	}
+
+	private static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				queue.put(element);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,389 @@
+package de.jrk.tictactoe.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.jrk.neuralnetwork.BatchInference;
+import de.jrk.neuralnetwork.InferenceFunction;
+import de.jrk.neuralnetwork.NetworkCompiler;
+import de.jrk.neuralnetwork.NeuralNetwork;
+
+/**
+ * Ein Server, an dem beliebig viele Clients gleichzeitig gegen ein
+ * {@link NeuralNetwork} spielen können. Alle Verbindungen werden von einem
+ * Thread mit einem {@link Selector} bedient. Alle Anfragen, die in einem
+ * Durchlauf eingehen, werden gemeinsam in einem Feedforward-Durchlauf
+ * berechnet. Wenn das {@link NeuralNetwork} mit dem {@link NetworkCompiler}
+ * übersetzt werden kann, wird stattdessen die übersetzte Version für jede
+ * Anfrage aufgerufen.<br>
+ * <br>
+ * Protokoll (zeilenweise, ASCII):<br>
+ * Anfrage: <code>&lt;player&gt;&lt;field&gt;</code>, wobei {@code player} die
+ * Nummer ({@code 1} oder {@code 2}) des Spielers ist, für den das
+ * {@link NeuralNetwork} ziehen soll, und {@code field} die Felder
+ * <code>field[i][j]</code> ({@code 0}, {@code 1} oder {@code 2}) in der
+ * Reihenfolge <code>i*3+j</code> enthält, z.B. <code>1000020000</code>.<br>
+ * Antwort: <code>&lt;i&gt;,&lt;j&gt;</code> oder <code>error</code>.
+ */
+public class GameServer implements Runnable, Closeable {
+	public static final int MAX_BATCH_SIZE = 256;
+
+	private static final byte[] ERROR = { 'e', 'r', 'r', 'o', 'r', '\n' };
+
+	private final int cells;
+	private final int cols;
+	private final BatchInference inference;
+	private final InferenceFunction compiled;
+	private final double[][] compiledOutputs;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final double[][] inputs;
+	private final Session[] pendingSessions = new Session[MAX_BATCH_SIZE];
+	private final byte[][] pendingFields;
+	private final int[] pendingPlayers = new int[MAX_BATCH_SIZE];
+	private int pendingCount;
+	private volatile boolean closed;
+
+	/**
+	 * Erzeugt einen neuen {@link GameServer} für das {@link NeuralNetwork}
+	 * {@code nn}, der auf dem Port {@code port} Verbindungen annimmt.
+	 * 
+	 * @param nn
+	 *            Das {@link NeuralNetwork}. Es wird nur gelesen.
+	 * @param port
+	 *            Der Port oder {@code 0} für einen beliebigen freien Port.
+	 * @throws IOException
+	 *             Wenn der Port nicht geöffnet werden kann.
+	 */
+	public GameServer(NeuralNetwork nn, int port) throws IOException {
+		cells = nn.getWeights()[0].getCols();
+		cols = (int) Math.round(Math.sqrt(cells));
+		if (cols * cols != cells || nn.getWeights()[nn.getWeights().length - 1].getRows() != cells) {
+			throw new IllegalArgumentException("The NeuralNetwork does not match a square field!");
+		}
+		compiled = NetworkCompiler.compile(nn);
+		inference = compiled == null ? new BatchInference(nn, MAX_BATCH_SIZE) : null;
+		compiledOutputs = compiled == null ? null : new double[MAX_BATCH_SIZE][cells];
+		inputs = new double[MAX_BATCH_SIZE][cells];
+		pendingFields = new byte[MAX_BATCH_SIZE][cells];
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Gibt den Port zurück, auf dem dieser Server Verbindungen annimmt.
+	 * 
+	 * @return Der Port.
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Bedient alle Verbindungen, bis {@link #close() close} aufgerufen wird.
+	 */
+	@Override
+	public void run() {
+		try {
+			while (!closed) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							if (key.isReadable()) {
+								read(key);
+							}
+							if (key.isValid() && key.isWritable()) {
+								write((Session) key.attachment());
+							}
+						}
+					} catch (IOException e) {
+						closeSession((Session) key.attachment());
+					}
+				}
+				processPendingRequests();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				try {
+					key.channel().close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Beendet den Server und schließt alle Verbindungen.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * Nimmt eine neue Verbindung an.
+	 * 
+	 * @throws IOException
+	 *             Wenn die Verbindung nicht angenommen werden kann.
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Session session = new Session(channel, cells);
+		session.key = channel.register(selector, SelectionKey.OP_READ, session);
+	}
+
+	/**
+	 * Liest alle verfügbaren Daten einer Verbindung und reiht vollständige
+	 * Anfragen ein.
+	 * 
+	 * @param key
+	 *            Der {@link SelectionKey} der Verbindung.
+	 * @throws IOException
+	 *             Wenn ein Fehler beim Lesen auftritt.
+	 */
+	private void read(SelectionKey key) throws IOException {
+		Session session = (Session) key.attachment();
+		if (session.channel.read(session.in) < 0) {
+			closeSession(session);
+			return;
+		}
+		ByteBuffer in = session.in;
+		in.flip();
+		int lineStart = 0;
+		for (int i = 0; i < in.limit(); i++) {
+			if (in.get(i) == '\n') {
+				handleRequest(session, lineStart, i);
+				lineStart = i + 1;
+			}
+		}
+		in.position(lineStart);
+		in.compact();
+		if (!in.hasRemaining()) {
+			in.clear();
+			queueError(session);
+		}
+	}
+
+	/**
+	 * Reiht eine Fehlerantwort ein, damit sie erst nach den vorherigen Anfragen
+	 * derselben Verbindung gesendet wird. Fehler werden mit dem Spieler {@code 0}
+	 * markiert.
+	 * 
+	 * @param session
+	 *            Die Verbindung.
+	 */
+	private void queueError(Session session) {
+		if (pendingCount == MAX_BATCH_SIZE) {
+			processPendingRequests();
+		}
+		Arrays.fill(pendingFields[pendingCount], (byte) 0);
+		pendingSessions[pendingCount] = session;
+		pendingPlayers[pendingCount] = 0;
+		pendingCount++;
+	}
+
+	/**
+	 * Prüft eine Anfrage und reiht sie ein. Ungültige Anfragen werden als Fehler
+	 * eingereiht.
+	 * 
+	 * @param session
+	 *            Die Verbindung.
+	 * @param start
+	 *            Der Index des ersten Zeichens der Anfrage.
+	 * @param end
+	 *            Der Index des Zeilenumbruchs.
+	 */
+	private void handleRequest(Session session, int start, int end) {
+		ByteBuffer in = session.in;
+		if (end > start && in.get(end - 1) == '\r') {
+			end--;
+		}
+		int player = end - start == cells + 1 ? in.get(start) - '0' : -1;
+		if (player != 1 && player != 2) {
+			queueError(session);
+			return;
+		}
+		if (pendingCount == MAX_BATCH_SIZE) {
+			processPendingRequests();
+		}
+		byte[] field = pendingFields[pendingCount];
+		boolean empty = false;
+		for (int c = 0; c < cells; c++) {
+			int value = in.get(start + 1 + c) - '0';
+			if (value < 0 || value > 2) {
+				queueError(session);
+				return;
+			}
+			field[c] = (byte) value;
+			empty |= value == 0;
+		}
+		if (!empty) {
+			queueError(session);
+			return;
+		}
+		pendingSessions[pendingCount] = session;
+		pendingPlayers[pendingCount] = player;
+		pendingCount++;
+	}
+
+	/**
+	 * Berechnet alle eingereihten Anfragen in einem Feedforward-Durchlauf und
+	 * sendet die Antworten.
+	 */
+	private void processPendingRequests() {
+		if (pendingCount == 0) {
+			return;
+		}
+		for (int p = 0; p < pendingCount; p++) {
+			byte[] field = pendingFields[p];
+			double[] input = inputs[p];
+			for (int c = 0; c < cells; c++) {
+				input[c] = field[c] == 0 ? 0 : field[c] == pendingPlayers[p] ? 1 : -1;
+			}
+		}
+		double[][] outputs;
+		if (compiled != null) {
+			outputs = compiledOutputs;
+			for (int p = 0; p < pendingCount; p++) {
+				compiled.feedforward(inputs[p], outputs[p]);
+			}
+		} else {
+			outputs = inference.feedforward(inputs, pendingCount);
+		}
+		for (int p = 0; p < pendingCount; p++) {
+			byte[] field = pendingFields[p];
+			double[] output = outputs[p];
+			int pos = -1;
+			double posProp = -1;
+			for (int c = 0; c < cells; c++) {
+				if (output[c] > posProp && field[c] == 0) {
+					pos = c;
+					posProp = output[c];
+				}
+			}
+			Session session = pendingSessions[p];
+			pendingSessions[p] = null;
+			if (pos < 0 || pendingPlayers[p] == 0) {
+				session.write(ERROR);
+			} else {
+				session.writeMove(pos / cols, pos % cols);
+			}
+			try {
+				write(session);
+			} catch (IOException e) {
+				closeSession(session);
+			}
+		}
+		pendingCount = 0;
+	}
+
+	/**
+	 * Sendet so viele Antworten wie möglich und wartet auf Schreibbereitschaft,
+	 * falls nicht alle gesendet werden konnten.
+	 * 
+	 * @param session
+	 *            Die Verbindung.
+	 * @throws IOException
+	 *             Wenn ein Fehler beim Schreiben auftritt.
+	 */
+	private void write(Session session) throws IOException {
+		if (!session.key.isValid()) {
+			return;
+		}
+		ByteBuffer out = session.out;
+		out.flip();
+		session.channel.write(out);
+		out.compact();
+		session.key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+				: SelectionKey.OP_READ);
+	}
+
+	/**
+	 * Schließt eine Verbindung.
+	 * 
+	 * @param session
+	 *            Die Verbindung.
+	 */
+	private void closeSession(Session session) {
+		if (session == null) {
+			return;
+		}
+		session.key.cancel();
+		try {
+			session.channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Eine Verbindung zu einem Client mit ihren Puffern.
+	 */
+	private static class Session {
+		private final SocketChannel channel;
+		private final ByteBuffer in;
+		private final ByteBuffer out = ByteBuffer.allocate(1024);
+		private SelectionKey key;
+
+		private Session(SocketChannel channel, int cells) {
+			this.channel = channel;
+			in = ByteBuffer.allocate(4 * (cells + 3));
+		}
+
+		private void write(byte[] bytes) {
+			if (out.remaining() >= bytes.length) {
+				out.put(bytes);
+			}
+		}
+
+		private void writeMove(int i, int j) {
+			if (out.remaining() >= 24) {
+				putInt(i);
+				out.put((byte) ',');
+				putInt(j);
+				out.put((byte) '\n');
+			}
+		}
+
+		private void putInt(int value) {
+			if (value >= 10) {
+				putInt(value / 10);
+			}
+			out.put((byte) ('0' + value % 10));
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package de.jrk.tictactoe.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+
+import de.jrk.tictactoe.WinLines;
+
+/**
+ * Ein Client, der viele Spiele gleichzeitig gegen einen {@link GameServer}
+ * spielt und die Latenz der Züge sowie den Durchsatz misst. Jedes Spiel wird
+ * über eine eigene Verbindung (Session) gespielt, der Client zieht zufällig.
+ */
+public class LoadGenerator {
+	private final String host;
+	private final int port;
+
+	/**
+	 * Erzeugt einen neuen {@link LoadGenerator} für den Server {@code host} auf
+	 * dem Port {@code port}.
+	 * 
+	 * @param host
+	 *            Der Host des Servers.
+	 * @param port
+	 *            Der Port des Servers.
+	 */
+	public LoadGenerator(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * Spielt mit {@code clients} Threads jeweils {@code sessions} Spiele und gibt
+	 * die Latenz der Züge (p50, p99) und die Sessions pro Sekunde aus.
+	 * 
+	 * @param clients
+	 *            Die Anzahl der gleichzeitigen Clients.
+	 * @param sessions
+	 *            Die Anzahl der Spiele pro Client.
+	 * @throws InterruptedException
+	 *             Wenn der Thread beim Warten unterbrochen wird.
+	 */
+	public void run(int clients, int sessions) throws InterruptedException {
+		long[][] latencies = new long[clients][];
+		int[] moveCounts = new int[clients];
+		int[] failures = new int[clients];
+		Thread[] threads = new Thread[clients];
+		long start = System.nanoTime();
+		for (int i = 0; i < clients; i++) {
+			int index = i;
+			threads[i] = new Thread(() -> {
+				long[] clientLatencies = new long[sessions * 5];
+				Random random = new Random(index);
+				for (int s = 0; s < sessions; s++) {
+					try {
+						moveCounts[index] = playSession(random, clientLatencies, moveCounts[index]);
+					} catch (IOException e) {
+						failures[index]++;
+					}
+				}
+				latencies[index] = clientLatencies;
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		int moves = 0;
+		int failed = 0;
+		for (int i = 0; i < clients; i++) {
+			moves += moveCounts[i];
+			failed += failures[i];
+		}
+		long[] all = new long[moves];
+		int a = 0;
+		for (int i = 0; i < clients; i++) {
+			System.arraycopy(latencies[i], 0, all, a, moveCounts[i]);
+			a += moveCounts[i];
+		}
+		Arrays.sort(all);
+		int completed = clients * sessions - failed;
+		System.out.println(completed + " sessions (" + failed + " failed) with " + moves + " moves in "
+				+ String.format("%.2f", seconds) + " s");
+		System.out.println(String.format("%.1f sessions/s, %.1f moves/s", completed / seconds, moves / seconds));
+		if (moves > 0) {
+			System.out.println(String.format("Move latency: p50 %.1f us, p99 %.1f us", percentile(all, 0.5) / 1e3,
+					percentile(all, 0.99) / 1e3));
+		}
+	}
+
+	/**
+	 * Spielt ein Spiel über eine neue Verbindung.
+	 * 
+	 * @param random
+	 *            Der Zufallsgenerator für die Züge des Clients.
+	 * @param latencies
+	 *            Das Array, in das die Latenzen der Züge des Servers geschrieben
+	 *            werden.
+	 * @param moveCount
+	 *            Die Anzahl der bisherigen Züge des Servers.
+	 * @return Die neue Anzahl der Züge des Servers.
+	 * @throws IOException
+	 *             Wenn ein Fehler bei der Verbindung auftritt.
+	 */
+	private int playSession(Random random, long[] latencies, int moveCount) throws IOException {
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			OutputStream out = socket.getOutputStream();
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+			int[] field = new int[9];
+			int serverPlayer = random.nextBoolean() ? 1 : 2;
+			int currentPlayer = random.nextBoolean() ? 1 : 2;
+			byte[] request = new byte[11];
+			for (int turn = 0; turn < 9 && WinLines.getWinPlayer(field, 0, 3) == 0; turn++) {
+				int pos;
+				if (currentPlayer == serverPlayer) {
+					request[0] = (byte) ('0' + serverPlayer);
+					for (int c = 0; c < 9; c++) {
+						request[c + 1] = (byte) ('0' + field[c]);
+					}
+					request[10] = '\n';
+					long start = System.nanoTime();
+					out.write(request);
+					out.flush();
+					String response = in.readLine();
+					latencies[moveCount++] = System.nanoTime() - start;
+					if (response == null || response.equals("error")) {
+						throw new IOException("Invalid response: " + response);
+					}
+					String[] parts = response.split(",");
+					pos = Integer.parseInt(parts[0]) * 3 + Integer.parseInt(parts[1]);
+				} else {
+					do {
+						pos = random.nextInt(9);
+					} while (field[pos] != 0);
+				}
+				if (field[pos] != 0) {
+					throw new IOException("Illegal move: " + pos);
+				}
+				field[pos] = currentPlayer;
+				currentPlayer = 3 - currentPlayer;
+			}
+		}
+		return moveCount;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+	}
+}
@@ -0,0 +1,95 @@
+package de.jrk.tictactoe.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+import de.jrk.neuralnetwork.NeuralNetwork;
+import de.jrk.neuralnetwork.TernaryKernel;
+import de.jrk.neuralnetwork.training.EvolutionalTrainer.NeuralNetworkTester;
+
+/**
+ * Bewertet {@link NeuralNetwork}s ohne Turnier mit einem
+ * {@link RetrogradeSolver}: Beim Erzeugen werden Stellungen aus zufälligen
+ * Spielen gesammelt und für jede die besten Züge gemerkt. Der Score ist der
+ * Anteil der Stellungen, in denen das {@link NeuralNetwork} einen der besten
+ * Züge wählt, wobei ein illegaler Zug als -1 zählt. Er liegt also wie die
+ * Turnier-Scores zwischen -1 und 1. Die Züge werden wie beim
+ * {@link de.jrk.tictactoe.players.NeuralNetworkPlayer NeuralNetworkPlayer} mit
+ * einem {@link TernaryKernel} gewählt. Ein {@link OracleTester} kann von
+ * mehreren Threads gleichzeitig genutzt werden.
+ */
+public class OracleTester implements NeuralNetworkTester {
+	private final long[] own;
+	private final long[] opponent;
+	private final long[] bestMoves;
+
+	/**
+	 * Erzeugt einen neuen {@link OracleTester} mit bis zu
+	 * {@code positionCount} verschiedenen Stellungen, in denen das Spiel noch
+	 * nicht vorbei ist.
+	 * 
+	 * @param solver
+	 *            Der vollständig berechnete {@link RetrogradeSolver}.
+	 * @param positionCount
+	 *            Die größte Anzahl an Stellungen.
+	 * @param seed
+	 *            Der Startwert für die zufälligen Spiele.
+	 */
+	public OracleTester(RetrogradeSolver solver, int positionCount, long seed) {
+		if (!solver.isSolved()) {
+			throw new IllegalArgumentException("The solver has not finished yet!");
+		}
+		int cells = solver.getIndex().getCellCount();
+		Random random = new Random(seed);
+		LinkedHashMap<Long, long[]> positions = new LinkedHashMap<Long, long[]>();
+		for (int game = 0; game < positionCount * 10L && positions.size() < positionCount; game++) {
+			long toMove = 0;
+			long other = 0;
+			for (int k = 0; k < cells && !solver.hasLine(other) && positions.size() < positionCount; k++) {
+				positions.putIfAbsent(solver.getIndex().rank(toMove, other) * (cells + 1) + k,
+						new long[] { toMove, other });
+				int cell;
+				do {
+					cell = random.nextInt(cells);
+				} while (((toMove | other) >>> cell & 1) != 0);
+				long moved = toMove | 1L << cell;
+				toMove = other;
+				other = moved;
+			}
+		}
+		own = new long[positions.size()];
+		opponent = new long[own.length];
+		bestMoves = new long[own.length];
+		int p = 0;
+		for (long[] position : positions.values()) {
+			own[p] = position[0];
+			opponent[p] = position[1];
+			bestMoves[p] = solver.getBestMoves(position[0], position[1]);
+			p++;
+		}
+	}
+
+	@Override
+	public double test(NeuralNetwork nn) {
+		TernaryKernel kernel = new TernaryKernel(nn);
+		long score = 0;
+		for (int p = 0; p < own.length; p++) {
+			int move = kernel.selectMove(own[p], opponent[p]);
+			if (((own[p] | opponent[p]) >>> move & 1) != 0) {
+				score--;
+			} else if ((bestMoves[p] >>> move & 1) != 0) {
+				score++;
+			}
+		}
+		return score / (double) own.length;
+	}
+
+	/**
+	 * Gibt die Anzahl der Stellungen zurück.
+	 * 
+	 * @return Die Anzahl der Stellungen.
+	 */
+	public int getPositionCount() {
+		return own.length;
+	}
+}
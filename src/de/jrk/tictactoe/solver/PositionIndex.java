@@ -0,0 +1,145 @@
+package de.jrk.tictactoe.solver;
+
+/**
+ * Nummeriert alle Stellungen eines Tic-Tac-Toe-Feldes der Größe
+ * {@code size * size} lückenlos durch. Eine Stellung wird aus der Sicht des
+ * Spielers am Zug als zwei Bitmasken angegeben (eigene und gegnerische Felder,
+ * Bit {@code i} für Feld {@code i}). Der Spieler am Zug hat in Schicht
+ * {@code k}, also mit {@code k} Steinen auf dem Feld, immer {@code k / 2}
+ * Steine und der Gegner {@code k - k / 2}, egal wer angefangen hat.<br>
+ * <br>
+ * Der Index einer Stellung in ihrer Schicht setzt sich aus dem Rang der
+ * besetzten Felder unter allen {@code k}-Teilmengen der Felder und dem Rang der
+ * gegnerischen Steine unter den besetzten Feldern zusammen, beide im
+ * kombinatorischen Zahlensystem. Jede Schicht hat genau
+ * {@code C(size * size, k) * C(k, k - k / 2)} Stellungen, darunter auch solche,
+ * die im Spiel nicht vorkommen können.
+ */
+public class PositionIndex {
+	private final int size;
+	private final int cells;
+	private final long[][] binomials;
+
+	/**
+	 * Erzeugt einen neuen {@link PositionIndex} für ein Feld mit
+	 * {@code size * size} Feldern.
+	 * 
+	 * @param size
+	 *            Die Seitenlänge des Feldes, höchstens 6.
+	 */
+	public PositionIndex(int size) {
+		if (size < 1 || size > 6) {
+			throw new IllegalArgumentException("The size must be between 1 and 6!");
+		}
+		this.size = size;
+		cells = size * size;
+		binomials = new long[cells + 1][cells + 1];
+		for (int n = 0; n <= cells; n++) {
+			binomials[n][0] = 1;
+			for (int k = 1; k <= n; k++) {
+				binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+			}
+		}
+	}
+
+	/**
+	 * Gibt die Anzahl der Stellungen in der Schicht {@code k} zurück.
+	 * 
+	 * @param k
+	 *            Die Anzahl der Steine.
+	 * @return Die Anzahl der Stellungen.
+	 */
+	public long getLayerSize(int k) {
+		return binomials[cells][k] * binomials[k][k - k / 2];
+	}
+
+	/**
+	 * Gibt den Index der Stellung {@code own}, {@code opponent} in ihrer Schicht
+	 * zurück. Der Spieler am Zug muss {@code k / 2} Steine haben.
+	 * 
+	 * @param own
+	 *            Die Bitmaske der Felder des Spielers am Zug.
+	 * @param opponent
+	 *            Die Bitmaske der Felder des Gegners.
+	 * @return Der Index.
+	 */
+	public long rank(long own, long opponent) {
+		long occupied = own | opponent;
+		int k = Long.bitCount(occupied);
+		long occupiedRank = 0;
+		long opponentRank = 0;
+		int j = 0;
+		int o = 0;
+		for (long bits = occupied; bits != 0; bits &= bits - 1) {
+			int c = Long.numberOfTrailingZeros(bits);
+			occupiedRank += binomials[c][++j];
+			if ((opponent >>> c & 1) != 0) {
+				opponentRank += binomials[j - 1][++o];
+			}
+		}
+		return occupiedRank * binomials[k][k - k / 2] + opponentRank;
+	}
+
+	/**
+	 * Berechnet die Stellung mit dem Index {@code index} in der Schicht {@code k}
+	 * und schreibt die Bitmasken des Spielers am Zug und des Gegners in
+	 * {@code result[0]} und {@code result[1]}.
+	 * 
+	 * @param k
+	 *            Die Anzahl der Steine.
+	 * @param index
+	 *            Der Index.
+	 * @param result
+	 *            Das Array für die beiden Bitmasken.
+	 */
+	public void unrank(int k, long index, long[] result) {
+		long opponentCount = binomials[k][k - k / 2];
+		long occupiedRank = index / opponentCount;
+		long opponentRank = index % opponentCount;
+		long occupied = 0;
+		int c = cells;
+		for (int j = k; j > 0; j--) {
+			do {
+				c--;
+			} while (binomials[c][j] > occupiedRank);
+			occupied |= 1L << c;
+			occupiedRank -= binomials[c][j];
+		}
+		long opponentPositions = 0;
+		int p = k;
+		for (int o = k - k / 2; o > 0; o--) {
+			do {
+				p--;
+			} while (binomials[p][o] > opponentRank);
+			opponentPositions |= 1L << p;
+			opponentRank -= binomials[p][o];
+		}
+		long opponent = 0;
+		int q = 0;
+		for (long bits = occupied; bits != 0; bits &= bits - 1) {
+			if ((opponentPositions >>> q++ & 1) != 0) {
+				opponent |= Long.lowestOneBit(bits);
+			}
+		}
+		result[0] = occupied & ~opponent;
+		result[1] = opponent;
+	}
+
+	/**
+	 * Gibt die Seitenlänge des Feldes zurück.
+	 * 
+	 * @return Die Seitenlänge.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gibt die Anzahl der Felder zurück.
+	 * 
+	 * @return Die Anzahl der Felder.
+	 */
+	public int getCellCount() {
+		return cells;
+	}
+}
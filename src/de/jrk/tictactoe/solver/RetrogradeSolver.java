@@ -0,0 +1,362 @@
+package de.jrk.tictactoe.solver;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import de.jrk.tictactoe.WinLines;
+
+/**
+ * Berechnet den Wert jeder Stellung von Tic-Tac-Toe auf einem Feld mit
+ * {@code size * size} Feldern bei perfektem Spiel beider Spieler. Gewonnen hat,
+ * wer eine ganze Zeile, Spalte oder Diagonale besetzt. Da jeder Zug einen
+ * Stein hinzufügt, hängen die Werte der Schicht {@code k} (Stellungen mit
+ * {@code k} Steinen) nur von der Schicht {@code k + 1} ab. Die Schichten werden
+ * deshalb vom vollen Feld rückwärts bis zum leeren Feld berechnet, jede
+ * Schicht parallel in einem {@link ForkJoinPool}.<br>
+ * <br>
+ * Jede Schicht wird mit dem {@link PositionIndex} lückenlos durchnummeriert
+ * und mit 2 Bits pro Stellung ({@link #LOSS}, {@link #DRAW}, {@link #WIN} aus
+ * der Sicht des Spielers am Zug) in einer eigenen Datei gespeichert, die in den
+ * Speicher abgebildet wird. Nach jeder fertigen Schicht wird eine Markierung
+ * geschrieben, sodass ein abgebrochenes {@link #solve(ForkJoinPool) solve} bei
+ * der nächsten unfertigen Schicht fortgesetzt wird.<br>
+ * <br>
+ * Ist alles berechnet, kostet eine Abfrage mit {@link #getValue(long, long)
+ * getValue} nur das Berechnen eines Index und das Lesen von 2 Bits. Für
+ * {@code size = 4} sind es etwa 10 Millionen Stellungen (2,5 MB), für
+ * {@code size = 5} schon über 20 GB.
+ */
+public class RetrogradeSolver implements Closeable {
+	/**
+	 * Die Werte einer Stellung aus der Sicht des Spielers am Zug:<br>
+	 * {@link #UNKNOWN}: Noch nicht berechnet<br>
+	 * {@link #LOSS}: Verloren<br>
+	 * {@link #DRAW}: Unentschieden<br>
+	 * {@link #WIN}: Gewonnen<br>
+	 * Der Wert einer Stellung nach einem Zug ist für den Gegner immer
+	 * {@code 4 - value}.
+	 */
+	public static final int UNKNOWN = 0, LOSS = 1, DRAW = 2, WIN = 3;
+
+	private static final int CHUNK_BITS = 30;
+	private static final int SPLIT_BYTES = 4096;
+	private final File directory;
+	private final PositionIndex index;
+	private final Layer[] layers;
+
+	private RetrogradeSolver(File directory, int size) throws IOException {
+		this.directory = directory;
+		index = new PositionIndex(size);
+		layers = new Layer[index.getCellCount() + 1];
+		try {
+			for (int k = 0; k < layers.length; k++) {
+				layers[k] = new Layer(k);
+			}
+		} catch (IOException | RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Öffnet die Dateien für ein Feld mit {@code size * size} Feldern im
+	 * Verzeichnis {@code directory} oder legt sie an. Bereits berechnete
+	 * Schichten werden übernommen.
+	 * 
+	 * @param directory
+	 *            Das Verzeichnis.
+	 * @param size
+	 *            Die Seitenlänge des Feldes.
+	 * @return Der {@link RetrogradeSolver}.
+	 * @throws IOException
+	 *             Wenn die Dateien nicht angelegt oder abgebildet werden können.
+	 */
+	public static RetrogradeSolver open(File directory, int size) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create the directory " + directory + "!");
+		}
+		return new RetrogradeSolver(directory, size);
+	}
+
+	/**
+	 * Berechnet alle noch nicht fertigen Schichten mit dem {@link ForkJoinPool}
+	 * {@code pool} und gibt für jede Schicht die Dauer auf der Konsole aus.
+	 * 
+	 * @param pool
+	 *            Der {@link ForkJoinPool}.
+	 * @throws IOException
+	 *             Wenn eine Markierung nicht geschrieben werden kann.
+	 */
+	public void solve(ForkJoinPool pool) throws IOException {
+		for (int k = layers.length - 1; k >= 0; k--) {
+			Layer layer = layers[k];
+			if (layer.isSolved()) {
+				continue;
+			}
+			long start = System.nanoTime();
+			pool.invoke(new LayerTask(k, 0, (layer.size + 3) / 4));
+			layer.markSolved();
+			System.out.println("Layer " + k + ": " + layer.size + " positions in "
+					+ (System.nanoTime() - start) / 1000000 + " ms");
+		}
+	}
+
+	/**
+	 * Gibt zurück, ob alle Schichten berechnet sind.
+	 * 
+	 * @return Ob alle Schichten berechnet sind.
+	 */
+	public boolean isSolved() {
+		for (Layer layer : layers) {
+			if (!layer.isSolved()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gibt den Wert der Stellung {@code own}, {@code opponent} für den Spieler am
+	 * Zug zurück. Der Spieler am Zug muss halb so viele Steine wie auf dem Feld
+	 * sind haben (abgerundet).
+	 * 
+	 * @param own
+	 *            Die Bitmaske der Felder des Spielers am Zug.
+	 * @param opponent
+	 *            Die Bitmaske der Felder des Gegners.
+	 * @return {@link #LOSS}, {@link #DRAW}, {@link #WIN} oder {@link #UNKNOWN},
+	 *         wenn die Schicht noch nicht berechnet ist.
+	 */
+	public int getValue(long own, long opponent) {
+		Layer layer = layers[Long.bitCount(own | opponent)];
+		return layer.isSolved() ? layer.get(index.rank(own, opponent)) : UNKNOWN;
+	}
+
+	/**
+	 * Gibt die Bitmaske aller freien Felder zurück, mit denen der Spieler am Zug
+	 * den Wert der Stellung erreicht. Ist das Spiel schon vorbei, ist sie leer.
+	 * Die nächste Schicht muss berechnet sein.
+	 * 
+	 * @param own
+	 *            Die Bitmaske der Felder des Spielers am Zug.
+	 * @param opponent
+	 *            Die Bitmaske der Felder des Gegners.
+	 * @return Die Bitmaske der besten Züge.
+	 */
+	public long getBestMoves(long own, long opponent) {
+		long occupied = own | opponent;
+		int k = Long.bitCount(occupied);
+		if (hasLine(own) || hasLine(opponent) || k == index.getCellCount()) {
+			return 0;
+		}
+		if (!layers[k + 1].isSolved()) {
+			throw new IllegalStateException("The layer " + (k + 1) + " has not been solved yet!");
+		}
+		long best = 0;
+		int bestValue = UNKNOWN;
+		for (int c = 0; c < index.getCellCount(); c++) {
+			if ((occupied >>> c & 1) == 0) {
+				int value = 4 - getValue(opponent, own | 1L << c);
+				if (value > bestValue) {
+					best = 0;
+					bestValue = value;
+				}
+				if (value == bestValue) {
+					best |= 1L << c;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Gibt das erste Feld zurück, mit dem der Spieler am Zug den Wert der
+	 * Stellung erreicht.
+	 * 
+	 * @param own
+	 *            Die Bitmaske der Felder des Spielers am Zug.
+	 * @param opponent
+	 *            Die Bitmaske der Felder des Gegners.
+	 * @return Der Index des Feldes oder {@code -1}, wenn das Spiel vorbei ist.
+	 */
+	public int selectMove(long own, long opponent) {
+		long best = getBestMoves(own, opponent);
+		return best == 0 ? -1 : Long.numberOfTrailingZeros(best);
+	}
+
+	/**
+	 * Gibt zurück, ob die Felder {@code cells} eine ganze Zeile, Spalte oder
+	 * Diagonale enthalten.
+	 * 
+	 * @param cells
+	 *            Die Bitmaske der Felder eines Spielers.
+	 * @return Ob der Spieler gewonnen hat.
+	 */
+	public boolean hasLine(long cells) {
+		return WinLines.hasLine(cells, index.getSize());
+	}
+
+	/**
+	 * Gibt den {@link PositionIndex} zurück.
+	 * 
+	 * @return Der {@link PositionIndex}.
+	 */
+	public PositionIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Gibt die Seitenlänge des Feldes zurück.
+	 * 
+	 * @return Die Seitenlänge.
+	 */
+	public int getSize() {
+		return index.getSize();
+	}
+
+	/**
+	 * Schließt alle Dateien. Die abgebildeten Bereiche werden unter Java 8 erst
+	 * vom Garbage Collector freigegeben und dürfen danach nicht mehr benutzt
+	 * werden.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (Layer layer : layers) {
+			if (layer != null) {
+				layer.file.close();
+			}
+		}
+	}
+
+	/**
+	 * Berechnet den Wert der Stellung mit dem Index {@code i} in der Schicht
+	 * {@code k} aus den Werten der Schicht {@code k + 1}.
+	 */
+	private int evaluate(int k, long i, long[] position) {
+		index.unrank(k, i, position);
+		long own = position[0];
+		long opponent = position[1];
+		if (hasLine(opponent)) {
+			return LOSS;
+		}
+		if (hasLine(own)) {
+			return WIN;
+		}
+		if (k == index.getCellCount()) {
+			return DRAW;
+		}
+		Layer next = layers[k + 1];
+		int value = LOSS;
+		for (long free = ~(own | opponent) & (-1L >>> (64 - index.getCellCount())); free != 0; free &= free - 1) {
+			int nextValue = next.get(index.rank(opponent, own | Long.lowestOneBit(free)));
+			if (nextValue == LOSS) {
+				return WIN;
+			}
+			if (nextValue == DRAW) {
+				value = DRAW;
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Berechnet die Bytes {@code from} bis {@code to} (exklusiv) einer Schicht,
+	 * also jeweils 4 Stellungen pro Byte. Da jede Aufgabe ganze Bytes schreibt,
+	 * kommen sich parallele Aufgaben nicht in die Quere.
+	 */
+	private class LayerTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int k;
+		private final long from;
+		private final long to;
+
+		private LayerTask(int k, long from, long to) {
+			this.k = k;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > SPLIT_BYTES) {
+				long middle = (from + to) >>> 1;
+				invokeAll(new LayerTask(k, from, middle), new LayerTask(k, middle, to));
+				return;
+			}
+			Layer layer = layers[k];
+			long[] position = new long[2];
+			for (long b = from; b < to; b++) {
+				int packed = 0;
+				for (int j = 0; j < 4 && b * 4 + j < layer.size; j++) {
+					packed |= evaluate(k, b * 4 + j, position) << (2 * j);
+				}
+				layer.setByte(b, packed);
+			}
+		}
+	}
+
+	/**
+	 * Die Datei einer Schicht mit 2 Bits pro Stellung, abgebildet in Stücken von
+	 * höchstens 1 GB.
+	 */
+	private class Layer {
+		private final long size;
+		private final RandomAccessFile file;
+		private final MappedByteBuffer[] chunks;
+		private final File marker;
+		private volatile boolean solved;
+
+		private Layer(int k) throws IOException {
+			size = index.getLayerSize(k);
+			String name = "tictactoe" + index.getSize() + "-layer" + k;
+			marker = new File(directory, name + ".done");
+			File dataFile = new File(directory, name + ".bin");
+			long bytes = (size + 3) / 4;
+			file = new RandomAccessFile(dataFile, "rw");
+			if (file.length() != bytes) {
+				file.setLength(bytes);
+				marker.delete();
+			}
+			solved = marker.exists();
+			chunks = new MappedByteBuffer[(int) ((bytes + (1L << CHUNK_BITS) - 1) >>> CHUNK_BITS)];
+			for (int c = 0; c < chunks.length; c++) {
+				long position = (long) c << CHUNK_BITS;
+				chunks[c] = file.getChannel().map(FileChannel.MapMode.READ_WRITE, position,
+						Math.min(1L << CHUNK_BITS, bytes - position));
+			}
+		}
+
+		private int get(long i) {
+			long b = i >>> 2;
+			int packed = chunks[(int) (b >>> CHUNK_BITS)].get((int) (b & ((1L << CHUNK_BITS) - 1)));
+			return packed >>> ((int) (i & 3) << 1) & 3;
+		}
+
+		private void setByte(long b, int packed) {
+			chunks[(int) (b >>> CHUNK_BITS)].put((int) (b & ((1L << CHUNK_BITS) - 1)), (byte) packed);
+		}
+
+		private boolean isSolved() {
+			return solved;
+		}
+
+		/**
+		 * Schreibt die Schicht in die Datei und danach die Markierung.
+		 */
+		private void markSolved() throws IOException {
+			for (MappedByteBuffer chunk : chunks) {
+				chunk.force();
+			}
+			if (!marker.exists() && !marker.createNewFile()) {
+				throw new IOException("Cannot create the marker " + marker + "!");
+			}
+			solved = true;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package de.jrk.tictactoe.sweep;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Die möglichen Werte der Parameter eines {@link SweepRunner}s. Ein Parameter
+ * hat entweder feste Werte ({@link #addValues(String, double...) addValues})
+ * oder einen Bereich ({@link #addRange(String, double, double, boolean, boolean)
+ * addRange}). Aus festen Werten kann ein Gitter aller Kombinationen erzeugt
+ * werden, für eine Zufallssuche werden aus beiden Arten Werte gezogen. Die
+ * Namen der Parameter sind die Konstanten in {@link Trial}.
+ */
+public class SearchSpace {
+	private final LinkedHashMap<String, Dimension> dimensions = new LinkedHashMap<String, Dimension>();
+
+	/**
+	 * Setzt die festen Werte {@code values} für den Parameter {@code name}.
+	 * 
+	 * @param name
+	 *            Der Name des Parameters.
+	 * @param values
+	 *            Die Werte.
+	 * @return Dieser {@link SearchSpace}.
+	 */
+	public SearchSpace addValues(String name, double... values) {
+		if (values.length == 0) {
+			throw new IllegalArgumentException("At least one value is needed!");
+		}
+		dimensions.put(name, new Dimension(values.clone(), 0, 0, false, false));
+		return this;
+	}
+
+	/**
+	 * Setzt den Bereich [{@code min}, {@code max}] für den Parameter
+	 * {@code name}. Ein Bereich kann nur zufällig durchsucht werden.
+	 * 
+	 * @param name
+	 *            Der Name des Parameters.
+	 * @param min
+	 *            Der kleinste Wert.
+	 * @param max
+	 *            Der größte Wert.
+	 * @param logarithmic
+	 *            Ob der Logarithmus des Wertes gleichverteilt ist, z.B. für
+	 *            Mutationsraten.
+	 * @param integer
+	 *            Ob der Wert auf eine ganze Zahl gerundet wird.
+	 * @return Dieser {@link SearchSpace}.
+	 */
+	public SearchSpace addRange(String name, double min, double max, boolean logarithmic, boolean integer) {
+		if (min > max || (logarithmic && min <= 0)) {
+			throw new IllegalArgumentException("Invalid range [" + min + ", " + max + "]!");
+		}
+		dimensions.put(name, new Dimension(null, min, max, logarithmic, integer));
+		return this;
+	}
+
+	/**
+	 * Gibt alle Kombinationen der festen Werte zurück. Der erste Parameter
+	 * ändert sich am langsamsten.
+	 * 
+	 * @return Die Konfigurationen in einer neuen Liste.
+	 */
+	public List<Map<String, Double>> getGrid() {
+		ArrayList<Map<String, Double>> grid = new ArrayList<Map<String, Double>>();
+		grid.add(new LinkedHashMap<String, Double>());
+		for (Map.Entry<String, Dimension> entry : dimensions.entrySet()) {
+			double[] values = entry.getValue().values;
+			if (values == null) {
+				throw new IllegalStateException("The parameter " + entry.getKey() + " has no fixed values!");
+			}
+			ArrayList<Map<String, Double>> next = new ArrayList<Map<String, Double>>(grid.size() * values.length);
+			for (Map<String, Double> configuration : grid) {
+				for (double value : values) {
+					LinkedHashMap<String, Double> extended = new LinkedHashMap<String, Double>(configuration);
+					extended.put(entry.getKey(), value);
+					next.add(extended);
+				}
+			}
+			grid = next;
+		}
+		return grid;
+	}
+
+	/**
+	 * Zieht {@code count} zufällige Konfigurationen. Aus festen Werten wird
+	 * gleichverteilt gewählt.
+	 * 
+	 * @param count
+	 *            Die Anzahl der Konfigurationen.
+	 * @param seed
+	 *            Der Startwert des Zufallsgenerators.
+	 * @return Die Konfigurationen in einer neuen Liste.
+	 */
+	public List<Map<String, Double>> sample(int count, long seed) {
+		Random random = new Random(seed);
+		ArrayList<Map<String, Double>> samples = new ArrayList<Map<String, Double>>(count);
+		for (int i = 0; i < count; i++) {
+			LinkedHashMap<String, Double> configuration = new LinkedHashMap<String, Double>();
+			for (Map.Entry<String, Dimension> entry : dimensions.entrySet()) {
+				configuration.put(entry.getKey(), entry.getValue().sample(random));
+			}
+			samples.add(configuration);
+		}
+		return samples;
+	}
+
+	/**
+	 * Die Werte eines Parameters: entweder feste Werte oder ein Bereich.
+	 */
+	private static class Dimension {
+		private final double[] values;
+		private final double min;
+		private final double max;
+		private final boolean logarithmic;
+		private final boolean integer;
+
+		private Dimension(double[] values, double min, double max, boolean logarithmic, boolean integer) {
+			this.values = values;
+			this.min = min;
+			this.max = max;
+			this.logarithmic = logarithmic;
+			this.integer = integer;
+		}
+
+		private double sample(Random random) {
+			if (values != null) {
+				return values[random.nextInt(values.length)];
+			}
+			double value;
+			if (logarithmic) {
+				value = Math.exp(Math.log(min) + random.nextDouble() * (Math.log(max) - Math.log(min)));
+			} else {
+				value = min + random.nextDouble() * (max - min);
+			}
+			return integer ? Math.round(value) : value;
+		}
+	}
+}
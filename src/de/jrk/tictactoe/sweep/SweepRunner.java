@@ -0,0 +1,251 @@
+package de.jrk.tictactoe.sweep;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+import de.jrk.tictactoe.Training;
+
+/**
+ * Trainiert viele {@link Training}s mit verschiedenen Konfigurationen
+ * gleichzeitig und wählt die besten mit Successive Halving aus: Alle
+ * {@link Trial}s trainieren zuerst {@link #setMinRounds(int) minRounds} Runden
+ * und werden mit {@link Training#getBenchmarkScore(int, long)
+ * getBenchmarkScore} bewertet. Nur das beste Drittel (bzw. der beste Teil nach
+ * {@link #setReductionFactor(int) reductionFactor}) trainiert weiter, bis zur
+ * dreifachen Anzahl an Runden, und so weiter bis {@link #setMaxRounds(int)
+ * maxRounds}.<br>
+ * <br>
+ * Alle {@link Trial}s laufen in einem gemeinsamen {@link ForkJoinPool} mit
+ * {@code threads} Threads, auch die parallelen Spiele innerhalb eines
+ * {@link Training}s. Mehr Prozessorkerne werden also nie belegt, und die
+ * Threads aussortierter {@link Trial}s helfen den übrigen. Jede Aufgabe im
+ * {@link ForkJoinPool} ist eine Runde eines {@link Trial}s, danach stellt sich
+ * der {@link Trial} hinten an, sodass alle {@link Trial}s einer Stufe
+ * gleichmäßig vorankommen.<br>
+ * <br>
+ * Nach jeder Stufe werden die Ergebnisse aller bewerteten {@link Trial}s an
+ * eine CSV-Datei angehängt.
+ */
+public class SweepRunner {
+	private final List<Map<String, Double>> configurations;
+	private final int threads;
+	private int minRounds = 20;
+	private int maxRounds = 180;
+	private int reductionFactor = 3;
+	private int benchmarkGames = 200;
+	private long seed = System.nanoTime();
+	private File csvFile;
+
+	/**
+	 * Erzeugt einen neuen {@link SweepRunner} für die Konfigurationen
+	 * {@code configurations}, z.B. aus einem {@link SearchSpace}.
+	 * 
+	 * @param configurations
+	 *            Die Konfigurationen, eine pro {@link Trial}.
+	 * @param threads
+	 *            Die Anzahl der Threads für alle {@link Trial}s zusammen.
+	 */
+	public SweepRunner(List<Map<String, Double>> configurations, int threads) {
+		if (configurations.isEmpty() || threads < 1) {
+			throw new IllegalArgumentException("At least one configuration and one thread are needed!");
+		}
+		this.configurations = configurations;
+		this.threads = threads;
+	}
+
+	/**
+	 * Setzt die Anzahl der Runden, die jeder {@link Trial} vor der ersten
+	 * Auswahl trainiert. Standardwert ist {@code 20}.
+	 * 
+	 * @param minRounds
+	 *            Die Anzahl der Runden.
+	 */
+	public void setMinRounds(int minRounds) {
+		this.minRounds = minRounds;
+	}
+
+	/**
+	 * Setzt die Anzahl der Runden, nach der die Auswahl endet. Standardwert ist
+	 * {@code 180}.
+	 * 
+	 * @param maxRounds
+	 *            Die Anzahl der Runden.
+	 */
+	public void setMaxRounds(int maxRounds) {
+		this.maxRounds = maxRounds;
+	}
+
+	/**
+	 * Setzt, durch welchen Faktor die Anzahl der {@link Trial}s bei jeder Auswahl
+	 * geteilt wird. Die Anzahl der Runden wird mit demselben Faktor
+	 * multipliziert. Standardwert ist {@code 3}.
+	 * 
+	 * @param reductionFactor
+	 *            Der Faktor, mindestens 2.
+	 */
+	public void setReductionFactor(int reductionFactor) {
+		if (reductionFactor < 2) {
+			throw new IllegalArgumentException("The reduction factor must be at least 2!");
+		}
+		this.reductionFactor = reductionFactor;
+	}
+
+	/**
+	 * Setzt die Anzahl der Spiele pro Gruppe bei der Bewertung. Standardwert ist
+	 * {@code 200}.
+	 * 
+	 * @param benchmarkGames
+	 *            Die Anzahl der Spiele.
+	 */
+	public void setBenchmarkGames(int benchmarkGames) {
+		this.benchmarkGames = benchmarkGames;
+	}
+
+	/**
+	 * Setzt den Startwert, aus dem die Startwerte der {@link Training}s und der
+	 * Bewertung abgeleitet werden.
+	 * 
+	 * @param seed
+	 *            Der Startwert.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Setzt die CSV-Datei, an die die Ergebnisse angehängt werden. {@code null}
+	 * schaltet das Schreiben aus.
+	 * 
+	 * @param csvFile
+	 *            Die CSV-Datei.
+	 */
+	public void setCsvFile(File csvFile) {
+		this.csvFile = csvFile;
+	}
+
+	/**
+	 * Führt alle Stufen aus und gibt alle {@link Trial}s zurück, sortiert nach der
+	 * erreichten Stufe und danach nach Score.
+	 * 
+	 * @return Die {@link Trial}s, der beste zuerst.
+	 * @throws IOException
+	 *             Wenn die CSV-Datei nicht geschrieben werden kann.
+	 * @throws InterruptedException
+	 *             Wenn der Thread beim Warten unterbrochen wird.
+	 */
+	public List<Trial> run() throws IOException, InterruptedException {
+		Random random = new Random(seed);
+		long benchmarkSeed = random.nextLong();
+		ArrayList<Trial> trials = new ArrayList<Trial>();
+		for (int i = 0; i < configurations.size(); i++) {
+			trials.add(new Trial(i, configurations.get(i), random.nextLong()));
+		}
+		LinkedHashSet<String> names = new LinkedHashSet<String>();
+		for (Map<String, Double> configuration : configurations) {
+			names.addAll(configuration.keySet());
+		}
+		if (csvFile != null && !csvFile.exists()) {
+			writeHeader(names);
+		}
+		Comparator<Trial> byScore = Comparator.comparingDouble(trial -> Double.isNaN(trial.getScore())
+				? Double.NEGATIVE_INFINITY : trial.getScore());
+		ForkJoinPool pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		try {
+			ArrayList<Trial> active = new ArrayList<Trial>(trials);
+			int rounds = Math.min(minRounds, maxRounds);
+			for (int rung = 0;; rung++) {
+				runRung(pool, active, rung, rounds, benchmarkSeed);
+				writeResults(names, active);
+				active.removeIf(trial -> trial.getFailure() != null);
+				active.sort(byScore.reversed());
+				if (rounds >= maxRounds || active.size() <= 1) {
+					break;
+				}
+				int keep = (active.size() + reductionFactor - 1) / reductionFactor;
+				for (Trial trial : active.subList(keep, active.size())) {
+					trial.release();
+				}
+				active = new ArrayList<Trial>(active.subList(0, keep));
+				rounds = (int) Math.min(maxRounds, (long) rounds * reductionFactor);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		trials.sort(Comparator.comparingInt(Trial::getRung).thenComparing(byScore).reversed());
+		return trials;
+	}
+
+	/**
+	 * Trainiert alle {@link Trial}s in {@code active} bis zur Rundenzahl
+	 * {@code rounds} und bewertet sie.
+	 */
+	private void runRung(ForkJoinPool pool, List<Trial> active, int rung, int rounds, long benchmarkSeed)
+			throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(active.size());
+		for (Trial trial : active) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (trial.getFailure() == null && trial.getRoundCount() < rounds) {
+						trial.trainRound();
+						pool.execute(this);
+					} else {
+						trial.benchmark(rung, benchmarkGames, benchmarkSeed);
+						done.countDown();
+					}
+				}
+			});
+		}
+		done.await();
+	}
+
+	/**
+	 * Schreibt die Kopfzeile der CSV-Datei.
+	 */
+	private void writeHeader(Iterable<String> names) throws IOException {
+		String header = "rung,trial";
+		for (String name : names) {
+			header += "," + name;
+		}
+		header += ",rounds,score,seconds,status\n";
+		FileWriter fw = new FileWriter(csvFile);
+		fw.write(header);
+		fw.close();
+	}
+
+	/**
+	 * Hängt eine Zeile pro {@link Trial} an die CSV-Datei an.
+	 */
+	private void writeResults(Iterable<String> names, List<Trial> trials) throws IOException {
+		if (csvFile == null) {
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		for (Trial trial : trials) {
+			sb.append(trial.getRung()).append(',').append(trial.getId());
+			for (String name : names) {
+				Double value = trial.getParameters().get(name);
+				sb.append(',');
+				if (value != null) {
+					sb.append(value == Math.rint(value) ? Long.toString(value.longValue()) : value.toString());
+				}
+			}
+			sb.append(',').append(trial.getRoundCount()).append(',').append(trial.getScore()).append(',')
+					.append(String.format(Locale.ROOT, "%.3f", trial.getSeconds())).append(',')
+					.append(trial.getFailure() == null ? "ok" : "failed").append('\n');
+		}
+		FileWriter fw = new FileWriter(csvFile, true);
+		fw.write(sb.toString());
+		fw.close();
+	}
+}
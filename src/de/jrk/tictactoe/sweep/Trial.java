@@ -0,0 +1,233 @@
+package de.jrk.tictactoe.sweep;
+
+import java.util.Collections;
+import java.util.Map;
+
+import de.jrk.neuralnetwork.training.EvolutionalTrainer;
+import de.jrk.tictactoe.Training;
+
+/**
+ * Ein {@link Training} mit einer Konfiguration aus einem {@link SearchSpace}
+ * und sein bisheriges Ergebnis im {@link SweepRunner}. Nicht gesetzte Parameter
+ * behalten die Standardwerte von {@link Training}.
+ */
+public class Trial {
+	/**
+	 * Die Namen der Parameter:<br>
+	 * {@link #GROUPS}: Die Anzahl der Gruppen<br>
+	 * {@link #NETWORKS}: Die Anzahl der {@link de.jrk.neuralnetwork.NeuralNetwork
+	 * NeuralNetwork}s pro Gruppe<br>
+	 * {@link #KEEP}: Die Anzahl der behaltenen
+	 * {@link de.jrk.neuralnetwork.NeuralNetwork NeuralNetwork}s pro Gruppe<br>
+	 * {@link #MUTATION_RATE}: Die anfängliche Mutationsrate<br>
+	 * {@link #ITERATIONS}: Die Anzahl der Iterationen pro Runde<br>
+	 * {@link #HIDDEN_NEURONS}: Die Anzahl der Neuronen pro versteckter Schicht
+	 * (Standardwert 18)<br>
+	 * {@link #HIDDEN_LAYERS}: Die Anzahl der versteckten Schichten (Standardwert
+	 * 2)<br>
+	 * {@link #RACING}: Ob mit {@link Training#setRacing(boolean) Racing} getestet
+	 * wird (ungleich 0) oder nicht (0)<br>
+	 * {@link #MUTATION_RATE_CONTROL}: Die Anpassung der Mutationsrate, 0 für
+	 * {@link EvolutionalTrainer#FIXED}, 1 für
+	 * {@link EvolutionalTrainer#ONE_FIFTH_RULE} und 2 für
+	 * {@link EvolutionalTrainer#SELF_ADAPTIVE}<br>
+	 */
+	public static final String GROUPS = "groups", NETWORKS = "networks", KEEP = "keep", MUTATION_RATE = "mutationRate",
+			ITERATIONS = "iterations", HIDDEN_NEURONS = "hiddenNeurons", HIDDEN_LAYERS = "hiddenLayers",
+			RACING = "racing", MUTATION_RATE_CONTROL = "mutationRateControl";
+	private static final String[] MUTATION_RATE_CONTROLS = { EvolutionalTrainer.FIXED,
+			EvolutionalTrainer.ONE_FIFTH_RULE, EvolutionalTrainer.SELF_ADAPTIVE };
+
+	private final int id;
+	private final Map<String, Double> parameters;
+	private Training training;
+	private int rung;
+	private int roundCount;
+	private double score = Double.NaN;
+	private long nanos;
+	private RuntimeException failure;
+
+	/**
+	 * Erzeugt einen neuen {@link Trial} und konfiguriert sein {@link Training}.
+	 * Lehnt das {@link Training} die Parameter ab, wird der Fehler wie bei
+	 * {@link #trainRound()} gemerkt und der {@link Trial} gilt als gescheitert.
+	 * 
+	 * @param id
+	 *            Die Nummer des {@link Trial}s.
+	 * @param parameters
+	 *            Die Werte der Parameter.
+	 * @param seed
+	 *            Der Startwert des {@link Training}s.
+	 */
+	public Trial(int id, Map<String, Double> parameters, long seed) {
+		this.id = id;
+		this.parameters = Collections.unmodifiableMap(parameters);
+		try {
+			training = new Training();
+			training.setSeed(seed);
+			training.setSaveFile(null);
+			training.setVerbose(false);
+			training.setMultiThreading(false);
+			int hiddenNeurons = 18;
+			int hiddenLayers = 2;
+			for (Map.Entry<String, Double> parameter : parameters.entrySet()) {
+				double value = parameter.getValue();
+				switch (parameter.getKey()) {
+				case GROUPS:
+					training.setGroupCount((int) value);
+					break;
+				case NETWORKS:
+					training.setNetworkAmount((int) value);
+					break;
+				case KEEP:
+					training.setKeepAmount((int) value);
+					break;
+				case MUTATION_RATE:
+					training.setMutationRate(value);
+					break;
+				case ITERATIONS:
+					training.setIterationsPerRound((int) value);
+					break;
+				case HIDDEN_NEURONS:
+					hiddenNeurons = (int) value;
+					break;
+				case HIDDEN_LAYERS:
+					hiddenLayers = (int) value;
+					break;
+				case RACING:
+					training.setRacing(value != 0);
+					break;
+				case MUTATION_RATE_CONTROL:
+					training.setMutationRateControl(MUTATION_RATE_CONTROLS[(int) value]);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown parameter " + parameter.getKey() + "!");
+				}
+			}
+			int[] neurons = new int[hiddenLayers + 2];
+			for (int l = 0; l < neurons.length; l++) {
+				neurons[l] = l == 0 || l == neurons.length - 1 ? 9 : hiddenNeurons;
+			}
+			training.setNeurons(neurons);
+		} catch (RuntimeException e) {
+			failure = e;
+			training = null;
+		}
+	}
+
+	/**
+	 * Trainiert eine Runde und addiert die Zeit dazu. Ein Fehler wird gemerkt,
+	 * statt ihn weiterzuwerfen.
+	 */
+	void trainRound() {
+		long start = System.nanoTime();
+		try {
+			training.trainRounds(1);
+			roundCount++;
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		nanos += System.nanoTime() - start;
+	}
+
+	/**
+	 * Berechnet den Score mit {@link Training#getBenchmarkScore(int, long)
+	 * getBenchmarkScore}.
+	 */
+	void benchmark(int rung, int games, long seed) {
+		this.rung = rung;
+		if (failure == null) {
+			try {
+				score = training.getBenchmarkScore(games, seed);
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			score = Double.NaN;
+		}
+	}
+
+	/**
+	 * Gibt das {@link Training} frei, nachdem der {@link Trial} aussortiert
+	 * wurde.
+	 */
+	void release() {
+		training = null;
+	}
+
+	/**
+	 * Gibt die Nummer zurück.
+	 * 
+	 * @return Die Nummer.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Gibt die Werte der Parameter zurück.
+	 * 
+	 * @return Die unveränderbaren Werte der Parameter.
+	 */
+	public Map<String, Double> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Gibt das {@link Training} zurück oder {@code null}, wenn der {@link Trial}
+	 * aussortiert wurde.
+	 * 
+	 * @return Das {@link Training}.
+	 */
+	public Training getTraining() {
+		return training;
+	}
+
+	/**
+	 * Gibt die Anzahl der trainierten Runden zurück.
+	 * 
+	 * @return Die Anzahl der Runden.
+	 */
+	public int getRoundCount() {
+		return roundCount;
+	}
+
+	/**
+	 * Gibt die Stufe der Successive-Halving-Auswahl zurück, die der
+	 * {@link Trial} zuletzt erreicht hat, beginnend bei 0.
+	 * 
+	 * @return Die Stufe.
+	 */
+	public int getRung() {
+		return rung;
+	}
+
+	/**
+	 * Gibt den letzten Score zurück oder {@link Double#NaN}, wenn der
+	 * {@link Trial} noch nicht bewertet wurde oder fehlgeschlagen ist.
+	 * 
+	 * @return Der Score.
+	 */
+	public double getScore() {
+		return score;
+	}
+
+	/**
+	 * Gibt die Zeit zurück, die das {@link Training} insgesamt gebraucht hat.
+	 * 
+	 * @return Die Zeit in Sekunden.
+	 */
+	public double getSeconds() {
+		return nanos / 1e9;
+	}
+
+	/**
+	 * Gibt den Fehler zurück, an dem das {@link Training} gescheitert ist.
+	 * 
+	 * @return Der Fehler oder {@code null}.
+	 */
+	public RuntimeException getFailure() {
+		return failure;
+	}
+}